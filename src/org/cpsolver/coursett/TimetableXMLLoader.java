@@ -521,6 +521,7 @@ public class TimetableXMLLoader extends TimetableLoader {
                         dp.getId(), dp.getName(), dp.getPattern(),
                         Integer.parseInt(timeLocationEl.attributeValue("breakTime") == null ? "-1" : timeLocationEl.attributeValue("breakTime")));
                 if (tl.getBreakTime() < 0) tl.setBreakTime(tl.getLength() == 18 ? 15 : 10);
+                tl.setWeekCodes(getModel().getWeekCodes());
                 if (timeLocationEl.attributeValue("pattern") != null)
                     tl.setTimePatternId(Long.valueOf(timeLocationEl.attributeValue("pattern")));
                 /*
@@ -132,6 +132,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
     private int iNrWorkDays = 5;
     private int iFirstWorkDay = 0;
     private String iOnlineRoom = null;
+    private boolean iIncrementalPairs = true;
     
     /**
      * Group constraints that can be checked on pairs of classes (e.g., same room means any two classes are in the same room),
@@ -1415,6 +1416,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
             if (iNrWorkDays > 7) iNrWorkDays -= 7;
             iFirstWorkDay = config.getPropertyInt("General.FirstWorkDay", 0);
             iOnlineRoom = config.getProperty("General.OnlineRoom", "(?i)ONLINE|");
+            iIncrementalPairs = config.getPropertyBoolean("GroupConstraint.IncrementalPairs", iIncrementalPairs);
         }
     }
 
@@ -1937,16 +1939,16 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
             }
             return (over > 0 ? Math.abs(iPreference) * over / 12 : - Math.abs(iPreference));
         }
-        int nrViolatedPairs = 0;
-        for (Lecture v1 : variables()) {
-            Placement p1 = assignment.getValue(v1);
-            if (p1 == null) continue;
-            for (Lecture v2 : variables()) {
-                Placement p2 = assignment.getValue(v2);
-                if (p2 == null || v1.getId() >= v2.getId()) continue;
-                if (!isSatisfiedPair(assignment, p1, p2)) nrViolatedPairs++;
-            }
-        }
+        return getPairwisePreference(assignment, isIncrementalPairs() ? getContext(assignment).getNrViolatedPairs() : countViolatedPairs(assignment));
+    }
+    
+    /**
+     * Current constraint preference of a pair-wise constraint, given the number of violated pairs
+     * @param assignment current assignment
+     * @param nrViolatedPairs number of violated pairs
+     * @return current preference
+     */
+    private int getPairwisePreference(Assignment<Lecture, Placement> assignment, int nrViolatedPairs) {
         if (getType().is(Flag.BACK_TO_BACK)) {
             Set<Placement> conflicts = new HashSet<Placement>();
             if (isSatisfiedSeq(assignment, new HashMap<Lecture, Placement>(), conflicts))
@@ -1994,7 +1996,11 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
         
         int nrViolatedPairsAfter = 0;
         int nrViolatedPairsBefore = 0;
-        for (Lecture v1 : variables()) {
+        if (isIncrementalPairs()) {
+            Placement current = assignment.getValue(placement.variable());
+            nrViolatedPairsBefore = getContext(assignment).getNrViolatedPairs() - (current == null ? 0 : countViolatedPairs(assignment, current));
+            nrViolatedPairsAfter = nrViolatedPairsBefore + countViolatedPairs(assignment, placement);
+        } else for (Lecture v1 : variables()) {
             for (Lecture v2 : variables()) {
                 if (v1.getId() >= v2.getId()) continue;
                 Placement p1 = (v1.equals(placement.variable()) ? null : assignment.getValue(v1));
@@ -2437,6 +2443,56 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
         return true;
     }
 
+    /**
+     * True if the number of violated pairs is kept up to date by the constraint context. This is the case for soft constraints
+     * of a type whose pair check depends only on the two placements (see {@link PairCheck}), unless disabled by
+     * GroupConstraint.IncrementalPairs set to false.
+     * @return true if the violated pairs are counted incrementally
+     */
+    protected boolean isIncrementalPairs() {
+        if (!iIncrementalPairs || isHard() || !(getType() instanceof ConstraintType)) return false;
+        ConstraintType type = (ConstraintType)getType();
+        return type.iCheck != null && type.iAssignmentCheck == null && type.iAssignmentPairCheck == null && !type.is(Flag.MAX_HRS_DAY);
+    }
+    
+    /**
+     * Number of violated pairs among all the assigned classes of the constraint
+     * @param assignment current assignment
+     * @return number of pairs that are not satisfied
+     */
+    protected int countViolatedPairs(Assignment<Lecture, Placement> assignment) {
+        int nrViolatedPairs = 0;
+        for (Lecture v1 : variables()) {
+            Placement p1 = assignment.getValue(v1);
+            if (p1 == null) continue;
+            for (Lecture v2 : variables()) {
+                Placement p2 = assignment.getValue(v2);
+                if (p2 == null || v1.getId() >= v2.getId()) continue;
+                if (!isSatisfiedPair(assignment, p1, p2)) nrViolatedPairs++;
+            }
+        }
+        return nrViolatedPairs;
+    }
+    
+    /**
+     * Number of violated pairs between the given placement and the other assigned classes of the constraint
+     * @param assignment current assignment
+     * @param placement a placement of one of the classes of the constraint (the current assignment of its class is ignored)
+     * @return number of pairs involving the placement that are not satisfied
+     */
+    protected int countViolatedPairs(Assignment<Lecture, Placement> assignment, Placement placement) {
+        Lecture lecture = placement.variable();
+        int nrViolatedPairs = 0;
+        for (Lecture other : variables()) {
+            if (other.getId() == lecture.getId()) continue;
+            Placement p = assignment.getValue(other);
+            if (p == null) continue;
+            if (other.getId() < lecture.getId() ? !isSatisfiedPair(assignment, p, placement) : !isSatisfiedPair(assignment, placement, p))
+                nrViolatedPairs++;
+        }
+        return nrViolatedPairs;
+    }
+
     public boolean isSatisfied(Assignment<Lecture, Placement> assignment) {
         if (isHard()) return true;
         if (countAssignedVariables(assignment) < 2) return true;
@@ -2543,30 +2599,43 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
 
     public class GroupConstraintContext implements AssignmentConstraintContext<Lecture, Placement> {
         protected int iLastPreference = 0;
+        protected int iNrViolatedPairs = 0;
         
         public GroupConstraintContext(Assignment<Lecture, Placement> assignment) {
+            if (isIncrementalPairs())
+                iNrViolatedPairs = countViolatedPairs(assignment);
             updateCriterion(assignment);
         }
 
         @Override
         public void assigned(Assignment<Lecture, Placement> assignment, Placement value) {
+            if (isIncrementalPairs())
+                iNrViolatedPairs += countViolatedPairs(assignment, value);
             updateCriterion(assignment);
         }
 
         @Override
         public void unassigned(Assignment<Lecture, Placement> assignment, Placement value) {
+            if (isIncrementalPairs())
+                iNrViolatedPairs -= countViolatedPairs(assignment, value);
             updateCriterion(assignment);
         }
         
         protected void updateCriterion(Assignment<Lecture, Placement> assignment) {
             if (!isHard()) {
                 getModel().getCriterion(DistributionPreferences.class).inc(assignment, -iLastPreference);
-                iLastPreference = getCurrentPreference(assignment) + Math.abs(iPreference);
+                if (isIncrementalPairs())
+                    iLastPreference = (countAssignedVariables(assignment) < 2 ? 0 : getPairwisePreference(assignment, iNrViolatedPairs) + Math.abs(iPreference));
+                else
+                    iLastPreference = getCurrentPreference(assignment) + Math.abs(iPreference);
                 getModel().getCriterion(DistributionPreferences.class).inc(assignment, iLastPreference);
             }
         }
         
         public int getPreference() { return iLastPreference; }
+        
+        /** Number of violated pairs (only maintained when {@link GroupConstraint#isIncrementalPairs()} is true) */
+        public int getNrViolatedPairs() { return iNrViolatedPairs; }
     }
     
     private boolean isBackToBackWeeks(TimeLocation t1, TimeLocation t2) {
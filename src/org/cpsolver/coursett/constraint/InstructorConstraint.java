@@ -2,7 +2,6 @@ package org.cpsolver.coursett.constraint;
 
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -150,8 +149,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         for (int i = 0; i < available.length; i++)
             available[i] = null;
         for (Placement p: iUnavailabilities) {
-            for (Enumeration<Integer> e = p.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: p.getTimeLocation().getSlotsArray()) {
                 if (available[slot] == null)
                     available[slot] = new ArrayList<Placement>(1);
                 available[slot].add(p);
@@ -218,13 +216,11 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
     public void computeConflicts(Assignment<Lecture, Placement> assignment, Placement placement, Set<Placement> conflicts) {
         Lecture lecture = placement.variable();
         Placement current = assignment.getValue(lecture);
-        BitSet weekCode = placement.getTimeLocation().getWeekCode();
         InstructorConstraintContext context = getContext(assignment);
 
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
+        for (int slot: placement.getTimeLocation().getSlotsArray()) {
             for (Placement p : context.getPlacements(slot)) {
-                if (!p.equals(current) && p.getTimeLocation().shareWeeks(weekCode)) {
+                if (!p.equals(current) && p.getTimeLocation().shareWeeks(placement.getTimeLocation())) {
                     if (p.canShareRooms(placement) && p.sameRooms(placement))
                         continue;
                     conflicts.add(p);
@@ -232,8 +228,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
             }
         }
         if (!iIgnoreDistances) {
-            for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-                int startSlot = e.nextElement();
+            for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
 
                 int prevSlot = startSlot - 1;
                 if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
@@ -278,13 +273,11 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
     public boolean inConflict(Assignment<Lecture, Placement> assignment, Placement placement) {
         Lecture lecture = placement.variable();
         Placement current = assignment.getValue(lecture);
-        BitSet weekCode = placement.getTimeLocation().getWeekCode();
         InstructorConstraintContext context = getContext(assignment);
         
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
+        for (int slot: placement.getTimeLocation().getSlotsArray()) {
             for (Placement p : context.getPlacements(slot)) {
-                if (!p.equals(current) && p.getTimeLocation().shareWeeks(weekCode)) {
+                if (!p.equals(current) && p.getTimeLocation().shareWeeks(placement.getTimeLocation())) {
                     if (p.canShareRooms(placement) && p.sameRooms(placement))
                         continue;
                     return true;
@@ -292,8 +285,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
             }
         }
         if (!iIgnoreDistances) {
-            for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-                int startSlot = e.nextElement();
+            for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
                 
                 int prevSlot = startSlot - 1;
                 if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
@@ -361,8 +353,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         HashSet<Placement> checked = new HashSet<Placement>();
         InstructorConstraintContext context = getContext(assignment);
         
-        for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-            int startSlot = e.nextElement();
+        for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
             
             int prevSlot = startSlot - 1;
             if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
@@ -457,8 +448,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         HashSet<Placement> checked = new HashSet<Placement>();
         InstructorConstraintContext context = getContext(assignment);
         
-        for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-            int startSlot = e.nextElement();
+        for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
             
             int prevSlot = startSlot - 1;
             if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
@@ -587,8 +577,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
             for (Lecture lecture: variables()) {
                 Placement placement = assignment.getValue(lecture);
                 if (placement != null) {
-                    for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                        int slot = e.nextElement();
+                    for (int slot: placement.getTimeLocation().getSlotsArray()) {
                         iResource[slot].add(placement);
                     }
                 }
@@ -599,8 +588,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
 
         @Override
         public void assigned(Assignment<Lecture, Placement> assignment, Placement placement) {
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: placement.getTimeLocation().getSlotsArray()) {
                 iResource[slot].add(placement);
             }
             getModel().getCriterion(BackToBackInstructorPreferences.class).inc(assignment, -iPreference);
@@ -610,8 +598,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         
         @Override
         public void unassigned(Assignment<Lecture, Placement> assignment, Placement placement) {
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: placement.getTimeLocation().getSlotsArray()) {
                 iResource[slot].remove(placement);
             }
             getModel().getCriterion(BackToBackInstructorPreferences.class).inc(assignment, -iPreference);
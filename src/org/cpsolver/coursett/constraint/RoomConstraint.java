@@ -1,9 +1,7 @@
 package org.cpsolver.coursett.constraint;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -49,6 +47,7 @@ import org.cpsolver.ifs.util.DataProperties;
  */
 
 public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, RoomConstraint.RoomConstraintContext> {
+    private static org.apache.logging.log4j.Logger sLogger = org.apache.logging.log4j.LogManager.getLogger(RoomConstraint.class);
     private Long iResourceId;
     private String iName;
     private Long iBuildingId;
@@ -63,6 +62,7 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
 
     private Long iType = null;
     private int iDayOfWeekOffset = 0;
+    private boolean iCheckUselessSlots = false;
     
     private RoomConstraint iParentRoom;
     private List<RoomConstraint> iPartitions;
@@ -98,6 +98,7 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         if (model != null) {
             DataProperties config = ((TimetableModel)model).getProperties();
             iDayOfWeekOffset = config.getPropertyInt("DatePattern.DayOfWeekOffset", 0);
+            iCheckUselessSlots = config.getPropertyBoolean("RoomConstraint.CheckUselessSlots", false);
         }
     }
 
@@ -108,8 +109,7 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
             for (int i = 0; i < iAvailable.length; i++)
                 iAvailable[i] = null;
         }
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
+        for (int slot: placement.getTimeLocation().getSlotsArray()) {
             if (iAvailable[slot] == null)
                 iAvailable[slot] = new ArrayList<Placement>(1);
             iAvailable[slot].add(placement);
@@ -128,8 +128,7 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
 
     public boolean isAvailable(Lecture lecture, TimeLocation time, Long scheduler) {
         if (iAvailable != null && getConstraint()) {
-            for (Enumeration<Integer> e = time.getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: time.getSlotsArray()) {
                 if (iAvailable[slot] != null) {
                     for (Placement p : iAvailable[slot]) {
                         if (lecture.canShareRoom(p.variable()))
@@ -143,8 +142,7 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
 
         // room partition checking
         if (getParentRoom() != null && getParentRoom().getConstraint() && getParentRoom().iAvailable != null) { // check parent room's availability
-            for (Enumeration<Integer> e = time.getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: time.getSlotsArray()) {
                 if (getParentRoom().iAvailable[slot] != null) {
                     for (Placement p : getParentRoom().iAvailable[slot]) {
                         if (lecture.canShareRoom(p.variable()))
@@ -158,8 +156,7 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         if (getPartitions() != null) { // check partitions for availability
             for (RoomConstraint partition: getPartitions()) {
                 if (partition.iAvailable != null && partition.getConstraint()) {
-                    for (Enumeration<Integer> e = time.getSlots(); e.hasMoreElements();) {
-                        int slot = e.nextElement();
+                    for (int slot: time.getSlotsArray()) {
                         if (partition.iAvailable[slot] != null) {
                             for (Placement p : partition.iAvailable[slot]) {
                                 if (lecture.canShareRoom(p.variable()))
@@ -252,12 +249,10 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
             Lecture lecture = placement.variable();
             Placement current = assignment.getValue(lecture);
             Set<Placement> shared = null;
-            BitSet weekCode = placement.getTimeLocation().getWeekCode();
             RoomConstraintContext context = getParentRoom().getContext(assignment);
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: placement.getTimeLocation().getSlotsArray()) {
                 for (Placement confPlacement : context.getPlacements(slot)) {
-                    if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
+                    if (!confPlacement.getTimeLocation().shareWeeks(placement.getTimeLocation()))
                         continue;
                     if (confPlacement.equals(current))
                         continue;
@@ -276,14 +271,12 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
             Lecture lecture = placement.variable();
             Placement current = assignment.getValue(lecture);
             Set<Placement> shared = null;
-            BitSet weekCode = placement.getTimeLocation().getWeekCode();
             for (RoomConstraint partition: iPartitions) {
                 if (!partition.getConstraint()) continue;
                 RoomConstraintContext context = partition.getContext(assignment);
-                for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                    int slot = e.nextElement();
+                for (int slot: placement.getTimeLocation().getSlotsArray()) {
                     for (Placement confPlacement : context.getPlacements(slot)) {
-                        if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
+                        if (!confPlacement.getTimeLocation().shareWeeks(placement.getTimeLocation()))
                             continue;
                         if (confPlacement.equals(current))
                             continue;
@@ -303,13 +296,11 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         Lecture lecture = placement.variable();
         Placement current = assignment.getValue(lecture);
         Set<Placement> shared = null;
-        BitSet weekCode = placement.getTimeLocation().getWeekCode();
         RoomConstraintContext context = getContext(assignment);
 
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
+        for (int slot: placement.getTimeLocation().getSlotsArray()) {
             for (Placement confPlacement : context.getPlacements(slot)) {
-                if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
+                if (!confPlacement.getTimeLocation().shareWeeks(placement.getTimeLocation()))
                     continue;
                 if (confPlacement.equals(current))
                     continue;
@@ -375,12 +366,10 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
             Lecture lecture = placement.variable();
             Placement current = assignment.getValue(lecture);
             Set<Placement> shared = null;
-            BitSet weekCode = placement.getTimeLocation().getWeekCode();
             RoomConstraintContext context = getParentRoom().getContext(assignment);
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: placement.getTimeLocation().getSlotsArray()) {
                 for (Placement confPlacement : context.getPlacements(slot)) {
-                    if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
+                    if (!confPlacement.getTimeLocation().shareWeeks(placement.getTimeLocation()))
                         continue;
                     if (confPlacement.equals(current))
                         continue;
@@ -399,14 +388,12 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
             Lecture lecture = placement.variable();
             Placement current = assignment.getValue(lecture);
             Set<Placement> shared = null;
-            BitSet weekCode = placement.getTimeLocation().getWeekCode();
             for (RoomConstraint partition: iPartitions) {
                 if (!partition.getConstraint()) continue;
                 RoomConstraintContext context = partition.getContext(assignment);
-                for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                    int slot = e.nextElement();
+                for (int slot: placement.getTimeLocation().getSlotsArray()) {
                     for (Placement confPlacement : context.getPlacements(slot)) {
-                        if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
+                        if (!confPlacement.getTimeLocation().shareWeeks(placement.getTimeLocation()))
                             continue;
                         if (confPlacement.equals(current))
                             continue;
@@ -426,13 +413,11 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         Lecture lecture = placement.variable();
         Placement current = assignment.getValue(lecture);
         Set<Placement> shared = null;
-        BitSet weekCode = placement.getTimeLocation().getWeekCode();
         RoomConstraintContext context = getContext(assignment);
 
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
+        for (int slot: placement.getTimeLocation().getSlotsArray()) {
             for (Placement confPlacement : context.getPlacements(slot)) {
-                if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
+                if (!confPlacement.getTimeLocation().shareWeeks(placement.getTimeLocation()))
                     continue;
                 if (confPlacement.equals(current))
                     continue;
@@ -562,8 +547,7 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
             for (Lecture lecture: variables()) {
                 Placement placement = assignment.getValue(lecture);
                 if (placement != null && placement.hasRoomLocation(getResourceId())) {
-                    for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                        int slot = e.nextElement();
+                    for (int slot: placement.getTimeLocation().getSlotsArray()) {
                         iResource[slot].add(placement);
                     }
                 }
@@ -578,32 +562,59 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         public void assigned(Assignment<Lecture, Placement> assignment, Placement placement) {
             if (!placement.hasRoomLocation(getResourceId()))
                 return;
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            TimeLocation time = placement.getTimeLocation();
+            int uselessHalfHours = UselessHalfHours.countUselessSlotsHalfHoursAround(this, time);
+            int brokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatternsAround(this, time);
+            for (int slot: time.getSlotsArray()) {
                 iResource[slot].add(placement);
             }
-            getModel().getCriterion(UselessHalfHours.class).inc(assignment, -iLastUselessHalfHours);
-            iLastUselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this);
-            getModel().getCriterion(UselessHalfHours.class).inc(assignment, iLastUselessHalfHours);
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, -iLastBrokenTimePatterns);
-            iLastBrokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this) / 6.0;
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, iLastBrokenTimePatterns);
+            updateUselessSlots(assignment, time, uselessHalfHours, brokenTimePatterns);
         }
         
         @Override
         public void unassigned(Assignment<Lecture, Placement> assignment, Placement placement) {
             if (!placement.hasRoomLocation(getResourceId()))
                 return;
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            TimeLocation time = placement.getTimeLocation();
+            int uselessHalfHours = UselessHalfHours.countUselessSlotsHalfHoursAround(this, time);
+            int brokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatternsAround(this, time);
+            for (int slot: time.getSlotsArray()) {
                 iResource[slot].remove(placement);
             }
-            getModel().getCriterion(UselessHalfHours.class).inc(assignment, -iLastUselessHalfHours);
-            iLastUselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this);
-            getModel().getCriterion(UselessHalfHours.class).inc(assignment, iLastUselessHalfHours);
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, -iLastBrokenTimePatterns);
-            iLastBrokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this) / 6.0;
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, iLastBrokenTimePatterns);
+            updateUselessSlots(assignment, time, uselessHalfHours, brokenTimePatterns);
+        }
+        
+        /**
+         * Update useless half-hours and broken time patterns penalties after a placement of the given time has been assigned or unassigned.
+         * Only the slots that can be affected by the change are recounted.
+         * @param assignment current assignment
+         * @param time time of the changed placement
+         * @param uselessHalfHours useless half-hours around the given time before the change 
+         * @param brokenTimePatterns broken time patterns around the given time before the change
+         */
+        private void updateUselessSlots(Assignment<Lecture, Placement> assignment, TimeLocation time, int uselessHalfHours, int brokenTimePatterns) {
+            int deltaUselessHalfHours = UselessHalfHours.countUselessSlotsHalfHoursAround(this, time) - uselessHalfHours;
+            double deltaBrokenTimePatterns = (BrokenTimePatterns.countUselessSlotsBrokenTimePatternsAround(this, time) - brokenTimePatterns) / 6.0;
+            if (iCheckUselessSlots) {
+                int expectedUselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this);
+                if (expectedUselessHalfHours != iLastUselessHalfHours + deltaUselessHalfHours) {
+                    sLogger.error("Useless half-hours of " + getName() + " do not match (expected " + expectedUselessHalfHours + ", was " + (iLastUselessHalfHours + deltaUselessHalfHours) + ").");
+                    deltaUselessHalfHours = expectedUselessHalfHours - iLastUselessHalfHours;
+                }
+                double expectedBrokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this) / 6.0;
+                if (Math.abs(expectedBrokenTimePatterns - iLastBrokenTimePatterns - deltaBrokenTimePatterns) > 0.0001) {
+                    sLogger.error("Broken time patterns of " + getName() + " do not match (expected " + expectedBrokenTimePatterns + ", was " + (iLastBrokenTimePatterns + deltaBrokenTimePatterns) + ").");
+                    deltaBrokenTimePatterns = expectedBrokenTimePatterns - iLastBrokenTimePatterns;
+                }
+            }
+            if (deltaUselessHalfHours != 0) {
+                iLastUselessHalfHours += deltaUselessHalfHours;
+                getModel().getCriterion(UselessHalfHours.class).inc(assignment, deltaUselessHalfHours);
+            }
+            if (deltaBrokenTimePatterns != 0.0) {
+                iLastBrokenTimePatterns += deltaBrokenTimePatterns;
+                getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, deltaBrokenTimePatterns);
+            }
         }
         
         public List<Placement> getPlacements(int slot) { return iResource[slot]; }
@@ -625,8 +636,7 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         }
         
         public boolean inConflict(Lecture lecture, TimeLocation time) {
-            for (Enumeration<Integer> e = time.getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: time.getSlotsArray()) {
                 for (Placement confPlacement : getPlacements(slot)) {
                     if (!confPlacement.getTimeLocation().shareWeeks(time.getWeekCode())) continue;
                     if (confPlacement.variable().equals(lecture)) continue;
@@ -1,7 +1,5 @@
 package org.cpsolver.coursett.constraint;
 
-import java.util.BitSet;
-import java.util.Enumeration;
 import java.util.Set;
 
 import org.cpsolver.coursett.Constants;
@@ -120,14 +118,12 @@ public class SoftInstructorConstraint extends InstructorConstraint {
         public boolean inConflict(Assignment<Lecture, Placement> assignment, Placement placement) {
             Lecture lecture = placement.variable();
             Placement current = assignment.getValue(lecture);
-            BitSet weekCode = placement.getTimeLocation().getWeekCode();
             
             if (!isAvailable(lecture, placement)) return true;
             
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
+            for (int slot: placement.getTimeLocation().getSlotsArray()) {
                 for (Placement p : getPlacements(slot)) {
-                    if (!p.equals(current) && p.getTimeLocation().shareWeeks(weekCode)) {
+                    if (!p.equals(current) && p.getTimeLocation().shareWeeks(placement.getTimeLocation())) {
                         if (p.canShareRooms(placement) && p.sameRooms(placement))
                             continue;
                         return true;
@@ -135,8 +131,7 @@ public class SoftInstructorConstraint extends InstructorConstraint {
                 }
             }
             if (!isIgnoreDistances()) {
-                for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-                    int startSlot = e.nextElement();
+                for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
                     
                     int prevSlot = startSlot - 1;
                     if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
@@ -206,35 +206,40 @@ public class BrokenTimePatterns extends TimetablingCriterion {
      **/
     public static int countUselessSlotsBrokenTimePatterns(RoomConstraintContext rc) {
         int ret = 0;
-        for (int d = 0; d < Constants.NR_DAYS; d++) {
-            for (int s = 0; s < Constants.SLOTS_PER_DAY; s++) {
-                int slot = d * Constants.SLOTS_PER_DAY + s;
-                if (rc.getPlacements(slot).isEmpty()) {
-                    switch (d) {
-                        case 0:
-                            if (!rc.getPlacements(2 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(4 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                        case 1:
-                            if (!rc.getPlacements(3 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                        case 2:
-                            if (!rc.getPlacements(0 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(4 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                        case 3:
-                            if (!rc.getPlacements(1 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                        case 4:
-                            if (!rc.getPlacements(0 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(2 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                    }
-                }
-            }
-        }
+        for (int s = 0; s < Constants.SLOTS_PER_DAY; s++)
+            ret += countUselessSlotsBrokenTimePatterns(rc, s);
+        return ret;
+    }
+    
+    /** Number of useless slots for this room that can be affected by a change of the given time, that is
+     * the broken time patterns of all the days at the slots of the given time.
+     * Used by {@link RoomConstraintContext} to update the penalty incrementally (count before and after a change).
+     * @param rc room constraint
+     * @param time time location that is being assigned or unassigned
+     * @return number of broken time patterns at the slots of the given time
+     **/
+    public static int countUselessSlotsBrokenTimePatternsAround(RoomConstraintContext rc, TimeLocation time) {
+        if ((time.getDayCode() & (sDaysMWF | sDaysTTh)) == 0) return 0;
+        int ret = 0;
+        int last = Math.min(Constants.SLOTS_PER_DAY, time.getStartSlot() + time.getLength());
+        for (int s = time.getStartSlot(); s < last; s++)
+            ret += countUselessSlotsBrokenTimePatterns(rc, s);
+        return ret;
+    }
+    
+    /** Number of useless slots for this room at the given slot of the day (on any day of the week) */
+    private static int countUselessSlotsBrokenTimePatterns(RoomConstraintContext rc, int s) {
+        int ret = 0;
+        boolean mon = rc.getPlacements(0 * Constants.SLOTS_PER_DAY + s).isEmpty();
+        boolean tue = rc.getPlacements(1 * Constants.SLOTS_PER_DAY + s).isEmpty();
+        boolean wed = rc.getPlacements(2 * Constants.SLOTS_PER_DAY + s).isEmpty();
+        boolean thu = rc.getPlacements(3 * Constants.SLOTS_PER_DAY + s).isEmpty();
+        boolean fri = rc.getPlacements(4 * Constants.SLOTS_PER_DAY + s).isEmpty();
+        if (mon && !wed && !fri) ret++;
+        if (tue && !thu) ret++;
+        if (wed && !mon && !fri) ret++;
+        if (thu && !tue) ret++;
+        if (fri && !mon && !wed) ret++;
         return ret;
     }
 }
@@ -141,6 +141,29 @@ public class UselessHalfHours extends BrokenTimePatterns {
                 !rc.getPlacements(slot + 6).isEmpty());
     }
 
+    /** Number of useless half hours for this room that can be affected by a change of the given time, that is
+     * the useless half hours starting on the days of the given time from six slots before the start
+     * up to the first slot after the end of the time.
+     * Used by {@link RoomConstraintContext} to update the penalty incrementally (count before and after a change).
+     * @param rc room constraint assignment context
+     * @param time time location that is being assigned or unassigned
+     * @return number of useless half hours in the neighbourhood of the given time
+     **/
+    public static int countUselessSlotsHalfHoursAround(RoomConstraintContext rc, TimeLocation time) {
+        int ret = 0;
+        int first = Math.max(0, time.getStartSlot() - 6);
+        int last = Math.min(Constants.SLOTS_PER_DAY - 1, time.getStartSlot() + time.getLength());
+        for (int d = 0; d < Constants.NR_DAYS; d++) {
+            if ((Constants.DAY_CODES[d] & time.getDayCode()) == 0)
+                continue;
+            for (int s = first; s <= last; s++) {
+                if (isUseless(rc, d * Constants.SLOTS_PER_DAY + s))
+                    ret++;
+            }
+        }
+        return ret;
+    }
+
     /** Number of useless slots for this room 
      * @param rc room constraint assignment context
      * @return current penalty for the given room
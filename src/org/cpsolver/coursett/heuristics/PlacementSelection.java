@@ -5,9 +5,13 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import org.cpsolver.coursett.constraint.RoomConstraint;
+import org.cpsolver.coursett.constraint.RoomConstraint.RoomConstraintContext;
 import org.cpsolver.coursett.criteria.TimetablingCriterion;
+import org.cpsolver.coursett.model.CompactDomain;
 import org.cpsolver.coursett.model.Lecture;
 import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.TimeLocation;
 import org.cpsolver.coursett.model.TimetableModel;
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.criteria.Criterion;
@@ -287,10 +291,15 @@ public class PlacementSelection implements ValueSelection<Lecture, Placement> {
         List<Placement> selectionValues = null;
 
         HeuristicSelector<Placement> selector = (iUseThreshold ? new HeuristicSelector<Placement>(iThresholdKoef) : null);
-        for (Placement value : values) {
-            if (iTabu != null && iTabu.contains(value))
+        CompactDomain compact = (values instanceof CompactDomain ? (CompactDomain) values : null);
+        for (int index = 0; index < values.size(); index++) {
+            // compact domain: check the time and room indexes first, only build the placement when it may be selected
+            if (compact != null && !isCandidate(model, assignment, compact, index, current))
                 continue;
-            if (current != null && current.equals(value))
+            Placement value = values.get(index);
+            if (compact == null && iTabu != null && iTabu.contains(value))
+                continue;
+            if (compact == null && current != null && current.equals(value))
                 continue;
 
             Set<Placement> conflicts = value.variable().getModel().conflictValues(assignment, value);
@@ -398,6 +407,43 @@ public class PlacementSelection implements ValueSelection<Lecture, Placement> {
         }
     }
 
+    /**
+     * Index based check of a placement of a compact domain, done before the placement is created. Returns false when
+     * the placement is the current assignment, it is in the tabu list, or one of its rooms is used (at the placement's time)
+     * by a lecture that cannot be unassigned (see {@link PlacementSelection#containsItselfSingletonOrCommited(TimetableModel, Set, Placement)}).
+     */
+    private boolean isCandidate(TimetableModel model, Assignment<Lecture, Placement> assignment, CompactDomain domain, int index, Placement current) {
+        if (domain.matches(index, current))
+            return false;
+        Lecture lecture = domain.getLecture();
+        if (iTabu != null) {
+            for (Placement tabu : iTabu)
+                if ((tabu.variable() == null || tabu.variable().getClassId().equals(lecture.getClassId())) && domain.matches(index, tabu))
+                    return false;
+        }
+        if (iCanUnassingSingleton && !model.hasConstantVariables())
+            return true;
+        TimeLocation time = domain.getTimeLocation(index);
+        for (int r = 0; r < domain.getNrRooms(); r++) {
+            RoomConstraint room = domain.getRoomLocation(index, r).getRoomConstraint();
+            if (room == null || !room.getConstraint())
+                continue;
+            RoomConstraintContext context = room.getContext(assignment);
+            for (int slot : time.getSlotsArray()) {
+                for (Placement placement : context.getPlacements(slot)) {
+                    Lecture other = placement.variable();
+                    if (other.equals(lecture) || !placement.getTimeLocation().shareWeeks(time) || other.canShareRoom(lecture))
+                        continue;
+                    if (model.hasConstantVariables() && other.isCommitted())
+                        return false;
+                    if (!iCanUnassingSingleton && other.isSingleton())
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private double getCost(Assignment<Lecture, Placement> assignment, int level, Placement value, Set<Placement> conflicts) {
         double ret = 0.0;
         for (Criterion<Lecture, Placement> criterion: value.variable().getModel().getCriteria()) {
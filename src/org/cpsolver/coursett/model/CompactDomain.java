@@ -0,0 +1,211 @@
+package org.cpsolver.coursett.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Compact domain of a {@link Lecture}. Instead of keeping a {@link Placement}
+ * object for each combination of a time and room(s), only the index of the
+ * time location and the indexes of the room locations are stored (in plain
+ * int arrays). Placements are created on demand by {@link #get(int)}. The
+ * initial and the best assignment of the lecture are returned as they are
+ * (when they are part of the domain) so that their identity is kept.<br>
+ * <br>
+ * Time and room locations are taken from the lecture at the time the domain
+ * is created, the domain is not affected by a later change of the lecture's
+ * time or room locations (e.g., by {@link Lecture#purgeInvalidValues(boolean)}).
+ *
+ * @author  Tomas Muller
+ * @version CourseTT 1.3 (University Course Timetabling)<br>
+ *          Copyright (C) 2006 - 2016 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class CompactDomain extends AbstractList<Placement> implements RandomAccess {
+    private Lecture iLecture;
+    private TimeLocation[] iTimeLocations;
+    private RoomLocation[] iRoomLocations;
+    private int iNrRooms;
+    private int[] iTimes;
+    private int[] iRooms;
+    private int iSize = 0;
+
+    /**
+     * Create an empty domain for the given lecture, taking its current time and room locations
+     * @param lecture a lecture
+     */
+    public CompactDomain(Lecture lecture) {
+        iLecture = lecture;
+        iTimeLocations = lecture.timeLocations().toArray(new TimeLocation[lecture.timeLocations().size()]);
+        iRoomLocations = lecture.roomLocations().toArray(new RoomLocation[lecture.roomLocations().size()]);
+        iNrRooms = lecture.getNrRooms();
+        int capacity = Math.max(1, Math.min(1024, iTimeLocations.length * Math.max(1, iRoomLocations.length)));
+        iTimes = new int[capacity];
+        iRooms = new int[iNrRooms == 0 ? 0 : capacity * iNrRooms];
+    }
+
+    /**
+     * Create an empty domain sharing time and room locations of an other domain
+     * @param domain an existing domain
+     * @param capacity initial capacity
+     */
+    public CompactDomain(CompactDomain domain, int capacity) {
+        iLecture = domain.iLecture;
+        iTimeLocations = domain.iTimeLocations;
+        iRoomLocations = domain.iRoomLocations;
+        iNrRooms = domain.iNrRooms;
+        iTimes = new int[Math.max(1, capacity)];
+        iRooms = new int[iNrRooms == 0 ? 0 : Math.max(1, capacity) * iNrRooms];
+    }
+
+    /** Lecture of this domain */
+    public Lecture getLecture() { return iLecture; }
+
+    /** Time locations the time indexes point to */
+    public TimeLocation[] getTimeLocations() { return iTimeLocations; }
+
+    /** Room locations the room indexes point to */
+    public RoomLocation[] getRoomLocations() { return iRoomLocations; }
+
+    /**
+     * Add a placement
+     * @param timeIndex index of the time location
+     * @param roomIndexes indexes of the room locations (in the order in which they are assigned), must be of {@link Lecture#getNrRooms()} length
+     */
+    public void add(int timeIndex, int... roomIndexes) {
+        if (iSize == iTimes.length) {
+            int capacity = 2 * iTimes.length;
+            iTimes = Arrays.copyOf(iTimes, capacity);
+            if (iNrRooms > 0)
+                iRooms = Arrays.copyOf(iRooms, capacity * iNrRooms);
+        }
+        iTimes[iSize] = timeIndex;
+        for (int r = 0; r < iNrRooms; r++)
+            iRooms[iSize * iNrRooms + r] = roomIndexes[r];
+        iSize++;
+        modCount++;
+    }
+
+    /**
+     * Add a placement of the given index of an other domain that is sharing the same time and room locations
+     * @param domain an other domain
+     * @param index placement index
+     */
+    public void add(CompactDomain domain, int index) {
+        add(domain.iTimes[index], iNrRooms == 0 ? null : Arrays.copyOfRange(domain.iRooms, index * iNrRooms, (index + 1) * iNrRooms));
+    }
+
+    /** Release unused capacity */
+    public void trimToSize() {
+        if (iTimes.length > iSize) {
+            iTimes = Arrays.copyOf(iTimes, Math.max(1, iSize));
+            if (iNrRooms > 0)
+                iRooms = Arrays.copyOf(iRooms, Math.max(1, iSize) * iNrRooms);
+        }
+    }
+
+    @Override
+    public int size() {
+        return iSize;
+    }
+
+    /** Time location of the placement with the given index */
+    public TimeLocation getTimeLocation(int index) {
+        if (index < 0 || index >= iSize) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + iSize);
+        return iTimeLocations[iTimes[index]];
+    }
+
+    /** Number of rooms of each placement */
+    public int getNrRooms() {
+        return iNrRooms;
+    }
+
+    /** Room location of the placement with the given index
+     * @param index placement index
+     * @param room room index, between 0 and {@link CompactDomain#getNrRooms()} - 1
+     */
+    public RoomLocation getRoomLocation(int index, int room) {
+        if (index < 0 || index >= iSize) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + iSize);
+        return iRoomLocations[iRooms[index * iNrRooms + room]];
+    }
+
+    /** Check whether the placement with the given index has the same time and room(s) as the given placement */
+    public boolean matches(int index, Placement placement) {
+        if (placement == null) return false;
+        if (!getTimeLocation(index).equals(placement.getTimeLocation())) return false;
+        if (placement.isMultiRoom()) {
+            if (placement.getRoomLocations().size() != iNrRooms) return false;
+            for (int r = 0; r < iNrRooms; r++)
+                if (!placement.getRoomLocations().contains(getRoomLocation(index, r))) return false;
+            return true;
+        } else if (placement.getRoomLocation() == null) {
+            return iNrRooms == 0;
+        } else {
+            return iNrRooms == 1 && placement.getRoomLocation().equals(getRoomLocation(index, 0));
+        }
+    }
+
+    @Override
+    public Placement get(int index) {
+        TimeLocation time = getTimeLocation(index);
+        Placement initial = iLecture.getInitialAssignment();
+        if (initial != null && matches(index, initial)) return initial;
+        Placement best = iLecture.getBestAssignment();
+        if (best != null && matches(index, best)) return best;
+        Placement placement = null;
+        if (iNrRooms == 0) {
+            placement = new Placement(iLecture, time, (RoomLocation) null);
+        } else if (iNrRooms == 1) {
+            placement = new Placement(iLecture, time, getRoomLocation(index, 0));
+        } else {
+            List<RoomLocation> rooms = new ArrayList<RoomLocation>(iNrRooms);
+            for (int r = 0; r < iNrRooms; r++)
+                rooms.add(getRoomLocation(index, r));
+            placement = new Placement(iLecture, time, rooms);
+        }
+        placement.setVariable(iLecture);
+        return placement;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (o == null || !(o instanceof Placement)) return -1;
+        Placement placement = (Placement) o;
+        if (placement.variable() != null && !placement.variable().equals(iLecture)) return -1;
+        for (int i = 0; i < iSize; i++)
+            if (matches(i, placement)) return i;
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if (o == null || !(o instanceof Placement)) return -1;
+        Placement placement = (Placement) o;
+        if (placement.variable() != null && !placement.variable().equals(iLecture)) return -1;
+        for (int i = iSize - 1; i >= 0; i--)
+            if (matches(i, placement)) return i;
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+}
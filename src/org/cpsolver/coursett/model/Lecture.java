@@ -524,6 +524,79 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
         return values;
     }
     
+    /**
+     * Compact domain -- all combinations of room and time locations, stored as indexes in a {@link CompactDomain}
+     * and only materialized into {@link Placement} objects when accessed. Uses the same filtering as
+     * {@link Lecture#computeValues(Assignment, boolean)} for a cached domain (a domain that does not depend on
+     * the current assignment, i.e., {@link Lecture#sSaveMemory} is false and all room combinations are to be considered).
+     * @param allowBreakHard breaking of hard constraints is allowed
+     * @return compact list of possible placements
+     **/
+    public CompactDomain computeCompactValues(boolean allowBreakHard) {
+        CompactDomain values = new CompactDomain(this);
+        TimeLocation[] times = values.getTimeLocations();
+        RoomLocation[] rooms = values.getRoomLocations();
+        Map<RoomLocation, Integer> roomIndexes = null;
+        if (iNrRooms > 1) {
+            roomIndexes = new HashMap<RoomLocation, Integer>();
+            for (int r = 0; r < rooms.length; r++)
+                roomIndexes.put(rooms[r], r);
+        }
+        times: for (int t = 0; t < times.length; t++) {
+            TimeLocation timeLocation = times[t];
+            if (!allowBreakHard && Constants.sPreferenceProhibited.equals(Constants.preferenceLevel2preference(timeLocation.getPreference())))
+                continue;
+            if (timeLocation.getPreference() > 500)
+                continue;
+            for (InstructorConstraint ic : getInstructorConstraints())
+                if (!ic.isAvailable(this, timeLocation) && ic.isHard()) continue times;
+            if (iNrRooms == 0) {
+                Placement p = new Placement(this, timeLocation, (RoomLocation) null);
+                for (InstructorConstraint ic : getInstructorConstraints())
+                    if (!ic.isAvailable(this, p) && ic.isHard()) continue times;
+                values.add(t);
+            } else if (iNrRooms == 1) {
+                rooms: for (int r = 0; r < rooms.length; r++) {
+                    RoomLocation roomLocation = rooms[r];
+                    if (!allowBreakHard && Constants.sPreferenceProhibited.equals(Constants.preferenceLevel2preference(roomLocation.getPreference()))) continue;
+                    if (roomLocation.getPreference() > 500) continue;
+                    if (roomLocation.getRoomConstraint() != null && !roomLocation.getRoomConstraint().isAvailable(this, timeLocation, getScheduler())) continue;
+                    if (!getInstructorConstraints().isEmpty()) {
+                        Placement p = new Placement(this, timeLocation, roomLocation);
+                        for (InstructorConstraint ic : getInstructorConstraints())
+                            if (!ic.isAvailable(this, p) && ic.isHard()) continue rooms;
+                    }
+                    values.add(t, r);
+                }
+            } else {
+                List<RoomLocation> available = new ArrayList<RoomLocation>(rooms.length);
+                rooms: for (RoomLocation room: rooms) {
+                    if (!allowBreakHard && Constants.sPreferenceProhibited.equals(Constants.preferenceLevel2preference(room.getMinPreference()))) continue;
+                    if (room.getMinPreference() > 500) continue;
+                    if (room.getRoomConstraint() != null && !room.getRoomConstraint().isAvailable(this, timeLocation, getScheduler())) continue;
+                    for (InstructorConstraint ic : getInstructorConstraints())
+                        if (!ic.isAvailable(this, new Placement(this, timeLocation, room)) && ic.isHard()) continue rooms;
+                    available.add(room);
+                }
+                if (available.size() < iNrRooms) continue;
+                int[] idx = new int[iNrRooms];
+                for (Enumeration<Collection<RoomLocation>> e = ToolBox.permutations(available, iNrRooms); e.hasMoreElements(); ) {
+                    Collection<RoomLocation> rm = e.nextElement();
+                    if (isTooSmall(rm)) continue;
+                    Placement p = new Placement(this, timeLocation, new ArrayList<RoomLocation>(rm));
+                    if (!checkParents(p)) continue;
+                    if (!allowBreakHard && p.isRoomProhibited()) continue;
+                    int r = 0;
+                    for (RoomLocation room: p.getRoomLocations())
+                        idx[r++] = roomIndexes.get(room);
+                    values.add(t, idx);
+                }
+            }
+        }
+        values.trimToSize();
+        return values;
+    }
+    
     public void clearValueCache() {
         super.setValues(null);
     }
@@ -538,7 +611,7 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
                 setValues(values);
                 return values;
             } else if (isCacheDomain()) {
-                List<Placement> values = computeValues(null, allowBreakHard()); 
+                List<Placement> values = (!isCommitted() && isCompactDomain() ? computeCompactValues(allowBreakHard()) : computeValues(null, allowBreakHard()));
                 setValues(values);
                 return values;
             } else {
@@ -1071,6 +1144,13 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
         return (getModel() == null ? false : ((TimetableModel)getModel()).isAllowBreakHard());
     }
 
+    /**
+     * Use compact domain, see {@link CompactDomain} and {@link TimetableModel#isCompactDomains()}
+     */
+    public boolean isCompactDomain() {
+        return (getModel() == null ? false : ((TimetableModel)getModel()).isCompactDomains());
+    }
+
     public int getNrRooms() {
         return iNrRooms;
     }
@@ -1368,6 +1448,10 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
         TimetableModel model = (TimetableModel) getModel();
         if (model == null)
             return;
+        if (values(null) instanceof CompactDomain) {
+            purgeInvalidCompactValues((CompactDomain) values(null), interactiveMode);
+            return;
+        }
         List<Placement> newValues = new ArrayList<Placement>(values(null).size());
         for (Placement placement : values(null)) {
             if (placement.isValid())
@@ -1408,6 +1492,37 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
         }
         setValues(newValues);
     }
+    
+    /**
+     * Purge invalid values of a compact domain, each placement is only materialized once for the validity check.
+     * Used times and rooms are then computed from the time and room indexes of the remaining placements.
+     */
+    private void purgeInvalidCompactValues(CompactDomain values, boolean interactiveMode) {
+        CompactDomain newValues = new CompactDomain(values, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i).isValid())
+                newValues.add(values, i);
+        }
+        newValues.trimToSize();
+        if (!interactiveMode && newValues.size() != values.size()) {
+            Set<TimeLocation> usedTimes = new HashSet<TimeLocation>();
+            Set<RoomLocation> usedRooms = new HashSet<RoomLocation>();
+            for (int i = 0; i < newValues.size(); i++) {
+                usedTimes.add(newValues.getTimeLocation(i));
+                for (int r = 0; r < newValues.getNrRooms(); r++)
+                    usedRooms.add(newValues.getRoomLocation(i, r));
+            }
+            for (Iterator<TimeLocation> i = timeLocations().iterator(); i.hasNext();) {
+                if (!usedTimes.contains(i.next()))
+                    i.remove();
+            }
+            for (Iterator<RoomLocation> i = roomLocations().iterator(); i.hasNext();) {
+                if (!usedRooms.contains(i.next()))
+                    i.remove();
+            }
+        }
+        setValues(newValues);
+    }
 
     public void setCommitted(boolean committed) {
         iCommitted = committed;
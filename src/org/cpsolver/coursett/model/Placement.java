@@ -1,7 +1,6 @@
 package org.cpsolver.coursett.model;
 
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
 
 import org.cpsolver.coursett.Constants;
@@ -68,7 +67,6 @@ public class Placement extends Value<Lecture, Placement> {
         if (iRoomLocation == null) {
             iRoomLocations = new ArrayList<RoomLocation>(0);
         }
-        iHashCode = getName().hashCode();
     }
 
     public Placement(Lecture lecture, TimeLocation timeLocation, java.util.List<RoomLocation> roomLocations) {
@@ -85,7 +83,6 @@ public class Placement extends Value<Lecture, Placement> {
             if (hasPreferenceByIndex)
                 fixRoomOrder(0, roomLocations, new RoomLocation[iRoomLocations.size()], PreferenceCombination.getDefault(), null);
         }
-        iHashCode = getName().hashCode();
     }
     
     private Integer fixRoomOrder(int idx, List<RoomLocation> rooms, RoomLocation[] current, PreferenceCombination preference, Integer bestSoFar) {
@@ -449,6 +446,8 @@ public class Placement extends Value<Lecture, Placement> {
 
     @Override
     public int hashCode() {
+        if (iHashCode == 0)
+            iHashCode = getName().hashCode();
         return iHashCode;
     }
 
@@ -608,8 +607,7 @@ public class Placement extends Value<Lecture, Placement> {
                 for (RoomLocation roomLocation : getRoomLocations()) {
                     if (roomLocation.getRoomConstraint() != null && !roomLocation.getRoomConstraint().isAvailable(lecture, getTimeLocation(), lecture.getScheduler())) {
                         if (roomLocation.getRoomConstraint().getAvailableArray() != null) {
-                            for (Enumeration<Integer> e = getTimeLocation().getSlots(); e.hasMoreElements();) {
-                                int slot = e.nextElement();
+                            for (int slot: getTimeLocation().getSlotsArray()) {
                                 if (roomLocation.getRoomConstraint().getAvailableArray()[slot] != null) {
                                     for (Placement c : roomLocation.getRoomConstraint().getAvailableArray()[slot]) {
                                         if (c.getTimeLocation().hasIntersection(getTimeLocation()) && !lecture.canShareRoom(c.variable())) {
@@ -625,8 +623,7 @@ public class Placement extends Value<Lecture, Placement> {
             } else {
                 if (getRoomLocation().getRoomConstraint() != null && !getRoomLocation().getRoomConstraint().isAvailable(lecture, getTimeLocation(), lecture.getScheduler()))
                     if (getRoomLocation().getRoomConstraint().getAvailableArray() != null) {
-                        for (Enumeration<Integer> e = getTimeLocation().getSlots(); e.hasMoreElements();) {
-                            int slot = e.nextElement();
+                        for (int slot: getTimeLocation().getSlotsArray()) {
                             if (getRoomLocation().getRoomConstraint().getAvailableArray()[slot] != null) {
                                 for (Placement c : getRoomLocation().getRoomConstraint().getAvailableArray()[slot]) {
                                     if (c.getTimeLocation().hasIntersection(getTimeLocation()) && !lecture.canShareRoom(c.variable())) {
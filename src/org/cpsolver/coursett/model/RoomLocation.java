@@ -41,6 +41,7 @@ public class RoomLocation implements Comparable<RoomLocation> {
     private RoomConstraint iRoomConstraint = null;
     private boolean iIgnoreTooFar = false;
     private Map<Integer, Integer> iPreferenceByIndex = null;
+    private volatile long iDistanceIndex = 0;
 
     /**
      * Constructor
@@ -166,7 +167,7 @@ public class RoomLocation implements Comparable<RoomLocation> {
             return 0.0;
         if (getIgnoreTooFar() || roomLocation.getIgnoreTooFar())
             return 0.0;
-        return m.getDistanceInMeters(getId(), getPosX(), getPosY(), roomLocation.getId(), roomLocation.getPosX(), roomLocation.getPosY());
+        return m.getDistanceInMeters(getDistanceIndex(m), getId(), getPosX(), getPosY(), roomLocation.getDistanceIndex(m), roomLocation.getId(), roomLocation.getPosX(), roomLocation.getPosY());
     }
 
     public int getDistanceInMinutes(DistanceMetric m, RoomLocation roomLocation) {
@@ -174,7 +175,21 @@ public class RoomLocation implements Comparable<RoomLocation> {
             return 0;
         if (getIgnoreTooFar() || roomLocation.getIgnoreTooFar())
             return 0;
-        return  m.getDistanceInMinutes(getId(), getPosX(), getPosY(), roomLocation.getId(), roomLocation.getPosX(), roomLocation.getPosY());
+        return m.getDistanceInMinutes(getDistanceIndex(m), getId(), getPosX(), getPosY(), roomLocation.getDistanceIndex(m), roomLocation.getId(), roomLocation.getPosX(), roomLocation.getPosY());
+    }
+    
+    /**
+     * Compact index of the room in the given distance metric, see {@link DistanceMetric#getRoomIndex(Long)}.
+     * The index is cached together with the id of the metric's room indexes.
+     * @param m distance metric
+     * @return room index
+     */
+    public int getDistanceIndex(DistanceMetric m) {
+        long index = iDistanceIndex;
+        if ((int)(index >>> 32) == m.getRoomIndexesId()) return (int)index;
+        int roomIndex = m.getRoomIndex(getId());
+        iDistanceIndex = (((long)m.getRoomIndexesId()) << 32) | (roomIndex & 0xffffffffl);
+        return roomIndex;
     }
 
     @Override
@@ -46,6 +46,8 @@ public class TimeLocation {
     private int iBreakTime;
 
     private BitSet iWeekCode;
+    private WeekCodes iWeekCodes = null;
+    private int iWeekCodeIndex = -1;
     private Long iDatePatternId = null;
     private String iDatePatternName = null;
     private int iDatePreference;
@@ -265,6 +267,10 @@ public class TimeLocation {
      * @return true if the date patterns overlap
      */
     public boolean shareWeeks(TimeLocation anotherLocation) {
+        if (iWeekCodes != null && iWeekCodes == anotherLocation.iWeekCodes)
+            return iWeekCodes.intersects(iWeekCodeIndex, anotherLocation.iWeekCodeIndex);
+        if (iWeekCode == anotherLocation.iWeekCode)
+            return !iWeekCode.isEmpty();
         return iWeekCode.intersects(anotherLocation.iWeekCode);
     }
 
@@ -273,6 +279,8 @@ public class TimeLocation {
      * @return true if the date patterns overlap
      */
     public boolean shareWeeks(BitSet weekCode) {
+        if (iWeekCode == weekCode)
+            return !iWeekCode.isEmpty();
         return iWeekCode.intersects(weekCode);
     }
 
@@ -310,14 +318,52 @@ public class TimeLocation {
     }
 
     private int[] iDaysCache = null;
+    /** Days 
+     * @return days of week of the time (the returned array is cached and must not be modified)
+     **/
     public int[] getDaysArray() {
-        if (iDaysCache == null) {
-            iDaysCache = new int[getNrMeetings()];
+        int[] days = iDaysCache;
+        if (days == null) {
+            days = new int[getNrMeetings()];
             int i = 0;
             for (Enumeration<Integer> e = getDays(); e.hasMoreElements();)
-                iDaysCache[i++] = e.nextElement();
+                days[i++] = e.nextElement();
+            iDaysCache = days;
+        }
+        return days;
+    }
+    
+    private int[] iSlotsCache = null;
+    /** Used slots, same as {@link TimeLocation#getSlots()} but without any allocation once computed
+     * @return used slots (the returned array is cached and must not be modified)
+     **/
+    public int[] getSlotsArray() {
+        int[] slots = iSlotsCache;
+        if (slots == null) {
+            slots = new int[getNrMeetings() * getLength()];
+            int i = 0;
+            for (int day: getDaysArray())
+                for (int pos = 0; pos < getLength(); pos++)
+                    slots[i++] = day * Constants.SLOTS_PER_DAY + iStartSlot + pos;
+            iSlotsCache = slots;
+        }
+        return slots;
+    }
+    
+    private int[] iStartSlotsCache = null;
+    /** Used start slots (for each meeting), same as {@link TimeLocation#getStartSlots()} but without any allocation once computed
+     * @return start slots for each meeting of the time (the returned array is cached and must not be modified)
+     **/
+    public int[] getStartSlotsArray() {
+        int[] slots = iStartSlotsCache;
+        if (slots == null) {
+            slots = new int[getNrMeetings()];
+            int i = 0;
+            for (int day: getDaysArray())
+                slots[i++] = day * Constants.SLOTS_PER_DAY + iStartSlot;
+            iStartSlotsCache = slots;
         }
-        return iDaysCache;
+        return slots;
     }
 
     /** Text representation 
@@ -413,6 +459,34 @@ public class TimeLocation {
         iDatePatternId = datePatternId;
         iDatePatternName = datePatternName;
         iWeekCode = weekCode;
+        if (iWeekCodes != null) {
+            iWeekCodeIndex = iWeekCodes.index(iWeekCode);
+            iWeekCode = iWeekCodes.get(iWeekCodeIndex);
+        }
+    }
+    
+    /**
+     * Intern the week code of this time using the given registry. Times sharing the same registry
+     * share the same week code instances and check their overlaps using {@link WeekCodes#intersects(int, int)}.
+     * The week code must not be modified afterwards.
+     * @param weekCodes week code registry, typically {@link TimetableModel#getWeekCodes()}
+     */
+    public void setWeekCodes(WeekCodes weekCodes) {
+        iWeekCodes = weekCodes;
+        if (iWeekCodes != null) {
+            iWeekCodeIndex = iWeekCodes.index(iWeekCode);
+            iWeekCode = iWeekCodes.get(iWeekCodeIndex);
+        } else {
+            iWeekCodeIndex = -1;
+        }
+    }
+    
+    /**
+     * Index of the week code in the registry set by {@link TimeLocation#setWeekCodes(WeekCodes)}
+     * @return week code index, -1 if the week code has not been interned
+     */
+    public int getWeekCodeIndex() {
+        return iWeekCodeIndex;
     }
     
     public int getDatePatternPreference() {
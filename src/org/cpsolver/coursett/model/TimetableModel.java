@@ -101,6 +101,8 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
     private boolean iOnFlySectioning = false;
     private int iStudentWorkDayLimit = -1;
     private boolean iAllowBreakHard = false;
+    private boolean iCompactDomains = false;
+    private WeekCodes iWeekCodes = new WeekCodes();
 
     private HashSet<Student> iAllStudents = new HashSet<Student>();
     
@@ -122,6 +124,7 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
         }
         iStudentWorkDayLimit = properties.getPropertyInt("StudentConflict.WorkDayLimit", -1);
         iAllowBreakHard = properties.getPropertyBoolean("General.AllowBreakHard", false);
+        iCompactDomains = properties.getPropertyBoolean("General.CompactDomains", false);
         String criteria = properties.getProperty("General.Criteria",
                 // Objectives
                 StudentConflict.class.getName() + ";" +
@@ -738,6 +741,18 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
     
     public boolean isAllowBreakHard() { return iAllowBreakHard; }
     
+    /**
+     * Use compact domains: class placements are stored as time and room indexes and only created when needed, see {@link CompactDomain}.
+     * Placements returned by {@link Lecture#values(Assignment)} are then not kept in memory, so the same placement may be represented
+     * by different (but equal) objects. Enabled by General.CompactDomains (defaults to false).
+     */
+    public boolean isCompactDomains() { return iCompactDomains; }
+    
+    /**
+     * Week codes (date patterns) of the problem, interned by the loader (see {@link TimeLocation#setWeekCodes(WeekCodes)})
+     */
+    public WeekCodes getWeekCodes() { return iWeekCodes; }
+    
     public boolean isOnFlySectioningEnabled() { return iOnFlySectioning; }
     public void setOnFlySectioningEnabled(boolean onFlySectioning) { iOnFlySectioning = onFlySectioning; }
     
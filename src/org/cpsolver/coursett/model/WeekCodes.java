@@ -0,0 +1,128 @@
+package org.cpsolver.coursett.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interned week codes (date patterns). Each distinct week code is stored only
+ * once and it is given a small unique index. Whether two week codes overlap is
+ * computed only once for each pair of indexes and then kept in a lazily filled
+ * overlap matrix, so that {@link TimeLocation#shareWeeks(TimeLocation)} of two
+ * times with interned week codes is just an array lookup. <br>
+ * <br>
+ * Interned week codes must not be modified. The overlap matrix is filled
+ * without any locking: a missing entry is simply computed again.
+ *
+ * @author  Tomas Muller
+ * @version CourseTT 1.3 (University Course Timetabling)<br>
+ *          Copyright (C) 2006 - 2016 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class WeekCodes {
+    private static final byte sUnknown = 0, sOverlap = 1, sNoOverlap = 2;
+    private Map<BitSet, Integer> iIndexes = new HashMap<BitSet, Integer>();
+    private volatile BitSet[] iWeekCodes = new BitSet[0];
+    private volatile byte[][] iOverlaps = new byte[0][];
+
+    /**
+     * Intern the given week code
+     * @param weekCode a week code
+     * @return index of the week code (equal week codes get the same index)
+     */
+    public synchronized int index(BitSet weekCode) {
+        Integer index = iIndexes.get(weekCode);
+        if (index == null) {
+            index = iWeekCodes.length;
+            BitSet[] weekCodes = Arrays.copyOf(iWeekCodes, index + 1);
+            weekCodes[index] = weekCode;
+            iWeekCodes = weekCodes;
+            iIndexes.put(weekCode, index);
+        }
+        return index;
+    }
+
+    /**
+     * Interned week code of the given index
+     * @param index week code index, as returned by {@link WeekCodes#index(BitSet)}
+     * @return the first week code that has been interned with the index
+     */
+    public BitSet get(int index) {
+        return iWeekCodes[index];
+    }
+
+    /**
+     * Interned instance of the given week code
+     * @param weekCode a week code
+     * @return an equal week code that is shared by all the times using this registry
+     */
+    public BitSet intern(BitSet weekCode) {
+        return get(index(weekCode));
+    }
+
+    /**
+     * Number of distinct week codes
+     */
+    public int size() {
+        return iWeekCodes.length;
+    }
+
+    /**
+     * Check whether two interned week codes overlap
+     * @param i1 index of the first week code
+     * @param i2 index of the second week code
+     * @return true if the two week codes have at least one day in common
+     */
+    public boolean intersects(int i1, int i2) {
+        if (i1 > i2) return intersects(i2, i1);
+        byte[][] overlaps = iOverlaps;
+        if (i1 < overlaps.length) {
+            byte[] row = overlaps[i1];
+            if (row != null && i2 < row.length) {
+                byte overlap = row[i2];
+                if (overlap != sUnknown) return overlap == sOverlap;
+                boolean intersects = iWeekCodes[i1].intersects(iWeekCodes[i2]);
+                row[i2] = (intersects ? sOverlap : sNoOverlap);
+                return intersects;
+            }
+        }
+        boolean intersects = iWeekCodes[i1].intersects(iWeekCodes[i2]);
+        grow(i1)[i2] = (intersects ? sOverlap : sNoOverlap);
+        return intersects;
+    }
+
+    /**
+     * Make sure that the overlap matrix can hold all the currently interned week codes
+     * @return row of the overlap matrix for the given index
+     */
+    private synchronized byte[] grow(int index) {
+        int size = iWeekCodes.length;
+        byte[][] overlaps = iOverlaps;
+        if (overlaps.length < size)
+            overlaps = Arrays.copyOf(overlaps, size);
+        byte[] row = overlaps[index];
+        if (row == null)
+            row = new byte[size];
+        else if (row.length < size)
+            row = Arrays.copyOf(row, size);
+        overlaps[index] = row;
+        iOverlaps = overlaps;
+        return row;
+    }
+}
@@ -190,7 +190,7 @@ public class MistaTables {
         public void add(String problem, ExamModel model) {
             int enrollments = 0;
             for (ExamStudent student: model.getStudents())
-                enrollments += student.variables().size();
+                enrollments += student.getWeight() * student.variables().size();
             
             int examSeating = 0;
             int examsFixedInTime = 0, examsFixedInRoom = 0, examsLarge = 0, examsToSplit = 0, examsWithOriginalRoom = 0;
@@ -229,7 +229,7 @@ public class MistaTables {
             
             add(problem, "Exams", model.variables().size());
             add(problem, "   with exam seating", examSeating);
-            add(problem, "Students", model.getStudents().size());
+            add(problem, "Students", ExamStudent.getNrStudents(model.getStudents()));
             add(problem, "Enrollments", enrollments);
             add(problem, "Distribution constraints", model.getDistributionConstraints().size());
             
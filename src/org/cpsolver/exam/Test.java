@@ -227,7 +227,7 @@ public class Test {
                         + ",INSTANCE,CONFIG");
                 int nrStudentExams = 0;
                 for (ExamStudent student : model.getStudents()) {
-                    nrStudentExams += student.variables().size();
+                    nrStudentExams += student.getWeight() * student.variables().size();
                 }
                 int nrInstructorExams = 0;
                 for (ExamInstructor instructor : model.getInstructors()) {
@@ -251,7 +251,7 @@ public class Test {
                         + ",,");
                 pw.println("MAX"
                         + "," + model.variables().size() + "," + model.getRooms().size() + "," + model.getPeriods().size() + "," + (model.getBackToBackDistance() < 0 ? "" : ",")
-                        + "," + model.getStudents().size() + "," + nrStudentExams + "," + model.getInstructors().size() + "," + nrInstructorExams + (model.getBackToBackDistance() < 0 ? "" : ",")
+                        + "," + ExamStudent.getNrStudents(model.getStudents()) + "," + nrStudentExams + "," + model.getInstructors().size() + "," + nrInstructorExams + (model.getBackToBackDistance() < 0 ? "" : ",")
                         + "," + model.getCriterion(PeriodPenalty.class).getBounds(assignment)[1]
                         + "," + model.getCriterion(RoomPenalty.class).getBounds(assignment)[1]
                         + "," + model.getCriterion(DistributionPenalty.class).getBounds(assignment)[1]
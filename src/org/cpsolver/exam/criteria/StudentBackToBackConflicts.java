@@ -118,6 +118,15 @@ public class StudentBackToBackConflicts extends ExamCriterion {
         Exam exam = value.variable();
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
+        if (((ExamModel)getModel()).isUseJointEnrollments()) {
+            if (period.prev() != null && (isDayBreakBackToBack() || period.prev().getDay() == period.getDay()))
+                for (Exam x : exam.getStudentCorrelatedExams(((ExamModel)getModel()).getExamsOfPeriod(assignment, period.prev())))
+                    penalty += exam.getNrJointEnrollments(x);
+            if (period.next() != null && (isDayBreakBackToBack() || period.next().getDay() == period.getDay()))
+                for (Exam x : exam.getStudentCorrelatedExams(((ExamModel)getModel()).getExamsOfPeriod(assignment, period.next())))
+                    penalty += exam.getNrJointEnrollments(x);
+            return penalty;
+        }
         Map<ExamStudent, Set<Exam>> prev = (period.prev() != null && (isDayBreakBackToBack() || period.prev().getDay() == period.getDay()) ? ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period.prev()) : null);
         Map<ExamStudent, Set<Exam>> next = (period.next() != null && (isDayBreakBackToBack() || period.next().getDay() == period.getDay()) ? ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period.next()) : null);
         for (ExamStudent s : exam.getStudents()) {
@@ -125,14 +134,14 @@ public class StudentBackToBackConflicts extends ExamCriterion {
                 Set<Exam> exams = prev.get(s);
                 if (exams != null) {
                     int nrExams = exams.size() + (exams.contains(exam) ? -1 : 0);
-                    penalty += nrExams;
+                    penalty += s.getWeight() * nrExams;
                 }
             }
             if (next != null) {
                 Set<Exam> exams = next.get(s);
                 if (exams != null) {
                     int nrExams = exams.size() + (exams.contains(exam) ? -1 : 0);
-                    penalty += nrExams;
+                    penalty += s.getWeight() * nrExams;
                 }
             }
         }
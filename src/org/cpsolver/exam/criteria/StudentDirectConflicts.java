@@ -1,6 +1,7 @@
 package org.cpsolver.exam.criteria;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -67,13 +68,22 @@ public class StudentDirectConflicts extends ExamCriterion {
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
         ExamModel m = (ExamModel)getModel();
+        if (m.isUseJointEnrollments() && !m.isCheckForPeriodOverlaps()) {
+            // correlated exams of the period that have no students in common: students of the exam are counted only once
+            List<Exam> correlated = exam.getStudentCorrelatedExams(m.getExamsOfPeriod(assignment, period));
+            if (correlated.size() <= 1 || Exam.isStudentDisjoint(correlated)) {
+                for (Exam x : correlated)
+                    penalty += exam.getNrJointEnrollments(x);
+                return penalty;
+            }
+        }
         Map<ExamStudent, Set<Exam>> students = m.getStudentsOfPeriod(assignment, period);
         for (ExamStudent s : exam.getStudents()) {
             Set<Exam> exams = students.get(s);
             if (exams == null) continue;
             int nrExams = exams.size() + (exams.contains(exam) ? 0 : 1);
             if (nrExams > 1)
-                penalty++;
+                penalty += s.getWeight();
         }
         if (m.isCheckForPeriodOverlaps()) {
             for (ExamPeriod p: m.getPeriods()) {
@@ -86,7 +96,7 @@ public class StudentDirectConflicts extends ExamCriterion {
                             if (other != null && !other.isEmpty())
                                 for (Exam x: other) {
                                     if (period.hasIntersection(exam, x, p)) {
-                                        penalty ++; continue s;
+                                        penalty += s.getWeight(); continue s;
                                     }
                                 }
                         }
@@ -125,10 +135,10 @@ public class StudentDirectConflicts extends ExamCriterion {
         ExamModel m = (ExamModel)getModel();
         for (ExamPeriod p: m.getPeriods()) {
             Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, p);
-            for (Set<Exam> exams: students.values()) {
-                int nrExams = exams.size();
+            for (Map.Entry<ExamStudent, Set<Exam>> entry: students.entrySet()) {
+                int nrExams = entry.getValue().size();
                 if (nrExams > 1)
-                    ret += nrExams - 1;
+                    ret += entry.getKey().getWeight() * (nrExams - 1);
             }
         }
         if (m.isCheckForPeriodOverlaps()) {
@@ -145,7 +155,7 @@ public class StudentDirectConflicts extends ExamCriterion {
                                     x1: for (Exam x1: e.getValue()) {
                                         for (Exam x2: x) {
                                             if (p.hasIntersection(x1, x2, q)) {
-                                                ret += 1; break x1;
+                                                ret += s.getWeight(); break x1;
                                             }
                                         }
                                     }
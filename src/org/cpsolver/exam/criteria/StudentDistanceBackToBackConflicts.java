@@ -114,6 +114,17 @@ public class StudentDistanceBackToBackConflicts extends ExamCriterion {
         if (getBackToBackDistance() < 0) return 0;
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
+        if (((ExamModel)getModel()).isUseJointEnrollments()) {
+            if (period.prev() != null && period.prev().getDay() == period.getDay())
+                for (Exam x : exam.getStudentCorrelatedExams(((ExamModel)getModel()).getExamsOfPeriod(assignment, period.prev())))
+                    if (value.getDistanceInMeters(assignment.getValue(x)) > getBackToBackDistance())
+                        penalty += exam.getNrJointEnrollments(x);
+            if (period.next() != null && period.next().getDay() == period.getDay())
+                for (Exam x : exam.getStudentCorrelatedExams(((ExamModel)getModel()).getExamsOfPeriod(assignment, period.next())))
+                    if (value.getDistanceInMeters(assignment.getValue(x)) > getBackToBackDistance())
+                        penalty += exam.getNrJointEnrollments(x);
+            return penalty;
+        }
         Map<ExamStudent, Set<Exam>> prev = (period.prev() != null && period.prev().getDay() == period.getDay() ? ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period.prev()) : null);
         Map<ExamStudent, Set<Exam>> next = (period.next() != null && period.next().getDay() == period.getDay() ? ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period.next()) : null);
         for (ExamStudent s : exam.getStudents()) {
@@ -124,7 +135,7 @@ public class StudentDistanceBackToBackConflicts extends ExamCriterion {
                         if (x.equals(exam))
                             continue;
                         if (value.getDistanceInMeters(assignment.getValue(x)) > getBackToBackDistance())
-                            penalty++;
+                            penalty += s.getWeight();
                     }
             }
             if (next != null) {
@@ -134,7 +145,7 @@ public class StudentDistanceBackToBackConflicts extends ExamCriterion {
                         if (x.equals(exam))
                             continue;
                         if (value.getDistanceInMeters(assignment.getValue(x)) > getBackToBackDistance())
-                            penalty++;
+                            penalty += s.getWeight();
                     }
             }
         }
@@ -2,6 +2,7 @@ package org.cpsolver.exam.criteria;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -62,13 +63,19 @@ public class StudentMoreThan2ADayConflicts extends ExamCriterion {
         Exam exam = value.variable();
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
+        if (((ExamModel)getModel()).isUseJointEnrollments()) {
+            // a student of the exam needs to attend at least two other exams of the day, these must be correlated with each other
+            List<Exam> correlated = exam.getStudentCorrelatedExams(((ExamModel)getModel()).getExamsOfDay(assignment, period));
+            if (correlated.size() < 2 || Exam.isStudentDisjoint(correlated))
+                return 0;
+        }
         Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfDay(assignment, period);
         for (ExamStudent s : exam.getStudents()) {
             Set<Exam> exams = students.get(s);
             if (exams == null || exams.size() < 2) continue;
             int nrExams = exams.size() + (exams.contains(exam) ? 0 : 1);
             if (nrExams > 2)
-                penalty++;
+                penalty += s.getWeight();
         }
         /*
         for (ExamStudent s : exam.getStudents()) {
@@ -105,10 +112,10 @@ public class StudentMoreThan2ADayConflicts extends ExamCriterion {
         for (ExamPeriod p: m.getPeriods()) {
             if (days.add(p.getDay())) {
                 Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfDay(assignment, p);
-                for (Set<Exam> exams: students.values()) {
-                    int nrExams = exams.size();
+                for (Map.Entry<ExamStudent, Set<Exam>> entry: students.entrySet()) {
+                    int nrExams = entry.getValue().size();
                     if (nrExams > 2)
-                        ret += nrExams - 2;
+                        ret += entry.getKey().getWeight() * (nrExams - 2);
                 }
             }
         }
@@ -48,7 +48,7 @@ public class StudentNotAvailableConflicts extends StudentDirectConflicts {
         int penalty = 0;
         for (ExamStudent s : exam.getStudents()) {
             if (!s.isAvailable(value.getPeriod()))
-                penalty++;
+                penalty += s.getWeight();
         }
         return penalty;
     }
@@ -2,6 +2,7 @@ package org.cpsolver.exam.criteria.additional;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -63,13 +64,22 @@ public class StudentMoreThan1ADayConflicts extends ExamCriterion {
         Exam exam = value.variable();
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
+        if (((ExamModel)getModel()).isUseJointEnrollments()) {
+            // correlated exams of the day that have no students in common: students of the exam are counted only once
+            List<Exam> correlated = exam.getStudentCorrelatedExams(((ExamModel)getModel()).getExamsOfDay(assignment, period));
+            if (correlated.size() <= 1 || Exam.isStudentDisjoint(correlated)) {
+                for (Exam x : correlated)
+                    penalty += exam.getNrJointEnrollments(x);
+                return penalty;
+            }
+        }
         Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfDay(assignment, period);
         for (ExamStudent s : exam.getStudents()) {
             Set<Exam> exams = students.get(s);
             if (exams == null || exams.isEmpty()) continue;
             int nrExams = exams.size() + (exams.contains(exam) ? 0 : 1);
             if (nrExams > 1)
-                penalty++;
+                penalty += s.getWeight();
         }
         /*
         for (ExamStudent s : exam.getStudents()) {
@@ -106,10 +116,10 @@ public class StudentMoreThan1ADayConflicts extends ExamCriterion {
         for (ExamPeriod p: m.getPeriods()) {
             if (days.add(p.getDay())) {
                 Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfDay(assignment, p);
-                for (Set<Exam> exams: students.values()) {
-                    int nrExams = exams.size();
+                for (Map.Entry<ExamStudent, Set<Exam>> entry: students.entrySet()) {
+                    int nrExams = entry.getValue().size();
                     if (nrExams > 1)
-                        ret += nrExams - 1;
+                        ret += entry.getKey().getWeight() * (nrExams - 1);
                 }
             }
         }
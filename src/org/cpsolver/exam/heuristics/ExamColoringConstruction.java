@@ -1,10 +1,9 @@
 package org.cpsolver.exam.heuristics;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -15,7 +14,6 @@ import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriodPlacement;
 import org.cpsolver.exam.model.ExamPlacement;
 import org.cpsolver.exam.model.ExamRoomPlacement;
-import org.cpsolver.exam.model.ExamStudent;
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.heuristics.NeighbourSelection;
 import org.cpsolver.ifs.model.Neighbour;
@@ -176,22 +174,17 @@ public class ExamColoringConstruction implements NeighbourSelection<Exam, ExamPl
         for (Exam x: model.variables()) {
             vertices.put(x, new Vertex(x));
         }
-        for (ExamStudent s: model.getStudents()) {
-            for (Exam x: s.variables()) {
-                for (Exam y: s.variables()) {
-                    if (!x.equals(y)) {
-                        vertices.get(x).neighbors().add(vertices.get(y));
-                        vertices.get(y).neighbors().add(vertices.get(x));
-                    }
-                }
-            }
+        for (Exam x: model.variables()) {
+            Vertex vertex = vertices.get(x);
+            for (Map.Entry<Exam, Integer> jenrl: x.getJointEnrollmentCounts().entrySet())
+                vertex.addNeighbor(vertices.get(jenrl.getKey()), 2 * jenrl.getValue());
         }
         for (ExamInstructor i: model.getInstructors()) {
             for (Exam x: i.variables()) {
                 for (Exam y: i.variables()) {
                     if (!x.equals(y)) {
-                        vertices.get(x).neighbors().add(vertices.get(y));
-                        vertices.get(y).neighbors().add(vertices.get(x));
+                        vertices.get(x).addNeighbor(vertices.get(y), 1);
+                        vertices.get(y).addNeighbor(vertices.get(x), 1);
                     }
                 }
             }
@@ -284,7 +277,8 @@ public class ExamColoringConstruction implements NeighbourSelection<Exam, ExamPl
     /** Internal graph representation -- needed for domain caching */
     private class Vertex implements Comparable<Vertex> {
         private Exam iExam;
-        private List<Vertex> iNeighbors = new ArrayList<Vertex>();
+        private Set<Vertex> iNeighbors = new LinkedHashSet<Vertex>();
+        private int iDegree = 0;
         private int iColor = -1;
         private HashMap<Integer, ExamPeriodPlacement> iDomain = new HashMap<Integer, ExamPeriodPlacement>();
         private HashMap<Integer, Vertex> iTaken = new HashMap<Integer, Vertex>();
@@ -295,7 +289,13 @@ public class ExamColoringConstruction implements NeighbourSelection<Exam, ExamPl
                 iDomain.put(period.getIndex(), period);
         }
         
-        public List<Vertex> neighbors() { return iNeighbors; }
+        public Set<Vertex> neighbors() { return iNeighbors; }
+        
+        /** Add a neighbor, weight is the number of students and instructors in common (counted in both directions) */
+        public void addNeighbor(Vertex vertex, int weight) {
+            iNeighbors.add(vertex);
+            iDegree += weight;
+        }
         
         public Set<Integer> domain() { return iDomain.keySet(); }
         
@@ -371,7 +371,7 @@ public class ExamColoringConstruction implements NeighbourSelection<Exam, ExamPl
         }
         
         public int degree() {
-            return iNeighbors.size();
+            return iDegree;
         }
         
         public int available() {
@@ -1,14 +1,20 @@
 package org.cpsolver.exam.heuristics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.TreeSet;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.logging.log4j.Logger;
 import org.cpsolver.exam.model.Exam;
+import org.cpsolver.exam.model.ExamDistributionConstraint;
+import org.cpsolver.exam.model.ExamInstructor;
 import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriodPlacement;
 import org.cpsolver.exam.model.ExamPlacement;
@@ -59,8 +65,15 @@ import org.cpsolver.ifs.util.ToolBox;
  * <br>
  * Conflict-based Statistics {@link ConflictStatistics} (CBS) can be used
  * instead of (or together with) tabu list, when CBS is used as a solver
- * extension.
- * 
+ * extension. <br>
+ * <br>
+ * The moves can be evaluated in parallel (TabuSearch.Threads), and the
+ * evaluated moves can be kept between iterations so that only the moves that
+ * are affected by the last changes are evaluated again (TabuSearch.CacheMoves).
+ * In both cases, the best moves are the same (and in the same order) as if
+ * all of them were evaluated sequentially, so that the selection stays
+ * reproducible and it does not depend on the number of threads.
+ *
  * @author  Tomas Muller
  * @version ExamTT 1.3 (Examination Timetabling)<br>
  *          Copyright (C) 2008 - 2014 Tomas Muller<br>
@@ -94,6 +107,10 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
     private double iConflictWeight = 1000000;
     private double iValueWeight = 1;
 
+    private int iNrThreads = 1;
+    private boolean iCacheMoves = false;
+    private ForkJoinPool iPool = null;
+
     /**
      * <ul>
      * <li>TabuSearch.MaxIdle ... maximum number of idle iterations (default is
@@ -105,6 +122,12 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
      * <li>Value.ConflictWeight ... weight of a conflicting value (see
      * {@link Model#conflictValues(Assignment, Value)}), it is also weighted by the past
      * occurrences when conflict-based statistics is used
+     * <li>TabuSearch.Threads ... number of threads used to evaluate the
+     * possible moves (default is 1, i.e., no parallel evaluation)
+     * <li>TabuSearch.CacheMoves ... when true, the evaluated moves are kept
+     * between iterations and only moves of the exams that are affected by the
+     * changes in the assignment are evaluated again (only used when no
+     * conflicts are accepted, default is false)
      * </ul>
      * @param properties solver configuration
      * @throws Exception thrown when the initialization fails
@@ -115,12 +138,35 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
         iMaxIdleIterations = properties.getPropertyLong("TabuSearch.MaxIdle", iMaxIdleIterations);
         iConflictWeight = properties.getPropertyDouble("Value.ConflictWeight", iConflictWeight);
         iValueWeight = properties.getPropertyDouble("Value.ValueWeight", iValueWeight);
+        iNrThreads = properties.getPropertyInt("TabuSearch.Threads", iNrThreads);
+        iCacheMoves = properties.getPropertyBoolean("TabuSearch.CacheMoves", iCacheMoves);
+    }
+
+    /**
+     * Pool of TabuSearch.Threads threads used to evaluate the moves in parallel, created when needed
+     * @return the pool, null if the moves are not to be evaluated in parallel
+     */
+    protected synchronized ForkJoinPool getPool() {
+        if (iPool == null && iNrThreads > 1)
+            iPool = new ForkJoinPool(iNrThreads);
+        return iPool;
+    }
+
+    /**
+     * Shut down the pool of threads (if created), it is done when the search is finished
+     */
+    protected synchronized void shutdownPool() {
+        if (iPool != null) {
+            iPool.shutdown();
+            iPool = null;
+        }
     }
 
     /** Initialization */
     @Override
     public void init(Solver<Exam, ExamPlacement> solver) {
         super.init(solver);
+        shutdownPool();
         for (Extension<Exam, ExamPlacement> extension : solver.getExtensions()) {
             if (ConflictStatistics.class.isInstance(extension))
                 iStat = (ConflictStatistics<Exam, ExamPlacement>) extension;
@@ -141,6 +187,7 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
             iFirstIteration = -1;
             if (tabu.size() > 0)
                 tabu.clear();
+            shutdownPool();
             return null;
         }
         if (tabu.size() > 0 && iTabuMaxSize > iTabuMinSize) {
@@ -154,53 +201,20 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
         boolean acceptConflicts = solution.getModel().getBestUnassignedVariables() > 0;
         ExamModel model = (ExamModel) solution.getModel();
         Assignment<Exam, ExamPlacement> assignment = solution.getAssignment();
-        double bestEval = 0.0;
-        List<ExamPlacement> best = null;
-        for (Exam exam : model.variables()) {
-            ExamPlacement assigned = assignment.getValue(exam);
-            double assignedVal = (assigned == null ? iConflictWeight : iValueWeight * assigned.toDouble(assignment));
-            for (ExamPeriodPlacement period : exam.getPeriodPlacements()) {
-                Set<ExamRoomPlacement> rooms = exam.findBestAvailableRooms(assignment, period);
-                if (rooms == null)
-                    rooms = exam.findRoomsRandom(assignment, period, false);
-                if (rooms == null)
-                    continue;
-                ExamPlacement value = new ExamPlacement(exam, period, rooms);
-                if (value.equals(assigned))
-                    continue;
-                double eval = iValueWeight * value.toDouble(assignment) - assignedVal;
-                if (acceptConflicts) {
-                    Set<ExamPlacement> conflicts = model.conflictValues(assignment, value);
-                    for (ExamPlacement conflict : conflicts) {
-                        eval -= iValueWeight * conflict.toDouble(assignment);
-                        eval += iConflictWeight
-                                * (1.0 + (iStat == null ? 0.0 : iStat.countRemovals(solution.getIteration(), conflict,
-                                        value)));
-                    }
-                } else {
-                    if (model.inConflict(assignment, value))
-                        continue;
-                }
-                if (tabu.size() > 0 && tabu.contains(exam.getId() + ":" + value.getPeriod().getIndex())) {
-                    int un = model.variables().size() - assignment.nrAssignedVariables() - (assigned == null ? 0 : 1);
-                    if (un > model.getBestUnassignedVariables())
-                        continue;
-                    if (un == model.getBestUnassignedVariables()
-                            && model.getTotalValue(assignment) + eval >= solution.getBestValue())
-                        continue;
-                }
-                if (best == null || bestEval > eval) {
-                    if (best == null)
-                        best = new ArrayList<ExamPlacement>();
-                    else
-                        best.clear();
-                    best.add(value);
-                    bestEval = eval;
-                } else if (bestEval == eval) {
-                    best.add(value);
-                }
-            }
+        double totalValue = (tabu.size() > 0 ? model.getTotalValue(assignment) : 0.0);
+        Moves moves = null;
+        if (iCacheMoves && !acceptConflicts)
+            moves = getMoveCache(tabu, model).select(solution, tabu, totalValue);
+        else if (iNrThreads > 1 && tabu.isWarmedUp())
+            moves = evaluateInParallel(solution, tabu, acceptConflicts, totalValue);
+        else {
+            moves = new Moves();
+            for (Exam exam : model.variables())
+                evaluate(solution, exam, tabu, acceptConflicts, totalValue, moves);
+            tabu.setWarmedUp(true);
         }
+        double bestEval = moves.getEval();
+        List<ExamPlacement> best = moves.getBest();
 
         if (best == null) {
             sLog.debug("  [tabu] --none--");
@@ -225,6 +239,120 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
         return new SimpleNeighbour<Exam, ExamPlacement>(bestVal.variable(), bestVal);
     }
 
+    /**
+     * Evaluate all the possible moves of the given exam, the acceptable ones
+     * are added into the given list of the best moves
+     */
+    protected void evaluate(Solution<Exam, ExamPlacement> solution, Exam exam, TabuList tabu, boolean acceptConflicts, double totalValue, Moves moves) {
+        ExamModel model = (ExamModel) solution.getModel();
+        Assignment<Exam, ExamPlacement> assignment = solution.getAssignment();
+        ExamPlacement assigned = assignment.getValue(exam);
+        double assignedVal = (assigned == null ? iConflictWeight : iValueWeight * assigned.toDouble(assignment));
+        for (ExamPeriodPlacement period : exam.getPeriodPlacements()) {
+            Set<ExamRoomPlacement> rooms = findRooms(solution, exam, period);
+            if (rooms == null)
+                continue;
+            ExamPlacement value = new ExamPlacement(exam, period, rooms);
+            if (value.equals(assigned))
+                continue;
+            double eval = iValueWeight * value.toDouble(assignment) - assignedVal;
+            if (acceptConflicts) {
+                Set<ExamPlacement> conflicts = model.conflictValues(assignment, value);
+                for (ExamPlacement conflict : conflicts) {
+                    eval -= iValueWeight * conflict.toDouble(assignment);
+                    eval += iConflictWeight
+                            * (1.0 + (iStat == null ? 0.0 : iStat.countRemovals(solution.getIteration(), conflict,
+                                    value)));
+                }
+            } else {
+                if (model.inConflict(assignment, value))
+                    continue;
+            }
+            if (isTabu(solution, tabu, assigned, value, eval, totalValue))
+                continue;
+            moves.add(value, eval);
+        }
+    }
+
+    /**
+     * Evaluate all the possible moves using {@link ForkJoinPool} of TabuSearch.Threads threads. Each exam is
+     * evaluated independently (the assignment is only read), the results are merged in the order of
+     * the exams so that the list of the best moves is the same as if all the moves were evaluated sequentially.
+     */
+    protected Moves evaluateInParallel(final Solution<Exam, ExamPlacement> solution, final TabuList tabu, final boolean acceptConflicts, final double totalValue) {
+        final List<Exam> exams = solution.getModel().variables();
+        final Moves[] moves = new Moves[exams.size()];
+        getPool().invoke(new EvaluationTask(new Evaluation() {
+            @Override
+            public void evaluate(int index) {
+                moves[index] = new Moves();
+                ExamTabuSearch.this.evaluate(solution, exams.get(index), tabu, acceptConflicts, totalValue, moves[index]);
+            }
+        }, 0, exams.size(), Math.max(1, exams.size() / (4 * iNrThreads))));
+        Moves ret = new Moves();
+        for (Moves m : moves)
+            ret.addAll(m);
+        return ret;
+    }
+
+    /**
+     * Best available rooms of the given exam and period, random rooms are used when there are no available rooms.
+     * The random rooms are taken using the random number generator of the move (see {@link ExamTabuSearch#getMoveRandom(long, Exam, ExamPeriodPlacement)}),
+     * so that the result does not depend on the number of threads, on whether the moves are cached, or on the order
+     * in which the exams are evaluated.
+     */
+    protected Set<ExamRoomPlacement> findRooms(Solution<Exam, ExamPlacement> solution, Exam exam, ExamPeriodPlacement period) {
+        Set<ExamRoomPlacement> rooms = exam.findBestAvailableRooms(solution.getAssignment(), period);
+        if (rooms != null)
+            return rooms;
+        Random previous = ToolBox.setThreadRandom(getMoveRandom(solution.getIteration(), exam, period));
+        try {
+            return exam.findRoomsRandom(solution.getAssignment(), period, false);
+        } finally {
+            ToolBox.setThreadRandom(previous);
+        }
+    }
+
+    /**
+     * Random number generator of a move, derived from the solver seed (see {@link ToolBox#getSeed()}), the iteration,
+     * the exam, and the period
+     * @param iteration current iteration
+     * @param exam an exam that is being moved
+     * @param period the period it is being moved to
+     * @return a new random number generator
+     */
+    protected Random getMoveRandom(long iteration, Exam exam, ExamPeriodPlacement period) {
+        SplittableRandom random = new SplittableRandom(ToolBox.getSeed());
+        random = new SplittableRandom(random.nextLong() ^ iteration);
+        random = new SplittableRandom(random.nextLong() ^ exam.getIndex());
+        random = new SplittableRandom(random.nextLong() ^ period.getIndex());
+        return new Random(random.nextLong());
+    }
+
+    /**
+     * A move to a value that is in the tabu list is only allowed when it improves the best ever found solution
+     */
+    protected boolean isTabu(Solution<Exam, ExamPlacement> solution, TabuList tabu, ExamPlacement assigned, ExamPlacement value, double eval, double totalValue) {
+        if (tabu.size() > 0 && tabu.contains(value.variable().getId() + ":" + value.getPeriod().getIndex())) {
+            Model<Exam, ExamPlacement> model = solution.getModel();
+            int un = model.variables().size() - solution.getAssignment().nrAssignedVariables() - (assigned == null ? 0 : 1);
+            if (un > model.getBestUnassignedVariables())
+                return true;
+            if (un == model.getBestUnassignedVariables() && totalValue + eval >= solution.getBestValue())
+                return true;
+        }
+        return false;
+    }
+
+    private MoveCache getMoveCache(TabuList tabu, ExamModel model) {
+        MoveCache cache = tabu.getMoveCache();
+        if (cache == null || !cache.isValid(model)) {
+            cache = new MoveCache(model);
+            tabu.setMoveCache(cache);
+        }
+        return cache;
+    }
+
     /**
      * Value selection
      */
@@ -239,6 +367,7 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
             iFirstIteration = -1;
             if (tabu.size() > 0)
                 tabu.clear();
+            shutdownPool();
             return null;
         }
         if (tabu.size() > 0 && iTabuMaxSize > iTabuMinSize) {
@@ -318,6 +447,8 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
         private HashSet<TabuItem> iList = new HashSet<TabuItem>();
         private int iSize;
         private long iIteration = 0;
+        private boolean iWarmedUp = false;
+        private MoveCache iMoveCache = null;
 
         public TabuList(int size) {
             iSize = size;
@@ -369,12 +500,248 @@ public class ExamTabuSearch extends NeighbourSelectionWithContext<Exam, ExamPlac
             return oldest.getObject();
         }
 
+        /**
+         * True when all the moves have been evaluated at least once (sequentially), so that
+         * all the lazily computed data of the model are already there and the moves can be
+         * evaluated in parallel
+         */
+        public boolean isWarmedUp() {
+            return iWarmedUp;
+        }
+
+        public void setWarmedUp(boolean warmedUp) {
+            iWarmedUp = warmedUp;
+        }
+
+        MoveCache getMoveCache() {
+            return iMoveCache;
+        }
+
+        void setMoveCache(MoveCache cache) {
+            iMoveCache = cache;
+        }
+
         @Override
         public String toString() {
             return new TreeSet<TabuItem>(iList).toString();
         }
     }
 
+    /** Best moves (moves with the lowest evaluation, in the order in which they were evaluated) */
+    protected static class Moves {
+        private double iEval = 0.0;
+        private List<ExamPlacement> iBest = null;
+
+        public void add(ExamPlacement value, double eval) {
+            if (iBest == null || iEval > eval) {
+                if (iBest == null)
+                    iBest = new ArrayList<ExamPlacement>();
+                else
+                    iBest.clear();
+                iBest.add(value);
+                iEval = eval;
+            } else if (iEval == eval) {
+                iBest.add(value);
+            }
+        }
+
+        public void addAll(Moves moves) {
+            if (moves == null || moves.iBest == null)
+                return;
+            if (iBest == null || iEval > moves.iEval) {
+                iBest = new ArrayList<ExamPlacement>(moves.iBest);
+                iEval = moves.iEval;
+            } else if (iEval == moves.iEval) {
+                iBest.addAll(moves.iBest);
+            }
+        }
+
+        public double getEval() {
+            return iEval;
+        }
+
+        public List<ExamPlacement> getBest() {
+            return iBest;
+        }
+    }
+
+    /** Evaluation of the exam of the given index */
+    protected static interface Evaluation {
+        public void evaluate(int index);
+    }
+
+    /** Fork-join task evaluating a range of exams */
+    protected static class EvaluationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private Evaluation iEvaluation;
+        private int iFrom, iTo, iGrain;
+
+        public EvaluationTask(Evaluation evaluation, int from, int to, int grain) {
+            iEvaluation = evaluation;
+            iFrom = from;
+            iTo = to;
+            iGrain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (iTo - iFrom <= iGrain) {
+                for (int i = iFrom; i < iTo; i++)
+                    iEvaluation.evaluate(i);
+            } else {
+                int mid = (iFrom + iTo) >>> 1;
+                invokeAll(new EvaluationTask(iEvaluation, iFrom, mid, iGrain), new EvaluationTask(iEvaluation, mid, iTo, iGrain));
+            }
+        }
+    }
+
+    /**
+     * Moves that have been evaluated in the previous iterations (used when no
+     * conflicts are accepted). For each exam and each of its available periods,
+     * the move (or no move when there are no rooms or the move is in conflict)
+     * and its value are kept. The current assignment is compared with the one
+     * from the previous call, and when an exam has been changed, moves of the
+     * exam, of the exams that share a student, an instructor, or a distribution
+     * constraint with it, of the exams that are placed in its old or new period,
+     * and all the moves into its old or new period are evaluated again.
+     */
+    private class MoveCache {
+        private List<Exam> iExams;
+        private ExamPlacement[] iAssigned;
+        private double[] iAssignedVal;
+        private int[][] iPeriods;
+        private ExamPlacement[][] iValues;
+        private double[][] iValueVals;
+        private boolean[][] iValid;
+        private boolean iInitialized = false;
+
+        MoveCache(ExamModel model) {
+            iExams = new ArrayList<Exam>(model.variables());
+            iAssigned = new ExamPlacement[iExams.size()];
+            iAssignedVal = new double[iExams.size()];
+            iPeriods = new int[iExams.size()][];
+            iValues = new ExamPlacement[iExams.size()][];
+            iValueVals = new double[iExams.size()][];
+            iValid = new boolean[iExams.size()][];
+            for (int i = 0; i < iExams.size(); i++) {
+                List<ExamPeriodPlacement> periods = iExams.get(i).getPeriodPlacements();
+                iPeriods[i] = new int[periods.size()];
+                for (int k = 0; k < periods.size(); k++)
+                    iPeriods[i][k] = periods.get(k).getIndex();
+                iValues[i] = new ExamPlacement[periods.size()];
+                iValueVals[i] = new double[periods.size()];
+                iValid[i] = new boolean[periods.size()];
+            }
+        }
+
+        /** False when the cache no longer matches the model */
+        boolean isValid(ExamModel model) {
+            return iExams.size() == model.variables().size();
+        }
+
+        /** Invalidate moves that are affected by the changes since the last call */
+        private void invalidate(Assignment<Exam, ExamPlacement> assignment) {
+            if (!iInitialized) {
+                for (int i = 0; i < iExams.size(); i++)
+                    iAssigned[i] = assignment.getValue(iExams.get(i));
+                iInitialized = true;
+                return;
+            }
+            Set<Exam> dirty = new HashSet<Exam>();
+            Set<Integer> periods = new HashSet<Integer>();
+            for (int i = 0; i < iExams.size(); i++) {
+                Exam exam = iExams.get(i);
+                ExamPlacement current = assignment.getValue(exam);
+                ExamPlacement previous = iAssigned[i];
+                if (current == null ? previous == null : current.equals(previous))
+                    continue;
+                iAssigned[i] = current;
+                dirty.add(exam);
+                dirty.addAll(exam.getJointEnrollments().keySet());
+                for (ExamInstructor instructor : exam.getInstructors())
+                    dirty.addAll(instructor.variables());
+                for (ExamDistributionConstraint dc : exam.getDistributionConstraints())
+                    dirty.addAll(dc.variables());
+                if (previous != null)
+                    periods.add(previous.getPeriod().getIndex());
+                if (current != null)
+                    periods.add(current.getPeriod().getIndex());
+            }
+            if (dirty.isEmpty())
+                return;
+            for (int i = 0; i < iExams.size(); i++) {
+                if (dirty.contains(iExams.get(i)) || (iAssigned[i] != null && periods.contains(iAssigned[i].getPeriod().getIndex()))) {
+                    Arrays.fill(iValid[i], false);
+                } else {
+                    for (int k = 0; k < iPeriods[i].length; k++)
+                        if (periods.contains(iPeriods[i][k]))
+                            iValid[i][k] = false;
+                }
+            }
+        }
+
+        /** Evaluate invalid moves of the exam of the given index */
+        private void evaluate(Solution<Exam, ExamPlacement> solution, int index) {
+            boolean[] valid = iValid[index];
+            boolean changed = false;
+            for (int k = 0; k < valid.length; k++)
+                if (!valid[k]) { changed = true; break; }
+            if (!changed)
+                return;
+            Assignment<Exam, ExamPlacement> assignment = solution.getAssignment();
+            Exam exam = iExams.get(index);
+            ExamPlacement assigned = iAssigned[index];
+            iAssignedVal[index] = (assigned == null ? iConflictWeight : iValueWeight * assigned.toDouble(assignment));
+            List<ExamPeriodPlacement> periods = exam.getPeriodPlacements();
+            for (int k = 0; k < valid.length; k++) {
+                if (valid[k])
+                    continue;
+                valid[k] = true;
+                iValues[index][k] = null;
+                Set<ExamRoomPlacement> rooms = findRooms(solution, exam, periods.get(k));
+                if (rooms == null)
+                    continue;
+                ExamPlacement value = new ExamPlacement(exam, periods.get(k), rooms);
+                if (value.equals(assigned))
+                    continue;
+                if (solution.getModel().inConflict(assignment, value))
+                    continue;
+                iValues[index][k] = value;
+                iValueVals[index][k] = iValueWeight * value.toDouble(assignment);
+            }
+        }
+
+        /** Re-evaluate the affected moves and return the best ones */
+        Moves select(final Solution<Exam, ExamPlacement> solution, TabuList tabu, double totalValue) {
+            invalidate(solution.getAssignment());
+            if (iNrThreads > 1 && tabu.isWarmedUp()) {
+                getPool().invoke(new EvaluationTask(new Evaluation() {
+                    @Override
+                    public void evaluate(int index) {
+                        MoveCache.this.evaluate(solution, index);
+                    }
+                }, 0, iExams.size(), Math.max(1, iExams.size() / (4 * iNrThreads))));
+            } else {
+                for (int i = 0; i < iExams.size(); i++)
+                    evaluate(solution, i);
+                tabu.setWarmedUp(true);
+            }
+            Moves moves = new Moves();
+            for (int i = 0; i < iExams.size(); i++) {
+                for (int k = 0; k < iValues[i].length; k++) {
+                    ExamPlacement value = iValues[i][k];
+                    if (value == null)
+                        continue;
+                    double eval = iValueVals[i][k] - iAssignedVal[i];
+                    if (isTabu(solution, tabu, iAssigned[i], value, eval, totalValue))
+                        continue;
+                    moves.add(value, eval);
+                }
+            }
+            return moves;
+        }
+    }
+
     /** Tabu item (an item in {@link TabuList}) */
     private static class TabuItem implements Comparable<TabuItem> {
         private Object iObject;
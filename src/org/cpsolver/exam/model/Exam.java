@@ -91,6 +91,7 @@ public class Exam extends Variable<Exam, ExamPlacement> {
     private boolean iAltSeating = false;
     private int iAveragePeriod = -1;
     private Integer iSize = null;
+    private Integer iNrStudents = null;
     private Integer iPrintOffset = null;
 
     private ArrayList<ExamOwner> iOwners = new ArrayList<ExamOwner>();
@@ -158,7 +159,29 @@ public class Exam extends Variable<Exam, ExamPlacement> {
      * @return examination size
      */
     public int getSize() {
-        return (iSize == null ? Math.max(iMinSize, getStudents().size()) : iSize.intValue());
+        return (iSize == null ? Math.max(iMinSize, getNrStudents()) : iSize.intValue());
+    }
+
+    /**
+     * Number of students enrolled into the exam, i.e., the sum of weights of
+     * the students {@link Exam#getStudents()} (see {@link ExamStudent#getWeight()}).
+     * @return number of students
+     */
+    public int getNrStudents() {
+        Integer nrStudents = iNrStudents;
+        if (nrStudents == null) {
+            int count = 0;
+            for (ExamStudent student : iStudents)
+                count += student.getWeight();
+            nrStudents = count;
+            iNrStudents = nrStudents;
+        }
+        return nrStudents;
+    }
+
+    /** Clear the cached number of students, called when the students or their weights change */
+    void clearNrStudents() {
+        iNrStudents = null;
     }
 
     /**
@@ -475,8 +498,12 @@ public class Exam extends Variable<Exam, ExamPlacement> {
      */
     @Override
     public void addContstraint(Constraint<Exam, ExamPlacement> constraint) {
-        if (constraint instanceof ExamStudent)
+        if (constraint instanceof ExamStudent) {
             iStudents.add((ExamStudent) constraint);
+            iNrStudents = null;
+            for (Exam exam : constraint.variables())
+                exam.clearJointEnrollments();
+        }
         if (constraint instanceof ExamDistributionConstraint)
             iDistConstraints.add((ExamDistributionConstraint) constraint);
         if (constraint instanceof ExamInstructor)
@@ -495,8 +522,12 @@ public class Exam extends Variable<Exam, ExamPlacement> {
      */
     @Override
     public void removeContstraint(Constraint<Exam, ExamPlacement> constraint) {
-        if (constraint instanceof ExamStudent)
+        if (constraint instanceof ExamStudent) {
             iStudents.remove(constraint);
+            iNrStudents = null;
+            for (Exam exam : constraint.variables())
+                exam.clearJointEnrollments();
+        }
         if (constraint instanceof ExamDistributionConstraint)
             iDistConstraints.remove(constraint);
         if (constraint instanceof ExamInstructor)
@@ -885,7 +916,7 @@ public class Exam extends Variable<Exam, ExamPlacement> {
             Set<Exam> exams = studentsOfPeriod.get(s);
             if (exams == null) continue;
             for (Exam exam : exams) {
-                if (!exam.equals(this) && !s.canConflict(this, exam)) conf++;
+                if (!exam.equals(this) && !s.canConflict(this, exam)) conf += s.getWeight();
             }
         }
         return conf;
@@ -1021,6 +1052,99 @@ public class Exam extends Variable<Exam, ExamPlacement> {
         return iJenrls;
     }
 
+    private volatile Map<Exam, Integer> iJenrlCounts = null;
+
+    /**
+     * Joint enrollment counts, a sparse row of the exam &times; exam matrix of
+     * students in common
+     * 
+     * @return table {@link Exam} (an exam that has at least one student in
+     *         common with this exam) &rarr; number of students in common
+     *         (weighted by {@link ExamStudent#getWeight()})
+     */
+    public Map<Exam, Integer> getJointEnrollmentCounts() {
+        Map<Exam, Integer> counts = iJenrlCounts;
+        if (counts == null) {
+            counts = new HashMap<Exam, Integer>();
+            for (ExamStudent student : getStudents()) {
+                for (Exam other : student.variables()) {
+                    if (other.equals(this))
+                        continue;
+                    Integer count = counts.get(other);
+                    counts.put(other, (count == null ? 0 : count.intValue()) + student.getWeight());
+                }
+            }
+            iJenrlCounts = counts;
+        }
+        return counts;
+    }
+
+    /**
+     * Number of students in common with the given exam
+     * 
+     * @param other an other exam
+     * @return number of students attending both exams (weighted by
+     *         {@link ExamStudent#getWeight()}), zero if the two exams are not
+     *         correlated
+     */
+    public int getNrJointEnrollments(Exam other) {
+        Integer count = getJointEnrollmentCounts().get(other);
+        return (count == null ? 0 : count.intValue());
+    }
+
+    /**
+     * Exams of the given set that are correlated with this exam (there is at
+     * least one student attending both exams)
+     *
+     * @param exams a set of exams, e.g., exams assigned to a period
+     * @return correlated exams of the given set, excluding this exam
+     */
+    public List<Exam> getStudentCorrelatedExams(Set<Exam> exams) {
+        Map<Exam, Integer> counts = getJointEnrollmentCounts();
+        List<Exam> ret = new ArrayList<Exam>();
+        if (counts.size() < exams.size()) {
+            for (Exam other : counts.keySet())
+                if (exams.contains(other))
+                    ret.add(other);
+        } else {
+            for (Exam other : exams)
+                if (counts.containsKey(other))
+                    ret.add(other);
+        }
+        return ret;
+    }
+
+    /**
+     * True if there is no student attending any two of the given exams
+     * 
+     * @param exams exams to check
+     * @return true if no two of the given exams are correlated
+     */
+    public static boolean isStudentDisjoint(Collection<Exam> exams) {
+        for (Exam x : exams) {
+            Map<Exam, Integer> counts = x.getJointEnrollmentCounts();
+            if (counts.isEmpty())
+                continue;
+            for (Exam y : exams) {
+                if (!x.equals(y) && counts.containsKey(y))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clear the cached joint enrollments, called when the students or their
+     * weights change
+     */
+    void clearJointEnrollments() {
+        synchronized (this) {
+            iCorrelatedExams = null;
+        }
+        iJenrls = null;
+        iJenrlCounts = null;
+    }
+
     /**
      * Courses and/or sections that are having this exam
      * 
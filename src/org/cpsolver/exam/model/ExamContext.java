@@ -14,6 +14,8 @@ public class ExamContext implements AssignmentConstraintContext<Exam, ExamPlacem
     private Map<ExamStudent, Set<Exam>>[] iStudentDayTable;
     private Map<ExamInstructor, Set<Exam>>[] iInstructorTable;
     private Map<ExamInstructor, Set<Exam>>[] iInstructorDayTable;
+    private Set<Exam>[] iExamTable;
+    private Set<Exam>[] iExamDayTable;
     
     @SuppressWarnings("unchecked")
     public ExamContext(ExamModel model, Assignment<Exam, ExamPlacement> assignment) {
@@ -29,6 +31,12 @@ public class ExamContext implements AssignmentConstraintContext<Exam, ExamPlacem
         iInstructorDayTable = new Map[model.getNrDays()];
         for (int i = 0; i < iInstructorDayTable.length; i++)
             iInstructorDayTable[i] = new HashMap<ExamInstructor, Set<Exam>>();
+        iExamTable = new Set[model.getNrPeriods()];
+        for (int i = 0; i < iExamTable.length; i++)
+            iExamTable[i] = new HashSet<Exam>();
+        iExamDayTable = new Set[model.getNrDays()];
+        for (int i = 0; i < iExamDayTable.length; i++)
+            iExamDayTable[i] = new HashSet<Exam>();
         for (Exam exam: model.variables()) {
             ExamPlacement placement = assignment.getValue(exam);
             if (placement != null)
@@ -40,6 +48,8 @@ public class ExamContext implements AssignmentConstraintContext<Exam, ExamPlacem
     public void assigned(Assignment<Exam, ExamPlacement> assignment, ExamPlacement placement) {
         int period = placement.getPeriod().getIndex();
         int day = placement.getPeriod().getDay();
+        iExamTable[period].add(placement.variable());
+        iExamDayTable[day].add(placement.variable());
         for (ExamStudent student: placement.variable().getStudents()) {
             Set<Exam> examsThisPeriod = iStudentTable[period].get(student);
             if (examsThisPeriod == null) {
@@ -74,6 +84,8 @@ public class ExamContext implements AssignmentConstraintContext<Exam, ExamPlacem
     public void unassigned(Assignment<Exam, ExamPlacement> assignment, ExamPlacement placement) {
         int period = placement.getPeriod().getIndex();
         int day = placement.getPeriod().getDay();
+        iExamTable[period].remove(placement.variable());
+        iExamDayTable[day].remove(placement.variable());
         for (ExamStudent student: placement.variable().getStudents()) {
             Set<Exam> examsThisPeriod = iStudentTable[period].get(student);
             examsThisPeriod.remove(placement.variable());
@@ -102,4 +114,8 @@ public class ExamContext implements AssignmentConstraintContext<Exam, ExamPlacem
     public Map<ExamInstructor, Set<Exam>> getInstructorsOfPeriod(int period) { return iInstructorTable[period]; }
     
     public Map<ExamInstructor, Set<Exam>> getInstructorsOfDay(int day) { return iInstructorDayTable[day]; }
+    
+    public Set<Exam> getExamsOfPeriod(int period) { return iExamTable[period]; }
+    
+    public Set<Exam> getExamsOfDay(int day) { return iExamDayTable[day]; }
 }
@@ -1,6 +1,7 @@
 package org.cpsolver.exam.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.HashMap;
@@ -143,6 +144,7 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
     private List<ExamInstructor> iInstructors = new ArrayList<ExamInstructor>();
     private ExamRoomSharing iRoomSharing = null;
     private boolean iCheckForPeriodOverlaps = false;
+    private boolean iUseJointEnrollments = true;
 
     private DistanceMetric iDistanceMetric = null;
 
@@ -157,6 +159,7 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
         iProperties = properties;
         iMaxRooms = properties.getPropertyInt("Exams.MaxRooms", iMaxRooms);
         iCheckForPeriodOverlaps = properties.getPropertyBoolean("Exams.CheckForPeriodOverlaps", iCheckForPeriodOverlaps);
+        iUseJointEnrollments = properties.getPropertyBoolean("Exams.UseJointEnrollments", iUseJointEnrollments);
         iDistanceMetric = new DistanceMetric(properties);
         String roomSharingClass = properties.getProperty("Exams.RoomSharingClass");
         if (roomSharingClass != null) {
@@ -270,6 +273,14 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
     public void setCheckForPeriodOverlaps(boolean check) {
         iCheckForPeriodOverlaps = check;
     }
+    
+    /**
+     * Use joint enrollment counts ({@link Exam#getJointEnrollmentCounts()}) together with the exams assigned
+     * to a period or a day ({@link ExamModel#getExamsOfPeriod(Assignment, ExamPeriod)}) to compute student conflicts
+     * of a placement from the correlated exams only, instead of iterating over all the students of the exam
+     * @return true if joint enrollment counts are to be used
+     */
+    public boolean isUseJointEnrollments() { return iUseJointEnrollments; }
 
     /**
      * Add a period
@@ -435,11 +446,14 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
         info.put("Number of Periods", String.valueOf(getPeriods().size()));
         info.put("Number of Exams", String.valueOf(variables().size()));
         info.put("Number of Rooms", String.valueOf(getRooms().size()));
-        info.put("Number of Students", String.valueOf(getStudents().size()));
-        int nrStudentExams = 0;
+        int nrStudents = 0, nrStudentExams = 0;
         for (ExamStudent student : getStudents()) {
-            nrStudentExams += student.getOwners().size();
+            nrStudents += student.getWeight();
+            nrStudentExams += student.getWeight() * student.getOwners().size();
         }
+        info.put("Number of Students", String.valueOf(nrStudents));
+        if (nrStudents > getStudents().size())
+            info.put("Number of Student Groups", String.valueOf(getStudents().size()));
         info.put("Number of Student Exams", String.valueOf(nrStudentExams));
         int nrAltExams = 0, nrSmallExams = 0;
         for (Exam exam : variables()) {
@@ -454,7 +468,7 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
         for (int i = 0; i <= 10; i++)
             nbrMtgs[i] = 0;
         for (ExamStudent student : getStudents()) {
-            nbrMtgs[Math.min(10, student.variables().size())]++;
+            nbrMtgs[Math.min(10, student.variables().size())] += student.getWeight();
         }
         for (int i = 0; i <= 10; i++) {
             if (nbrMtgs[i] == 0)
@@ -508,6 +522,51 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
         return iStudents;
     }
 
+    /**
+     * Aggregate students that are enrolled into the same exams (with the same
+     * owners), have the same availability, and the same direct conflict
+     * setting into a single student with the appropriate weight (see
+     * {@link ExamStudent#getWeight()}). This reduces the number of student
+     * constraints (and the work needed to evaluate the student criteria)
+     * without changing the value of any of the student criteria. It must be
+     * called before the model is initialized and before anything is assigned.
+     * This method is called when the problem is loaded from XML and
+     * Exams.AggregateStudents is set to true.
+     */
+    public void aggregateStudents() {
+        int before = getStudents().size();
+        Map<String, ExamStudent> groups = new HashMap<String, ExamStudent>();
+        for (Iterator<ExamStudent> i = getStudents().iterator(); i.hasNext(); ) {
+            ExamStudent student = i.next();
+            List<Long> exams = new ArrayList<Long>();
+            for (Exam exam : student.variables())
+                exams.add(exam.getId());
+            Collections.sort(exams);
+            List<Long> owners = new ArrayList<Long>();
+            for (ExamOwner owner : student.getOwners())
+                owners.add(owner.getId());
+            Collections.sort(owners);
+            StringBuffer key = new StringBuffer(student.isAllowDirectConflicts() ? "D" : "N");
+            key.append(exams).append(owners);
+            for (ExamPeriod period : getPeriods())
+                key.append(student.isAvailable(period) ? '1' : '0');
+            ExamStudent group = groups.get(key.toString());
+            if (group == null) {
+                groups.put(key.toString(), student);
+                continue;
+            }
+            group.setWeight(group.getWeight() + student.getWeight());
+            for (Exam exam : new ArrayList<Exam>(student.variables()))
+                student.removeVariable(exam);
+            for (ExamOwner owner : student.getOwners())
+                owner.getStudents().remove(student);
+            removeConstraint(student);
+            i.remove();
+        }
+        if (getStudents().size() < before)
+            sLog.info("  " + before + " students aggregated into " + getStudents().size() + " student groups");
+    }
+
     /**
      * Problem instructors
      * 
@@ -628,7 +687,7 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
             if (exam.getPrintOffset() != null && !anonymize)
                 ex.addAttribute("printOffset", exam.getPrintOffset().toString());
             if (!anonymize)
-                ex.addAttribute("enrl", String.valueOf(exam.getStudents().size()));
+                ex.addAttribute("enrl", String.valueOf(exam.getNrStudents()));
             if (!anonymize)
                 for (ExamOwner owner : exam.getOwners()) {
                     Element o = ex.addElement("owner");
@@ -686,6 +745,8 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
         for (ExamStudent student : getStudents()) {
             Element s = students.addElement("student");
             s.addAttribute("id", getId(idconv, "student", String.valueOf(student.getId())));
+            if (student.getWeight() != 1)
+                s.addAttribute("weight", String.valueOf(student.getWeight()));
             for (Exam ex : student.variables()) {
                 Element x = s.addElement("exam").addAttribute("id",
                         getId(idconv, "exam", String.valueOf(ex.getId())));
@@ -746,6 +807,8 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
                     Set<Exam> examsOfStudent = entry.getValue();
                     if (examsOfStudent.size() > 1) {
                         Element dir = conflicts.addElement("direct").addAttribute("student", getId(idconv, "student", String.valueOf(student.getId())));
+                        if (student.getWeight() != 1)
+                            dir.addAttribute("weight", String.valueOf(student.getWeight()));
                         for (Exam exam : examsOfStudent) {
                             dir.addElement("exam").addAttribute("id", getId(idconv, "exam", String.valueOf(exam.getId())));
                         }
@@ -756,6 +819,8 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
                             for (Exam ex1 : previousExamsOfStudent)
                                 for (Exam ex2 : examsOfStudent) {
                                     Element btb = conflicts.addElement("back-to-back").addAttribute("student", getId(idconv, "student", String.valueOf(student.getId())));
+                                    if (student.getWeight() != 1)
+                                        btb.addAttribute("weight", String.valueOf(student.getWeight()));
                                     btb.addElement("exam").addAttribute("id", getId(idconv, "exam", String.valueOf(ex1.getId())));
                                     btb.addElement("exam").addAttribute("id", getId(idconv, "exam", String.valueOf(ex2.getId())));
                                     if (getBackToBackDistance() >= 0 && period.prev().getDay() == period.getDay()) {
@@ -774,6 +839,8 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
                         Set<Exam> examsOfStudent = entry.getValue();
                         if (examsOfStudent.size() > 2) {
                             Element mt2 = conflicts.addElement("more-2-day").addAttribute("student", getId(idconv, "student", String.valueOf(student.getId())));
+                            if (student.getWeight() != 1)
+                                mt2.addAttribute("weight", String.valueOf(student.getWeight()));
                             for (Exam exam : examsOfStudent) {
                                 mt2.addElement("exam").addAttribute("id", getId(idconv, "exam", String.valueOf(exam.getId())));
                             }
@@ -1104,9 +1171,13 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
                 if ("false".equals(pe.attributeValue("available")))
                     student.setAvailable(period.getIndex(), false);
             }
+            if (e.attributeValue("weight") != null)
+                student.setWeight(Integer.parseInt(e.attributeValue("weight")));
             addConstraint(student);
             getStudents().add(student);
         }
+        if (getProperties().getPropertyBoolean("Exams.AggregateStudents", false))
+            aggregateStudents();
         if (root.element("instructors") != null)
             for (Iterator<?> i = root.element("instructors").elementIterator("instructor"); i.hasNext();) {
                 Element e = (Element) i.next();
@@ -1211,6 +1282,14 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
         return getContext(assignment).getStudentsOfDay(day);
     }
     
+    public Set<Exam> getExamsOfPeriod(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
+        return getContext(assignment).getExamsOfPeriod(period.getIndex());
+    }
+    
+    public Set<Exam> getExamsOfDay(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
+        return getContext(assignment).getExamsOfDay(period.getDay());
+    }
+    
     public Map<ExamInstructor, Set<Exam>> getInstructorsOfPeriod(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
         return getContext(assignment).getInstructorsOfPeriod(period.getIndex());
     }
@@ -2,10 +2,8 @@ package org.cpsolver.exam.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.ifs.assignment.Assignment;
@@ -45,6 +43,7 @@ public class ExamRoom extends ConstraintWithContext<Exam, ExamPlacement, ExamRoo
     private int[] iPenalty;
     private String iName;
     private int iSize, iAltSize;
+    private int iDistanceIndex;
     private Double iCoordX, iCoordY;
     private boolean iHard = true;
     
@@ -77,6 +76,7 @@ public class ExamRoom extends ConstraintWithContext<Exam, ExamPlacement, ExamRoo
         iCoordY = coordY;
         iSize = size;
         iAltSize = altSize;
+        iDistanceIndex = model.getDistanceMetric().getRoomIndex(id);
         iAvailable = new boolean[model.getNrPeriods()];
         iPenalty = new int[model.getNrPeriods()];
         for (int i = 0; i < iAvailable.length; i++) {
@@ -90,7 +90,6 @@ public class ExamRoom extends ConstraintWithContext<Exam, ExamPlacement, ExamRoo
     @Override
     public boolean isHard() { return iHard; }
     
-    private Map<Long, Double> iDistanceCache = new HashMap<Long, Double>();
     /**
      * Distance between two rooms. See {@link DistanceMetric}
      * 
@@ -99,14 +98,8 @@ public class ExamRoom extends ConstraintWithContext<Exam, ExamPlacement, ExamRoo
      * @return distance between this and the given room
      */
     public double getDistanceInMeters(ExamRoom other) {
-        synchronized (iDistanceCache) {
-            Double distance = iDistanceCache.get(other.getId());
-            if (distance == null) {
-                distance = ((ExamModel)getModel()).getDistanceMetric().getDistanceInMeters(getId(), getCoordX(), getCoordY(), other.getId(), other.getCoordX(), other.getCoordY());
-                iDistanceCache.put(other.getId(), distance);
-            }
-            return distance;
-        }
+        DistanceMetric m = ((ExamModel)getModel()).getDistanceMetric();
+        return m.getDistanceInMeters(iDistanceIndex, getId(), getCoordX(), getCoordY(), other.iDistanceIndex, other.getId(), other.getCoordX(), other.getCoordY());
     }
 
     /**
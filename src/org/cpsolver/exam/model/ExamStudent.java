@@ -1,6 +1,7 @@
 package org.cpsolver.exam.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -37,6 +38,7 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
     private boolean iAllowDirectConflicts = true;
     private List<ExamOwner> iOwners = new ArrayList<ExamOwner>();
     private boolean[] iAvailable = null;
+    private int iWeight = 1;
 
     /**
      * Constructor
@@ -69,6 +71,41 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
         iAllowDirectConflicts = allowDirectConflicts;
     }
 
+    /**
+     * Number of students that are represented by this student. It is greater
+     * than one when students with the same exams, owners, and availability are
+     * aggregated into a single constraint (see {@link ExamModel#aggregateStudents()}).
+     * All student conflicts of this student are counted this many times.
+     * @return student weight, 1 by default
+     */
+    public int getWeight() {
+        return iWeight;
+    }
+
+    /**
+     * Number of students that are represented by the given students
+     * @param students a collection of students
+     * @return sum of student weights (see {@link ExamStudent#getWeight()})
+     */
+    public static int getNrStudents(Collection<ExamStudent> students) {
+        int count = 0;
+        for (ExamStudent student : students)
+            count += student.getWeight();
+        return count;
+    }
+
+    /**
+     * Set the number of students that are represented by this student
+     * @param weight student weight
+     */
+    public void setWeight(int weight) {
+        iWeight = weight;
+        for (Exam exam : variables()) {
+            exam.clearNrStudents();
+            exam.clearJointEnrollments();
+        }
+    }
+
     /**
      * True if the given two exams can have a direct student conflict with this
      * student, i.e., they can be placed at the same period.
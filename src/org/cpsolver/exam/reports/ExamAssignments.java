@@ -68,7 +68,7 @@ public class ExamAssignments {
             ExamPlacement placement = assignment.getValue(exam);
             ArrayList<CSVField> fields = new ArrayList<CSVField>();
             fields.add(new CSVField(exam.getName()));
-            fields.add(new CSVField(exam.getStudents().size()));
+            fields.add(new CSVField(exam.getNrStudents()));
             fields.add(new CSVField(exam.hasAltSeating() ? "Yes" : "No"));
             if (placement == null) {
                 fields.add(new CSVField(""));
@@ -9,6 +9,7 @@ import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamOwner;
 import org.cpsolver.exam.model.ExamPlacement;
 import org.cpsolver.exam.model.ExamRoomPlacement;
+import org.cpsolver.exam.model.ExamStudent;
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.util.CSVFile;
 import org.cpsolver.ifs.util.CSVFile.CSVField;
@@ -72,7 +73,7 @@ public class ExamCourseSectionAssignments {
             for (ExamOwner owner : exam.getOwners()) {
                 List<CSVField> fields = new ArrayList<CSVField>();
                 fields.add(new CSVField(owner.getName()));
-                fields.add(new CSVField(owner.getStudents().size()));
+                fields.add(new CSVField(ExamStudent.getNrStudents(owner.getStudents())));
                 fields.add(new CSVField(exam.hasAltSeating() ? "Yes" : "No"));
                 if (placement == null) {
                     fields.add(new CSVField(""));
@@ -91,10 +91,10 @@ public class ExamNbrMeetingsPerDay {
             int btb = 0;
             for (ExamStudent student : iModel.getStudents()) {
                 int ex = student.getExamsADay(assignment, d).size();
-                nrExams[ex <= 5 ? ex : 5]++;
+                nrExams[ex <= 5 ? ex : 5] += student.getWeight();
                 ExamPeriod p = period;
                 while (p.next() != null && (isDayBreakBackToBack ? p : p.next()).getDay() == d) {
-                    btb += student.getExams(assignment, p).size() * student.getExams(assignment, p.next()).size();
+                    btb += student.getWeight() * student.getExams(assignment, p).size() * student.getExams(assignment, p.next()).size();
                     p = p.next();
                 }
             }
@@ -90,14 +90,14 @@ public class ExamPeriodUsage {
                 if (placement == null || !(placement.getPeriod().equals(period)))
                     continue;
                 nrExams++;
-                nrStudents += exam.getStudents().size();
+                nrStudents += exam.getNrStudents();
                 if (exam.getAveragePeriod() >= 0) {
                     totAvgPer += exam.getAveragePeriod();
                     nrAvgPer++;
-                    totWgAvgPer += exam.getAveragePeriod() * exam.getStudents().size();
+                    totWgAvgPer += exam.getAveragePeriod() * exam.getNrStudents();
                 }
                 for (int i = 0; i < sLimits.length; i++)
-                    if (exam.getStudents().size() >= sLimits[i])
+                    if (exam.getNrStudents() >= sLimits[i])
                         nrExamsLim[i]++;
             }
             List<CSVField> line = new ArrayList<CSVField>();
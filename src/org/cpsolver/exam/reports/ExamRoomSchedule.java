@@ -86,7 +86,7 @@ public class ExamRoomSchedule {
                             new CSVField(first ? "" + room.getAltSize() : ""), new CSVField(period.getIndex() + 1),
                             new CSVField(day == period.getDay() ? "" : period.getDayStr()),
                             new CSVField(period.getTimeStr()), new CSVField(exam.getName()),
-                            new CSVField(exam.getStudents().size()) });
+                            new CSVField(exam.getNrStudents()) });
                     first = false;
                     day = period.getDay();
                 }
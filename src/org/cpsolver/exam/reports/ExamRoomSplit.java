@@ -72,7 +72,7 @@ public class ExamRoomSplit {
                 continue;
             List<CSVField> fields = new ArrayList<CSVField>();
             fields.add(new CSVField(exam.getName()));
-            fields.add(new CSVField(exam.getStudents().size()));
+            fields.add(new CSVField(exam.getNrStudents()));
             fields.add(new CSVField(placement.getPeriod().getIndex() + 1));
             fields.add(new CSVField(placement.getPeriod().getDayStr()));
             fields.add(new CSVField(placement.getPeriod().getTimeStr()));
@@ -56,6 +56,14 @@ public class ExamStudentConflicts {
         iModel = model;
     }
 
+    /**
+     * Student name, including the number of students when the student represents
+     * a group of students (see {@link ExamStudent#getWeight()})
+     */
+    private String getName(ExamStudent student) {
+        return student.getName() + (student.getWeight() > 1 ? " (" + student.getWeight() + " students)" : "");
+    }
+
     /**
      * generate report
      * @param assignment current assignment
@@ -104,7 +112,7 @@ public class ExamStudentConflicts {
                             rooms += roomsThisExam;
                         }
                     }
-                    csv.addLine(new CSVField[] { new CSVField(student.getName()), new CSVField("direct"),
+                    csv.addLine(new CSVField[] { new CSVField(getName(student)), new CSVField("direct"),
                             new CSVField(sections), new CSVField(periods), new CSVField(periodDays),
                             new CSVField(periodTimes), new CSVField(rooms) });
                 }
@@ -185,7 +193,7 @@ public class ExamStudentConflicts {
                                     if (dist > 0)
                                         distStr = String.valueOf(dist);
                                 }
-                                csv.addLine(new CSVField[] { new CSVField(student.getName()),
+                                csv.addLine(new CSVField[] { new CSVField(getName(student)),
                                         new CSVField("back-to-back"), new CSVField(sections), new CSVField(periods),
                                         new CSVField(periodDays), new CSVField(periodTimes), new CSVField(rooms),
                                         new CSVField(distStr) });
@@ -242,7 +250,7 @@ public class ExamStudentConflicts {
                                 rooms += roomsThisExam;
                             }
                         }
-                        csv.addLine(new CSVField[] { new CSVField(student.getName()), new CSVField("more-2-day"),
+                        csv.addLine(new CSVField[] { new CSVField(getName(student)), new CSVField("more-2-day"),
                                 new CSVField(sections), new CSVField(periods), new CSVField(periodDays),
                                 new CSVField(periodTimes), new CSVField(rooms) });
                     }
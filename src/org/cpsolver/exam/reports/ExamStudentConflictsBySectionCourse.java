@@ -84,6 +84,14 @@ public class ExamStudentConflictsBySectionCourse {
         return ret;
     }
 
+    /**
+     * Student name, including the number of students when the student represents
+     * a group of students (see {@link ExamStudent#getWeight()})
+     */
+    private String getName(ExamStudent student) {
+        return student.getName() + (student.getWeight() > 1 ? " (" + student.getWeight() + " students)" : "");
+    }
+
     /**
      * generate report
      * @param assignment current assignment
@@ -147,7 +155,7 @@ public class ExamStudentConflictsBySectionCourse {
                                     new CSVField(csPrinted ? "" : period.getDayStr()),
                                     new CSVField(csPrinted ? "" : period.getTimeStr()),
                                     new CSVField(csPrinted ? "" : roomsThisExam),
-                                    new CSVField(stdPrinted ? "" : student.getName()),
+                                    new CSVField(stdPrinted ? "" : getName(student)),
                                     new CSVField(typePrinted ? "" : "direct"), new CSVField(ocs.getName()),
                                     new CSVField(otherPrinted ? "" : String.valueOf(1 + otherPeriod.getIndex())),
                                     new CSVField(otherPrinted ? "" : otherPeriod.getTimeStr()),
@@ -190,7 +198,7 @@ public class ExamStudentConflictsBySectionCourse {
                                         new CSVField(csPrinted ? "" : period.getDayStr()),
                                         new CSVField(csPrinted ? "" : period.getTimeStr()),
                                         new CSVField(csPrinted ? "" : roomsThisExam),
-                                        new CSVField(stdPrinted ? "" : student.getName()),
+                                        new CSVField(stdPrinted ? "" : getName(student)),
                                         new CSVField(typePrinted ? "" : "back-to-back"), new CSVField(ocs.getName()),
                                         new CSVField(otherPrinted ? "" : String.valueOf(1 + otherPeriod.getIndex())),
                                         new CSVField(otherPrinted ? "" : otherPeriod.getTimeStr()),
@@ -225,7 +233,7 @@ public class ExamStudentConflictsBySectionCourse {
                                     new CSVField(csPrinted ? "" : period.getDayStr()),
                                     new CSVField(csPrinted ? "" : period.getTimeStr()),
                                     new CSVField(csPrinted ? "" : roomsThisExam),
-                                    new CSVField(stdPrinted ? "" : student.getName()),
+                                    new CSVField(stdPrinted ? "" : getName(student)),
                                     new CSVField(typePrinted ? "" : "more-2-day"), new CSVField(ocs.getName()),
                                     new CSVField(otherPrinted ? "" : String.valueOf(1 + otherPeriod.getIndex())),
                                     new CSVField(otherPrinted ? "" : otherPeriod.getTimeStr()),
@@ -89,15 +89,15 @@ public class ExamStudentConflictsPerExam {
              */
             csv.addLine(new CSVField[] {
                     new CSVField(exam.getName()),
-                    new CSVField(exam.getStudents().size()),
+                    new CSVField(exam.getNrStudents()),
                     new CSVField(dc),
-                    new CSVField(df.format(100.0 * dc / exam.getStudents().size())),
+                    new CSVField(df.format(100.0 * dc / exam.getNrStudents())),
                     new CSVField(m2d),
-                    new CSVField(df.format(100.0 * m2d / exam.getStudents().size())),
+                    new CSVField(df.format(100.0 * m2d / exam.getNrStudents())),
                     new CSVField(btb),
-                    new CSVField(df.format(100.0 * btb / exam.getStudents().size())),
+                    new CSVField(df.format(100.0 * btb / exam.getNrStudents())),
                     new CSVField(dbtb),
-                    new CSVField(df.format(100.0 * dbtb / exam.getStudents().size())) });
+                    new CSVField(df.format(100.0 * dbtb / exam.getNrStudents())) });
         }
         return csv;
     }
@@ -80,15 +80,15 @@ public class ExamStudentDirectConflicts {
                     continue;
                 csv.addLine(new CSVField[] {
                         new CSVField(ex1.getName()),
-                        new CSVField(ex1.getStudents().size()),
+                        new CSVField(ex1.getNrStudents()),
                         new CSVField(p1.getPeriod().getIndex() + 1),
                         new CSVField(p1.getPeriod().getDayStr()),
                         new CSVField(p1.getPeriod().getTimeStr()),
                         new CSVField(ex2.getName()),
-                        new CSVField(ex2.getStudents().size()),
-                        new CSVField(students.size()),
-                        new CSVField(df.format(100.0 * students.size()
-                                / Math.min(ex1.getStudents().size(), ex2.getStudents().size()))) });
+                        new CSVField(ex2.getNrStudents()),
+                        new CSVField(ExamStudent.getNrStudents(students)),
+                        new CSVField(df.format(100.0 * ExamStudent.getNrStudents(students)
+                                / Math.min(ex1.getNrStudents(), ex2.getNrStudents()))) });
             }
         }
         return csv;
@@ -98,28 +98,27 @@ public class ExamStudentMoreTwoADay {
                     int m2d = 0;
                     for (ExamStudent h : ex3.getStudents())
                         if (students.contains(h))
-                            m2d++;
+                            m2d += h.getWeight();
                     if (m2d == 0)
                         continue;
                     csv.addLine(new CSVField[] {
                             new CSVField(ex1.getName()),
-                            new CSVField(ex1.getStudents().size()),
+                            new CSVField(ex1.getNrStudents()),
                             new CSVField(p1.getPeriod().getIndex() + 1),
                             new CSVField(p1.getPeriod().getDayStr()),
                             new CSVField(p1.getPeriod().getTimeStr()),
                             new CSVField(ex2.getName()),
-                            new CSVField(ex2.getStudents().size()),
+                            new CSVField(ex2.getNrStudents()),
                             new CSVField(p2.getPeriod().getIndex() + 1),
                             new CSVField(p2.getPeriod().getTimeStr()),
                             new CSVField(ex3.getName()),
-                            new CSVField(ex3.getStudents().size()),
+                            new CSVField(ex3.getNrStudents()),
                             new CSVField(p3.getPeriod().getIndex() + 1),
                             new CSVField(p3.getPeriod().getTimeStr()),
                             new CSVField(m2d),
                             new CSVField(df.format(100.0
                                     * m2d
-                                    / Math.min(Math.min(ex1.getStudents().size(), ex2.getStudents().size()), ex3
-                                            .getStudents().size()))) });
+                                    / Math.min(Math.min(ex1.getNrStudents(), ex2.getNrStudents()), ex3.getNrStudents()))) });
                 }
             }
         }
@@ -220,7 +220,7 @@ public class ExamSplitMoves implements NeighbourSelection<Exam, ExamPlacement> {
                 double delta = iSplitter.delta(assignment, student, assignment.getValue(parent), placement);
                 if (delta < 0.0) {
                     iValue += delta;
-                    iNrStudents ++;
+                    iNrStudents += student.getWeight();
                 }
             }
             // If there already are other children, consider moving students of these children to the
@@ -231,7 +231,7 @@ public class ExamSplitMoves implements NeighbourSelection<Exam, ExamPlacement> {
                         double delta = iSplitter.delta(assignment, student, assignment.getValue(child), placement);
                         if (delta < 0.0) {
                             iValue += delta;
-                            iNrStudents ++;
+                            iNrStudents += student.getWeight();
                         }
                     }
             
@@ -348,7 +348,7 @@ public class ExamSplitMoves implements NeighbourSelection<Exam, ExamPlacement> {
          * @return number of students
          */
         public int nrStudents() {
-            return iExam.getStudents().size();
+            return iExam.getNrStudents();
         }
 
         /**
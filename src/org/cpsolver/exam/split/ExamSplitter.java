@@ -237,7 +237,8 @@ public class ExamSplitter extends ExamCriterion {
     /**
      * Difference in the total weighted student conflicts (including {@link StudentDirectConflicts},
      * {@link StudentMoreThan2ADayConflicts}, and {@link StudentBackToBackConflicts}) if a student
-     * is moved from an exam with one placement into an exam with another placement.
+     * is moved from an exam with one placement into an exam with another placement. The difference
+     * is multiplied by the student weight (see {@link ExamStudent#getWeight()}).
      * @param assignment current assignment
      * @param student a student in question
      * @param oldPlacement placement of the exam in which the student is now
@@ -295,7 +296,7 @@ public class ExamSplitter extends ExamCriterion {
                 delta += iStudentMoreThan2ADayConflicts.getWeight(); // will add a more than 2 on a day conflict
         }
         
-        return delta;
+        return student.getWeight() * delta;
     }
     
     /**
@@ -402,9 +403,9 @@ public class ExamSplitter extends ExamCriterion {
                 if (children.isEmpty()) continue;
                 split += "\n  ";
                 parents ++;
-                split += parent.getName() + ": " + parent.getStudents().size() + " (" + (assignment.getValue(parent) == null ? "N/A" : assignment.getValue(parent).getPeriod()) + ")";
+                split += parent.getName() + ": " + parent.getNrStudents() + " (" + (assignment.getValue(parent) == null ? "N/A" : assignment.getValue(parent).getPeriod()) + ")";
                 for (Exam child: children)
-                    split += " + " + child.getStudents().size() + " (" + (assignment.getValue(child) == null ? "N/A" : assignment.getValue(child).getPeriod()) + ")";
+                    split += " + " + child.getNrStudents() + " (" + (assignment.getValue(child) == null ? "N/A" : assignment.getValue(child).getPeriod()) + ")";
             }
             if (parents > 0)
                 info.put("Examination Splits", parents + split);
@@ -9,6 +9,7 @@ import org.cpsolver.ifs.model.Value;
 import org.cpsolver.ifs.model.Variable;
 import org.cpsolver.ifs.solution.Solution;
 import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.Metrics;
 
 
 /**
@@ -38,6 +39,7 @@ import org.cpsolver.ifs.solver.Solver;
  */
 public class NeighbourSelector<V extends Variable<V, T>, T extends Value<V, T>> implements NeighbourSelection<V, T> {
     protected static DecimalFormat sDF = new DecimalFormat("0.00");
+    private static Metrics.ByClass sTimers = Metrics.byClass("neighbourhood");
     private boolean iUpdate = false;
     private NeighbourSelection<V,T> iSelection;
     private int iNrCalls = 0;
@@ -73,6 +75,15 @@ public class NeighbourSelector<V extends Variable<V, T>, T extends Value<V, T>>
      */
     @Override
     public Neighbour<V,T> selectNeighbour(Solution<V,T> solution) {
+        if (Metrics.isEnabled()) {
+            long t0 = System.nanoTime();
+            Neighbour<V,T> n = iSelection.selectNeighbour(solution);
+            long t1 = System.nanoTime();
+            sTimers.of(iSelection).record(t1 - t0);
+            if (iUpdate)
+                update(solution.getAssignment(), n, (t1 - t0) / 1000000l);
+            return n;
+        }
         if (iUpdate) {
             long t0 = System.currentTimeMillis();
             Neighbour<V,T> n = iSelection.selectNeighbour(solution);
@@ -1,6 +1,9 @@
 package org.cpsolver.ifs.algorithms;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.heuristics.NeighbourSelection;
@@ -9,6 +12,7 @@ import org.cpsolver.ifs.model.Neighbour;
 import org.cpsolver.ifs.model.Value;
 import org.cpsolver.ifs.model.Variable;
 import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.Solver;
 import org.cpsolver.ifs.util.DataProperties;
 import org.cpsolver.ifs.util.JProf;
 import org.cpsolver.ifs.util.ToolBox;
@@ -55,6 +59,14 @@ import org.cpsolver.ifs.util.ToolBox;
  * after each iteration (on the selector that was used) and roulette wheel selection 
  * that is using {@link NeighbourSelector#getPoints()} is used to pick a selector in each iteration. 
  * See {@link NeighbourSelector} for more details. 
+ * <br><br>
+ * When SimulatedAnnealing.ReplicaExchange is true and there are multiple solutions (see {@link org.cpsolver.ifs.solver.ParallelSolver}),
+ * the threads form a temperature ladder (parallel tempering): the temperature of the thread on the n-th rung is
+ * multiplied by SimulatedAnnealing.ReplicaTemperatureRatio<sup>n</sup>. Every SimulatedAnnealing.ReplicaExchangeInterval
+ * iterations, a thread tries to exchange its temperature (its rung and the current temperature of its cooling schedule) with a
+ * neighbouring rung using the Metropolis criterion, i.e., the exchange is accepted with probability
+ * <code>min(1, exp((1/T<sub>i</sub> - 1/T<sub>j</sub>) * (value<sub>i</sub> - value<sub>j</sub>)))</code>,
+ * so a better solution tends to move down to a colder rung. Exchange statistics are included in the solver info. 
  * <br>
  * 
  * @author  Tomas Muller
@@ -96,6 +108,9 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
     private int iTrainingValues = 10000;
     private double iTrainingProbability = 0.00001;
     private double iTimeBetweenCooldowns = 10.0;
+    private long iReplicaExchangeInterval = 1000;
+    private double iReplicaTemperatureRatio = 1.5;
+    private ReplicaLadder iLadder = null;
 
     /**
      * Constructor. Following problem properties are considered:
@@ -112,6 +127,9 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
      * <li>SimulatedAnnealing.AdditionalNeighbours ... semicolon separated list of classes implementing {@link NeighbourSelection}
      * <li>SimulatedAnnealing.Random ... when true, a neighbour selector is selected randomly
      * <li>SimulatedAnnealing.Update ... when true, a neighbour selector is selected using {@link NeighbourSelector#getPoints()} weights (roulette wheel selection)
+     * <li>SimulatedAnnealing.ReplicaExchange ... when true, parallel threads exchange their temperature ladder rungs (default false)
+     * <li>SimulatedAnnealing.ReplicaExchangeInterval ... number of iterations between two exchange attempts of a thread (default 1000)
+     * <li>SimulatedAnnealing.ReplicaTemperatureRatio ... ratio between the temperatures of two neighbouring rungs (default 1.5)
      * </ul>
      * 
      * @param properties
@@ -137,18 +155,36 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
             iReheatRate = Math.pow(1 / iCoolingRate, iReheatLengthCoef * 1.7);
         if (iRestoreBestLengthCoef < 0)
             iRestoreBestLengthCoef = iReheatLengthCoef * iReheatLengthCoef;
+        if (properties.getPropertyBoolean(getParameterBaseName() + ".ReplicaExchange", false))
+            iLadder = new ReplicaLadder();
+        iReplicaExchangeInterval = properties.getPropertyLong(getParameterBaseName() + ".ReplicaExchangeInterval", iReplicaExchangeInterval);
+        iReplicaTemperatureRatio = properties.getPropertyDouble(getParameterBaseName() + ".ReplicaTemperatureRatio", iReplicaTemperatureRatio);
     }
     
     @Override
     public String getParameterBaseName() { return "SimulatedAnnealing"; }
     
+    @Override
+    public void init(Solver<V, T> solver) {
+        super.init(solver);
+        if (iLadder != null)
+            iLadder.reset();
+    }
+    
     @Override
     public NeighbourSearchContext createAssignmentContext(Assignment<V, T> assignment) {
         return new SimulatedAnnealingContext();
     }
     
+    @Override
+    public void getInfo(Solution<V, T> solution, Map<String, String> info) {
+        super.getInfo(solution, info);
+        if (iLadder != null)
+            iLadder.getInfo(info);
+    }
+    
     public class SimulatedAnnealingContext extends NeighbourSearchContext {
-        private double iTemperature = 0.0;
+        private volatile double iTemperature = 0.0;
         private int iMoves = 0;
         private double iAbsValue = 0;
         private double iBestValue = 0;
@@ -161,6 +197,10 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
         private long iRestoreBestLength = 0;
         private int iTrainingIterations = 0;
         private double iTrainingTotal = 0.0;
+        private volatile int iRung = -1;
+        private volatile double iReplicaValue = Double.NaN;
+        private volatile double iExchangedTemperature = Double.NaN;
+        private long iLastExchangeIter = 0;
 
         /** Setup the temperature */
         @Override
@@ -172,6 +212,30 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
             iRestoreBestLength = Math.round(iRestoreBestLengthCoef * iTemperatureLength);
             iLastImprovingIter = -1;
             iLastBestIter = -1;
+            iLastExchangeIter = 0;
+            iReplicaValue = Double.NaN;
+            iExchangedTemperature = Double.NaN;
+        }
+        
+        /**
+         * Current temperature, adjusted by the rung of the temperature ladder when replica exchange is used
+         * @return temperature used by the acceptance criterion
+         */
+        protected double getTemperature() {
+            double temperature = (Double.isNaN(iExchangedTemperature) ? iTemperature : iExchangedTemperature);
+            if (iRung <= 0) return temperature;
+            return temperature * Math.pow(iReplicaTemperatureRatio, iRung);
+        }
+        
+        /**
+         * Try to exchange the rung of the temperature ladder with a neighbouring replica
+         * @param solution current solution
+         */
+        protected void exchange(Solution<V, T> solution) {
+            iLastExchangeIter = iIter;
+            iReplicaValue = solution.getModel().getTotalValue(solution.getAssignment());
+            if (iLadder.exchange(this))
+                setProgressPhase("Simulated Annealing [" + iDF5.format(getTemperature()) + ", rung " + iRung + "]...");
         }
         
         protected double getCoolingRate(int idx) {
@@ -306,7 +370,7 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
          * @return probability of acceptance of a change (neighbour)
          */
         protected double prob(double value) {
-            return prob(value, iTemperature);
+            return prob(value, getTemperature());
         }
         
         /**
@@ -366,6 +430,12 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
         protected void incIteration(Solution<V, T> solution) {
             super.incIteration(solution);
             iIter++;
+            if (!Double.isNaN(iExchangedTemperature)) {
+                // Temperature exchanged by a neighbouring replica
+                iTemperature = iExchangedTemperature;
+                iExchangedTemperature = Double.NaN;
+                setProgressPhase("Simulated Annealing [" + iDF5.format(getTemperature()) + ", rung " + iRung + "]...");
+            }
             if (isMaster(solution)) {
                 if (iInitialTemperature <= 0.0) {
                     if (iTrainingIterations < iTrainingValues) {
@@ -374,6 +444,11 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
                     } else {
                         train(solution);
                     }
+                } else if (iTemperature <= 0.0) {
+                    // Initial temperature has been trained by another thread
+                    iTemperature = iInitialTemperature;
+                    iReheatLength = Math.round(iReheatLengthCoef * iTemperatureLength);
+                    iRestoreBestLength = Math.round(iRestoreBestLengthCoef * iTemperatureLength);
                 }
                 if (iLastBestIter >= 0 && iIter > iLastBestIter + iRestoreBestLength)
                     restoreBest(solution);
@@ -392,6 +467,22 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
                 }
                 setProgress(Math.round(100.0 * (iIter - Math.max(iLastReheatIter, iLastImprovingIter)) / iReheatLength));
             }
+            if (iRung < 0) {
+                if (iLadder != null && !hasContextOverride() && solution.getAssignment().getIndex() > 0)
+                    iLadder.join(this, solution.getAssignment().getIndex() - 1);
+            } else if (iIter > iLastExchangeIter + iReplicaExchangeInterval) {
+                exchange(solution);
+            }
+        }
+
+        /**
+         * Publish the current value of the solution, so that it is available to the neighbouring replicas of the temperature ladder
+         */
+        @Override
+        public void solutionUpdated(Solution<V, T> solution) {
+            super.solutionUpdated(solution);
+            if (iRung >= 0)
+                iReplicaValue = solution.getModel().getTotalValue(solution.getAssignment());
         }
 
         /**
@@ -407,5 +498,99 @@ public class SimulatedAnnealing<V extends Variable<V, T>, T extends Value<V, T>>
             }
         }
     }
-
+    
+    /**
+     * Temperature ladder of the replica exchange. Each thread (its {@link SimulatedAnnealingContext}) occupies one
+     * rung, the rungs are ordered from the coldest (rung 0) to the hottest. An exchange swaps the rungs and the current
+     * temperatures of two neighbouring replicas, so that each of them continues with exactly the temperature of the other.
+     * The other replica only picks up its new temperature in its next iteration (its cooling schedule is only changed
+     * by its own thread), it is not considered for another exchange until then. The exchange is evaluated using the values
+     * the replicas have published (see {@link SimulatedAnnealingContext#solutionUpdated(Solution)}).
+     * A replica that has not published its value yet is not considered for an exchange.
+     */
+    private class ReplicaLadder {
+        private List<SimulatedAnnealingContext> iRungs = new ArrayList<SimulatedAnnealingContext>();
+        private long iAttempts = 0, iAccepted = 0;
+        
+        /**
+         * Place the given replica on the ladder (if it is not there already)
+         * @param context a replica
+         * @param rung preferred rung (index of the thread)
+         */
+        private synchronized void join(SimulatedAnnealingContext context, int rung) {
+            if (context.iRung >= 0) return;
+            while (iRungs.size() <= rung)
+                iRungs.add(null);
+            if (iRungs.get(rung) != null) {
+                rung = iRungs.indexOf(null);
+                if (rung < 0) {
+                    rung = iRungs.size();
+                    iRungs.add(null);
+                }
+            }
+            iRungs.set(rung, context);
+            context.iRung = rung;
+            context.iLastExchangeIter = context.iIter;
+        }
+        
+        /**
+         * Remove all replicas from the ladder and clear the exchange statistics (called when the solver is initialized),
+         * the replicas join the ladder again in their next iteration
+         */
+        private synchronized void reset() {
+            for (SimulatedAnnealingContext context: iRungs) {
+                if (context == null) continue;
+                context.iRung = -1;
+                context.iReplicaValue = Double.NaN;
+                context.iExchangedTemperature = Double.NaN;
+            }
+            iRungs.clear();
+            iAttempts = 0; iAccepted = 0;
+        }
+        
+        /**
+         * Try to exchange the rung of the given replica with the rung above or below (randomly selected)
+         * @param context a replica
+         * @return true if the rungs have been exchanged
+         */
+        private synchronized boolean exchange(SimulatedAnnealingContext context) {
+            int rung = context.iRung;
+            int other = (ToolBox.random(2) == 0 ? rung - 1 : rung + 1);
+            if (other < 0 || other >= iRungs.size() || iRungs.get(other) == null) return false;
+            SimulatedAnnealingContext neighbour = iRungs.get(other);
+            if (!Double.isNaN(context.iExchangedTemperature) || !Double.isNaN(neighbour.iExchangedTemperature)) return false;
+            double e1 = context.iReplicaValue, e2 = neighbour.iReplicaValue;
+            if (Double.isNaN(e1) || Double.isNaN(e2)) return false;
+            double t1 = context.getTemperature(), t2 = neighbour.getTemperature();
+            if (t1 <= 0.0 || t2 <= 0.0) return false;
+            iAttempts ++;
+            double delta = (1.0 / t1 - 1.0 / t2) * (e1 - e2);
+            if (delta >= 0.0 || ToolBox.random() < Math.exp(delta)) {
+                iAccepted ++;
+                double temperature = context.iTemperature;
+                context.iTemperature = neighbour.iTemperature;
+                neighbour.iExchangedTemperature = temperature;
+                iRungs.set(rung, neighbour); neighbour.iRung = rung;
+                iRungs.set(other, context); context.iRung = other;
+                return true;
+            }
+            return false;
+        }
+        
+        /**
+         * Exchange statistics
+         * @param info solver info
+         */
+        private synchronized void getInfo(Map<String, String> info) {
+            if (iAttempts == 0) return;
+            info.put("Replica exchange", iAccepted + "/" + iAttempts + " (" + iDF2.format(100.0 * iAccepted / iAttempts) + "%)");
+            StringBuffer ladder = new StringBuffer();
+            for (SimulatedAnnealingContext context: iRungs) {
+                if (context == null || Double.isNaN(context.iReplicaValue)) continue;
+                if (ladder.length() > 0) ladder.append(", ");
+                ladder.append(iDF5.format(context.getTemperature()) + " (" + iDF2.format(context.iReplicaValue) + ")");
+            }
+            info.put("Replica ladder", ladder.toString());
+        }
+    }
 }
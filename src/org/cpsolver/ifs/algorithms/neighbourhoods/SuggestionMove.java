@@ -147,6 +147,7 @@ public class SuggestionMove<V extends Variable<V, T>, T extends Value<V, T>> ext
                 if (resolvedVariables.containsKey(c.variable()))
                     continue values;
             
+            int savepoint = assignment.savepoint();
             for (T c: conflicts) assignment.unassign(solution.getIteration(), c.variable());
             if (cur != null) assignment.unassign(solution.getIteration(), variable);
             
@@ -161,12 +162,9 @@ public class SuggestionMove<V extends Variable<V, T>, T extends Value<V, T>> ext
             nrAttempts ++;
             
             resolvedVariables.remove(variable);
-            if (cur == null) assignment.unassign(solution.getIteration(), variable);
-            else assignment.assign(solution.getIteration(), cur);
-            for (T c: conflicts) {
-                assignment.assign(solution.getIteration(), c);
+            assignment.rollback(savepoint);
+            for (T c: conflicts)
                 conflictsToResolve.remove(c.variable());
-            }
             if (resolvedConf != null)
                 conflictsToResolve.put(variable, resolvedConf);
             
@@ -153,4 +153,45 @@ public interface Assignment<V extends Variable<V, T>, T extends Value<V, T>> {
      * @param <C> assignment context type
      **/
     public <C extends AssignmentContext> void clearContext(AssignmentContextReference<V, T, C> reference);
+    
+    /**
+     * Create a savepoint. From now on, until the savepoint is released or rolled back, all changes of this assignment
+     * are recorded in an undo journal (the previous value and iteration of each changed variable). Savepoints can be nested.
+     * @return savepoint identification, to be used in {@link Assignment#rollback(int)}, {@link Assignment#release(int)}, or {@link Assignment#getValueDelta(int)}
+     **/
+    public int savepoint();
+    
+    /**
+     * Create a savepoint, see {@link Assignment#savepoint()}. When trackValue is set, the change of the overall solution
+     * value is accumulated as the changes are made, so that it can be retrieved by {@link Assignment#getValueDelta(int)}.
+     * @param trackValue true if the solution value change is to be tracked for this savepoint
+     * @return savepoint identification, to be used in {@link Assignment#rollback(int)}, {@link Assignment#release(int)}, or {@link Assignment#getValueDelta(int)}
+     **/
+    public int savepoint(boolean trackValue);
+    
+    /**
+     * Undo all the changes made since the given savepoint, in the reverse order. Assignment contexts are updated
+     * as the changes are undone, so they are restored as well. The savepoint and all the savepoints created after
+     * it are removed.
+     * @param savepoint savepoint, as returned by {@link Assignment#savepoint()}
+     **/
+    public void rollback(int savepoint);
+    
+    /**
+     * Keep all the changes made since the given savepoint. The savepoint and all the savepoints created after it
+     * are removed, the undo journal is discarded when there is no other savepoint.
+     * @param savepoint savepoint, as returned by {@link Assignment#savepoint()}
+     **/
+    public void release(int savepoint);
+    
+    /**
+     * Change of the overall solution value ({@link Model#getTotalValue(Assignment)}) since the given savepoint.
+     * The change is accumulated from the individual assignments, each contributing the difference of {@link Model#getTotalValue(Assignment)}
+     * after and before the change (which is cheap when the model keeps its total value incrementally, e.g., in its criteria or in its
+     * assignment context), zero is returned when nothing has been changed.
+     * Only available for savepoints created by {@link Assignment#savepoint(boolean)} with trackValue set.
+     * @param savepoint savepoint, as returned by {@link Assignment#savepoint(boolean)}
+     * @return difference between the current solution value and the solution value at the given savepoint
+     **/
+    public double getValueDelta(int savepoint);
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package org.cpsolver.ifs.assignment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -15,6 +16,7 @@ import org.cpsolver.ifs.model.GlobalConstraint;
 import org.cpsolver.ifs.model.Model;
 import org.cpsolver.ifs.model.Value;
 import org.cpsolver.ifs.model.Variable;
+import org.cpsolver.ifs.util.Metrics;
 
 
 /**
@@ -47,8 +49,23 @@ import org.cpsolver.ifs.model.Variable;
  * @param <T> Value
  **/
 public abstract class AssignmentAbstract<V extends Variable<V, T>, T extends Value<V, T>> implements Assignment<V, T> {
+    private static Metrics.Counter sAssignCounter = Metrics.counter("assignment.assign");
+    private static Metrics.Counter sUnassignCounter = Metrics.counter("assignment.unassign");
+    private static Metrics.Histogram sAssignTimer = Metrics.timer("assignment.time");
     protected AssignmentContextHolder<V, T> iContexts;
     protected boolean iHasInitialzedContext = false;
+    private int iNrSavepoints = 0;
+    private int[] iSavepoints = null;
+    private double[] iSavepointValues = null;
+    private boolean[] iSavepointTrackValue = null;
+    private int iFirstValueSavepoint = -1;
+    private double iValueDelta = 0.0;
+    private boolean iTrackingValue = false;
+    private int iJournalSize = 0;
+    private Object[] iJournalVariables = null;
+    private Object[] iJournalValues = null;
+    private long[] iJournalIterations = null;
+    private boolean iRollingBack = false;
     
     /**
      * Constructor
@@ -106,8 +123,21 @@ public abstract class AssignmentAbstract<V extends Variable<V, T>, T extends Val
         
         // unassign old value, if assigned
         T old = getValueInternal(variable);
+        if (old != null && old.equals(value)) return old;
+        
+        // record the change in the undo journal, if there is a savepoint
+        boolean journal = (iNrSavepoints > 0 && !iRollingBack && (old != null || value != null));
+        if (journal) journal(variable, old);
+        // value change is only tracked when there is a savepoint that was created with trackValue set,
+        // changes made from within this change (e.g., a constraint unassigning its conflicts) are included in its delta
+        boolean trackValue = (journal && iFirstValueSavepoint >= 0 && model != null && !iTrackingValue);
+        if (trackValue) {
+            iTrackingValue = true;
+            iValueDelta -= model.getTotalValue(this);
+        }
+        boolean metrics = Metrics.isEnabled();
+        long t0 = (metrics ? System.nanoTime() : 0l);
         if (old != null) {
-            if (old.equals(value)) return old;
             if (model != null)
                 model.beforeUnassigned(this, iteration, old);
             setValueInternal(iteration, variable, null);
@@ -136,6 +166,17 @@ public abstract class AssignmentAbstract<V extends Variable<V, T>, T extends Val
                 model.afterAssigned(this, iteration, value);
         }
         
+        if (trackValue) {
+            iValueDelta += model.getTotalValue(this);
+            iTrackingValue = false;
+        }
+        
+        if (metrics) {
+            if (old != null) sUnassignCounter.inc();
+            if (value != null) sAssignCounter.inc();
+            sAssignTimer.recordSince(t0);
+        }
+        
         // return old value
         return old;
     }
@@ -204,6 +245,112 @@ public abstract class AssignmentAbstract<V extends Variable<V, T>, T extends Val
         return -1;
     }
     
+    @Override
+    public int savepoint() {
+        return savepoint(false);
+    }
+    
+    @Override
+    public int savepoint(boolean trackValue) {
+        if (iSavepoints == null) {
+            iSavepoints = new int[4];
+            iSavepointValues = new double[4];
+            iSavepointTrackValue = new boolean[4];
+        } else if (iNrSavepoints == iSavepoints.length) {
+            iSavepoints = Arrays.copyOf(iSavepoints, 2 * iNrSavepoints);
+            iSavepointValues = Arrays.copyOf(iSavepointValues, 2 * iNrSavepoints);
+            iSavepointTrackValue = Arrays.copyOf(iSavepointTrackValue, 2 * iNrSavepoints);
+        }
+        if (trackValue && iFirstValueSavepoint < 0)
+            iFirstValueSavepoint = iNrSavepoints;
+        iSavepoints[iNrSavepoints] = iJournalSize;
+        iSavepointValues[iNrSavepoints] = iValueDelta;
+        iSavepointTrackValue[iNrSavepoints] = trackValue;
+        return iNrSavepoints++;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public void rollback(int savepoint) {
+        if (savepoint < 0 || savepoint >= iNrSavepoints)
+            throw new IllegalArgumentException("Savepoint " + savepoint + " does not exist.");
+        int mark = iSavepoints[savepoint];
+        iRollingBack = true;
+        try {
+            while (iJournalSize > mark) {
+                iJournalSize--;
+                V variable = (V)iJournalVariables[iJournalSize];
+                T value = (T)iJournalValues[iJournalSize];
+                assign(iJournalIterations[iJournalSize], variable, value);
+                iJournalVariables[iJournalSize] = null;
+                iJournalValues[iJournalSize] = null;
+            }
+        } finally {
+            iRollingBack = false;
+        }
+        // all the changes made since the savepoint are undone, so is their value
+        if (iFirstValueSavepoint >= 0 && savepoint > iFirstValueSavepoint)
+            iValueDelta = iSavepointValues[savepoint];
+        removeSavepoints(savepoint);
+    }
+    
+    @Override
+    public void release(int savepoint) {
+        if (savepoint < 0 || savepoint >= iNrSavepoints)
+            throw new IllegalArgumentException("Savepoint " + savepoint + " does not exist.");
+        removeSavepoints(savepoint);
+        if (iNrSavepoints == 0) {
+            for (int i = 0; i < iJournalSize; i++) {
+                iJournalVariables[i] = null;
+                iJournalValues[i] = null;
+            }
+            iJournalSize = 0;
+        }
+    }
+    
+    /**
+     * Remove the given savepoint and all the savepoints created after it
+     * @param savepoint savepoint to be removed
+     */
+    private void removeSavepoints(int savepoint) {
+        iNrSavepoints = savepoint;
+        if (iFirstValueSavepoint >= savepoint) {
+            iFirstValueSavepoint = -1;
+            iValueDelta = 0.0;
+            iTrackingValue = false;
+        }
+    }
+    
+    @Override
+    public double getValueDelta(int savepoint) {
+        if (savepoint < 0 || savepoint >= iNrSavepoints)
+            throw new IllegalArgumentException("Savepoint " + savepoint + " does not exist.");
+        if (!iSavepointTrackValue[savepoint])
+            throw new IllegalStateException("Savepoint " + savepoint + " does not track the solution value.");
+        return iValueDelta - iSavepointValues[savepoint];
+    }
+    
+    /**
+     * Record a change in the undo journal (there is at least one savepoint).
+     * @param variable a variable that is about to be changed
+     * @param old its current value
+     */
+    private void journal(V variable, T old) {
+        if (iJournalVariables == null) {
+            iJournalVariables = new Object[16];
+            iJournalValues = new Object[16];
+            iJournalIterations = new long[16];
+        } else if (iJournalSize == iJournalVariables.length) {
+            iJournalVariables = Arrays.copyOf(iJournalVariables, 2 * iJournalSize);
+            iJournalValues = Arrays.copyOf(iJournalValues, 2 * iJournalSize);
+            iJournalIterations = Arrays.copyOf(iJournalIterations, 2 * iJournalSize);
+        }
+        iJournalVariables[iJournalSize] = variable;
+        iJournalValues[iJournalSize] = old;
+        iJournalIterations[iJournalSize] = (old == null ? 0 : getIteration(variable));
+        iJournalSize++;
+    }
+    
     /**
      * Ensure that the model, all criteria, all global constraints and all the related constraints have their assignment contexts initialized.
      * @param variable a variable to be changed
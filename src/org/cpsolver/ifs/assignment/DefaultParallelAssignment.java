@@ -89,15 +89,15 @@ public class DefaultParallelAssignment <V extends Variable<V, T>, T extends Valu
     }
     
     @Override
-    @SuppressWarnings({ "deprecation", "unchecked" })
+    @SuppressWarnings("deprecation")
     protected T getValueInternal(V variable) {
-        return (T) variable.getAssignments()[iIndex];
+        return variable.getAssignment(iIndex);
     }
     
     @Override
     @SuppressWarnings("deprecation")
     protected void setValueInternal(long iteration, V variable, T value) {
-        variable.getAssignments()[iIndex] = value;
+        variable.setAssignment(iIndex, value);
         if (value == null)
             iAssignedVariables.remove(variable);
         else
@@ -15,6 +15,8 @@ public class InheritedAssignmentArray<V extends Variable<V, T>, T extends Value<
     public InheritedAssignmentArray(Solution<V, T> parent, int index) {
         super(new InheritedAssignmentContextHolder<V, T>(index, parent.getIteration()));
         iIndex = index;
+        iParent = parent.getAssignment();
+        iVersion = parent.getIteration();
         iAssignments = Arrays.copyOf(((AssignmentArray<V, T>)parent.getAssignment()).iAssignments, parent.getModel().variables().size());
         iIteration = Arrays.copyOf(((AssignmentArray<V, T>)parent.getAssignment()).iIteration, parent.getModel().variables().size());
     }
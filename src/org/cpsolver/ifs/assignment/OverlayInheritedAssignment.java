@@ -0,0 +1,226 @@
+package org.cpsolver.ifs.assignment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cpsolver.ifs.assignment.context.InheritedAssignmentContextHolder;
+import org.cpsolver.ifs.model.Value;
+import org.cpsolver.ifs.model.Variable;
+import org.cpsolver.ifs.solution.Solution;
+
+
+/**
+ * Copy-on-write overlay of the parent assignment. Unlike {@link DefaultInheritedAssignment}, nothing is copied
+ * when the assignment is created: values of the variables that have not been changed are read through to
+ * the parent assignment and only the variables that are changed in this assignment (typically the few variables
+ * of a neighbour) are stored, in small arrays that are only indexed by a hash map when there are many of them.
+ * Creating this assignment is therefore O(1) and the memory it needs is proportional to the number of changes.<br>
+ * <br>
+ * Assignment contexts are inherited lazily from the parent assignment, when they are first needed (see
+ * {@link InheritedAssignmentContextHolder}). Each instance uses its own context version, so contexts modified
+ * by a previous inherited assignment of the same thread are never reused, even when the parent solution has
+ * not moved to the next iteration in the meantime.<br>
+ * <br>
+ * Like {@link OptimisticInheritedAssignment}, this assignment does not expect the parent assignment to change
+ * much during its (short) life: changes of the parent are visible for the variables that have not been changed
+ * here, but the inherited contexts are not updated. It is meant for a per-iteration sub-solution of
+ * {@link org.cpsolver.ifs.solver.ParallelSolver} (see ParallelSolver.SingleSolutionOverlay) where the result
+ * is validated against the parent before it is committed.
+ *
+ * @see InheritedAssignment
+ *
+ * @author  Tomas Muller
+ * @version IFS 1.3 (Iterative Forward Search)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see <a href='http://www.gnu.org/licenses'>http://www.gnu.org/licenses</a>.
+ * @param <V> Variable
+ * @param <T> Value
+ **/
+public class OverlayInheritedAssignment<V extends Variable<V, T>, T extends Value<V, T>> extends AssignmentAbstract<V, T> implements InheritedAssignment<V, T> {
+    private static final int sLinearScanLimit = 8;
+    private static AtomicLong sContextVersion = new AtomicLong(-1);
+    private Assignment<V, T> iParent;
+    private long iVersion = -1;
+    private int iIndex = -1;
+    private Object[] iVariables = null;
+    private Object[] iValues = null;
+    private long[] iIteration = null;
+    private int iSize = 0;
+    private Map<V, Integer> iPositions = null;
+    private int iNrAssignedDelta = 0;
+
+    public OverlayInheritedAssignment(Solution<V, T> parent, int index) {
+        this(parent, index, sContextVersion.decrementAndGet());
+    }
+
+    /** The same (unique) version is used by the context holder and returned by {@link OverlayInheritedAssignment#getVersion()} */
+    private OverlayInheritedAssignment(Solution<V, T> parent, int index, long version) {
+        super(new InheritedAssignmentContextHolder<V, T>(index, version));
+        iParent = parent.getAssignment();
+        iVersion = version;
+        iIndex = index;
+    }
+
+    /** Position of the given variable among the changed variables, -1 if it has not been changed */
+    private int position(V variable) {
+        if (iSize == 0) return -1;
+        if (iPositions != null) {
+            Integer position = iPositions.get(variable);
+            return (position == null ? -1 : position.intValue());
+        }
+        for (int i = 0; i < iSize; i++)
+            if (iVariables[i] == variable || iVariables[i].equals(variable)) return i;
+        return -1;
+    }
+
+    /** Add a variable to the changed variables, return its position */
+    private int add(V variable) {
+        if (iVariables == null) {
+            iVariables = new Object[4];
+            iValues = new Object[4];
+            iIteration = new long[4];
+        } else if (iSize == iVariables.length) {
+            int capacity = 2 * iVariables.length;
+            Object[] variables = new Object[capacity]; System.arraycopy(iVariables, 0, variables, 0, iSize); iVariables = variables;
+            Object[] values = new Object[capacity]; System.arraycopy(iValues, 0, values, 0, iSize); iValues = values;
+            long[] iteration = new long[capacity]; System.arraycopy(iIteration, 0, iteration, 0, iSize); iIteration = iteration;
+        }
+        int position = iSize++;
+        iVariables[position] = variable;
+        if (iPositions != null) {
+            iPositions.put(variable, position);
+        } else if (iSize > sLinearScanLimit) {
+            iPositions = new HashMap<V, Integer>();
+            for (int i = 0; i < iSize; i++)
+                iPositions.put(variable(i), i);
+        }
+        return position;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V variable(int position) {
+        return (V)iVariables[position];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T value(int position) {
+        return (T)iValues[position];
+    }
+
+    @Override
+    public long getIteration(V variable) {
+        int position = position(variable);
+        if (position < 0) return iParent.getIteration(variable);
+        return (iValues[position] == null ? 0 : iIteration[position]);
+    }
+
+    @Override
+    protected T getValueInternal(V variable) {
+        int position = position(variable);
+        return (position < 0 ? iParent.getValue(variable) : value(position));
+    }
+
+    @Override
+    protected void setValueInternal(long iteration, V variable, T value) {
+        int position = position(variable);
+        T old = (position < 0 ? iParent.getValue(variable) : value(position));
+        if (position < 0) {
+            position = add(variable);
+            iIteration[position] = iParent.getIteration(variable);
+        }
+        iValues[position] = value;
+        if (value != null && iteration > 0)
+            iIteration[position] = iteration;
+        if (old == null && value != null) iNrAssignedDelta ++;
+        if (old != null && value == null) iNrAssignedDelta --;
+    }
+
+    @Override
+    public int nrAssignedVariables() {
+        return iParent.nrAssignedVariables() + iNrAssignedDelta;
+    }
+
+    @Override
+    public Collection<V> assignedVariables() {
+        if (iSize == 0) return iParent.assignedVariables();
+        Set<V> variables = new HashSet<V>(iParent.assignedVariables());
+        for (int i = 0; i < iSize; i++) {
+            if (iValues[i] == null)
+                variables.remove(variable(i));
+            else
+                variables.add(variable(i));
+        }
+        return variables;
+    }
+
+    @Override
+    public Collection<T> assignedValues() {
+        if (iSize == 0) return iParent.assignedValues();
+        List<T> values = new ArrayList<T>();
+        for (T value: iParent.assignedValues())
+            if (value != null && position(value.variable()) < 0)
+                values.add(value);
+        for (int i = 0; i < iSize; i++)
+            if (iValues[i] != null)
+                values.add(value(i));
+        return values;
+    }
+
+    /**
+     * Variables that have been changed in this assignment (their value may have been changed back to the value of the parent assignment)
+     * @return changed variables
+     */
+    public Collection<V> getChangedVariables() {
+        List<V> variables = new ArrayList<V>(iSize);
+        for (int i = 0; i < iSize; i++)
+            variables.add(variable(i));
+        return variables;
+    }
+
+    @Override
+    public Assignment<V, T> getParentAssignment() {
+        return iParent;
+    }
+
+    @Override
+    public long getVersion() {
+        return iVersion;
+    }
+
+    @Override
+    public int getIndex() {
+        return iIndex;
+    }
+
+    @Override
+    public String toString() {
+        String ret = "OverlayAssignment{";
+        for (int i = 0; i < iSize; i++) {
+            T v = iParent.getValue(variable(i));
+            if (iValues[i] == null ? v != null : !iValues[i].equals(v))
+                ret += "\n  " + variable(i) + " := " + (iValues[i] == null ? "not-assigned" : value(i)) +
+                    "\n    -- original " + (v == null ? "not-assigned" : v);
+        }
+        return ret + "}";
+    }
+}
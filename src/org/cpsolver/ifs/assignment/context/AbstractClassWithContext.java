@@ -35,7 +35,7 @@ import org.cpsolver.ifs.model.Variable;
  **/
 public abstract class AbstractClassWithContext<V extends Variable<V, T>, T extends Value<V, T>, C extends AssignmentContext> implements HasAssignmentContext<V, T, C>, CanHoldContext {
     private AssignmentContextReference<V, T, C> iContextReference = null;
-    private AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
+    private volatile AssignmentContext[] iContext = null;
     private C iSingleContextWhenNoModel = null;
   
     /**
@@ -68,6 +68,9 @@ public abstract class AbstractClassWithContext<V extends Variable<V, T>, T exten
     @Override
     public AssignmentContext[] getContext() { return iContext; }
 
+    @Override
+    public void setContext(AssignmentContext[] contexts) { iContext = contexts; }
+
     /**
      * Get the model. This is used to create an assignment context if needed.
      * @return model
@@ -1,11 +1,68 @@
 package org.cpsolver.ifs.assignment.context;
 
+import java.util.Arrays;
+
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.assignment.InheritedAssignment;
 import org.cpsolver.ifs.model.Value;
 import org.cpsolver.ifs.model.Variable;
 
 public class AssignmentContextHelper {
+    private static volatile int sCapacity = 1;
+    
+    /**
+     * Set the number of assignment contexts (i.e., the highest {@link Assignment#getIndex()} + 1) that
+     * are expected to be held by {@link CanHoldContext} objects. Context arrays are allocated with
+     * this size, so that they do not need to be grown once the parallel assignments are created.
+     * The capacity never decreases.
+     * @param capacity expected number of assignment contexts
+     */
+    public static void setCapacity(int capacity) {
+        synchronized (AssignmentContextHelper.class) {
+            if (capacity > sCapacity) sCapacity = capacity;
+        }
+    }
+    
+    /**
+     * Number of assignment contexts that are allocated when a new context array is created
+     * @return context capacity
+     */
+    public static int getCapacity() {
+        return sCapacity;
+    }
+    
+    /**
+     * Returns an assignment context stored on the given holder for the given assignment index
+     * @param holder an object that can hold contexts
+     * @param index assignment index
+     * @return assignment context, null if there is none
+     */
+    public static AssignmentContext getContext(CanHoldContext holder, int index) {
+        AssignmentContext[] contexts = holder.getContext();
+        return (contexts == null || index >= contexts.length ? null : contexts[index]);
+    }
+    
+    /**
+     * Stores an assignment context on the given holder for the given assignment index. The context
+     * array of the holder is created or grown if needed.
+     * @param holder an object that can hold contexts
+     * @param index assignment index
+     * @param context assignment context, null to clear the context
+     */
+    public static void setContext(CanHoldContext holder, int index, AssignmentContext context) {
+        synchronized (holder) {
+            AssignmentContext[] contexts = holder.getContext();
+            if (contexts == null || index >= contexts.length) {
+                if (context == null) return;
+                int size = Math.max(index + 1, sCapacity);
+                contexts = (contexts == null ? new AssignmentContext[size] : Arrays.copyOf(contexts, size));
+                contexts[index] = context;
+                holder.setContext(contexts);
+            } else {
+                contexts[index] = context;
+            }
+        }
+    }
 
     /**
      * Returns an assignment context associated with the given object. If there is no 
@@ -17,30 +74,31 @@ public class AssignmentContextHelper {
      */
     @SuppressWarnings("unchecked")
     public static <V extends Variable<V, T>, T extends Value<V, T>, C extends AssignmentContext> C getContext(HasAssignmentContext<V, T, C> source, Assignment<V, T> assignment) {
-        if (assignment.getIndex() >= 0 && assignment.getIndex() < CanHoldContext.sMaxSize) {
-            AssignmentContext[] contexts = ((CanHoldContext)source).getContext();
+        if (assignment.getIndex() >= 0) {
+            CanHoldContext holder = (CanHoldContext)source;
             if (assignment.getIndex() > 0 && assignment instanceof InheritedAssignment) {
                 long version = ((InheritedAssignment<V, T>)assignment).getVersion();
                 
-                InheritedAssignmentContextHolder.VersionedContext<C> context = (InheritedAssignmentContextHolder.VersionedContext<C>)contexts[assignment.getIndex()];
+                InheritedAssignmentContextHolder.VersionedContext<C> context = (InheritedAssignmentContextHolder.VersionedContext<C>)getContext(holder, assignment.getIndex());
                 if (context == null) {
                     context = new InheritedAssignmentContextHolder.VersionedContext<C>();
-                    contexts[assignment.getIndex()] = context;
+                    setContext(holder, assignment.getIndex(), context);
                 }
                 
                 if (!context.isCurrent(version)) {
-                    if (source instanceof CanInheritContext && contexts[0] != null)
-                        context.setContent(((CanInheritContext<V, T, C>)source).inheritAssignmentContext(assignment, (C)contexts[0]), version);
+                    C parent = (C)getContext(holder, 0);
+                    if (source instanceof CanInheritContext && parent != null)
+                        context.setContent(((CanInheritContext<V, T, C>)source).inheritAssignmentContext(assignment, parent), version);
                     else
                         context.setContent(source.createAssignmentContext(assignment), version);
                 }
                 
                 return context.getContent();
             } else {
-                AssignmentContext context = contexts[assignment.getIndex()];
+                AssignmentContext context = getContext(holder, assignment.getIndex());
                 if (context == null) {
                     context = source.createAssignmentContext(assignment);
-                    contexts[assignment.getIndex()] = context;
+                    setContext(holder, assignment.getIndex(), context);
                 }
                 return (C) context;
             }
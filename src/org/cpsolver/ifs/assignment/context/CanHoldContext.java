@@ -32,13 +32,28 @@ import org.cpsolver.ifs.assignment.Assignment;
  **/
 public interface CanHoldContext {
     /**
-     * Maximum number of assignment contexts to be held
+     * Former maximum number of assignment contexts to be held. The context arrays are now
+     * allocated lazily and grown on demand (see {@link AssignmentContextHelper#setCapacity(int)}),
+     * so this is no longer a limit on the number of parallel assignments.
      */
+    @Deprecated
     public static int sMaxSize = 17;
     
     /**
-     * An array of {@link CanHoldContext#sMaxSize} assignment contexts
+     * An array of assignment contexts, indexed by {@link Assignment#getIndex()}.
+     * The array may be null (no context has been created yet) or shorter than the index
+     * of the assignment; use {@link AssignmentContextHelper#getContext(CanHoldContext, int)} and
+     * {@link AssignmentContextHelper#setContext(CanHoldContext, int, AssignmentContext)}
+     * to access it.
      * @return assignment contexts
      */
     public AssignmentContext[] getContext();
+    
+    /**
+     * Replace the array of assignment contexts. Only to be called by
+     * {@link AssignmentContextHelper#setContext(CanHoldContext, int, AssignmentContext)}
+     * when the array is being created or grown.
+     * @param contexts new array of assignment contexts
+     */
+    public void setContext(AssignmentContext[] contexts);
 }
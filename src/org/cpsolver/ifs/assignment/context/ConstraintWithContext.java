@@ -41,7 +41,7 @@ import org.cpsolver.ifs.model.Variable;
  **/
 public abstract class ConstraintWithContext<V extends Variable<V, T>, T extends Value<V, T>, C extends AssignmentConstraintContext<V, T>> extends Constraint<V, T> implements HasAssignmentContext<V, T, C>, CanHoldContext {
     private AssignmentContextReference<V, T, C> iContextReference = null;
-    private AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
+    private volatile AssignmentContext[] iContext = null;
     
     public ConstraintWithContext() {
         super();
@@ -78,6 +78,9 @@ public abstract class ConstraintWithContext<V extends Variable<V, T>, T extends
     @Override
     public AssignmentContext[] getContext() { return iContext; }
 
+    @Override
+    public void setContext(AssignmentContext[] contexts) { iContext = contexts; }
+
     @Override
     public void assigned(Assignment<V, T> assignment, long iteration, T value) {
         super.assigned(assignment, iteration, value);
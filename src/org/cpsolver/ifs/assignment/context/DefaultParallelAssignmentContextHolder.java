@@ -46,13 +46,13 @@ public class DefaultParallelAssignmentContextHolder<V extends Variable<V, T>, T
     @Override
     @SuppressWarnings("unchecked")
     public <U extends AssignmentContext> U getAssignmentContext(Assignment<V, T> assignment, AssignmentContextReference<V, T, U> reference) {
-        if (iIndex >= 0 && iIndex < CanHoldContext.sMaxSize && reference.getParent() instanceof CanHoldContext) {
-            AssignmentContext[] contexts = ((CanHoldContext)reference.getParent()).getContext();
-            U context = (U)contexts[iIndex];
+        if (iIndex >= 0 && reference.getParent() instanceof CanHoldContext) {
+            CanHoldContext holder = (CanHoldContext)reference.getParent();
+            U context = (U)AssignmentContextHelper.getContext(holder, iIndex);
             
             if (context == null) {
                 context = reference.getParent().createAssignmentContext(assignment);
-                contexts[iIndex] = context;
+                AssignmentContextHelper.setContext(holder, iIndex, context);
             }
             
             return context;
@@ -63,9 +63,8 @@ public class DefaultParallelAssignmentContextHolder<V extends Variable<V, T>, T
     
     @Override
     public <C extends AssignmentContext> void clearContext(AssignmentContextReference<V, T, C> reference) {
-        if (iIndex >= 0 && iIndex < CanHoldContext.sMaxSize && reference.getParent() instanceof CanHoldContext) {
-            AssignmentContext[] contexts = ((CanHoldContext)reference.getParent()).getContext();
-            contexts[iIndex] = null;
+        if (iIndex >= 0 && reference.getParent() instanceof CanHoldContext) {
+            AssignmentContextHelper.setContext((CanHoldContext)reference.getParent(), iIndex, null);
         } else {
             super.clearContext(reference);
         }
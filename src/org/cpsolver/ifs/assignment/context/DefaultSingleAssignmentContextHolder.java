@@ -44,10 +44,13 @@ public class DefaultSingleAssignmentContextHolder<V extends Variable<V, T>, T ex
     @SuppressWarnings("unchecked")
     public <U extends AssignmentContext> U getAssignmentContext(Assignment<V, T> assignment, AssignmentContextReference<V, T, U> reference) {
         if (reference.getParent() instanceof CanHoldContext) {
-            AssignmentContext[] contexts = ((CanHoldContext)reference.getParent()).getContext();
-            if (contexts[0] == null)
-                contexts[0] = reference.getParent().createAssignmentContext(assignment);
-            return (U)contexts[0];
+            CanHoldContext holder = (CanHoldContext)reference.getParent();
+            U context = (U)AssignmentContextHelper.getContext(holder, 0);
+            if (context == null) {
+                context = reference.getParent().createAssignmentContext(assignment);
+                AssignmentContextHelper.setContext(holder, 0, context);
+            }
+            return context;
         } else {
             return super.getAssignmentContext(assignment, reference);
         }
@@ -56,8 +59,7 @@ public class DefaultSingleAssignmentContextHolder<V extends Variable<V, T>, T ex
     @Override
     public <C extends AssignmentContext> void clearContext(AssignmentContextReference<V, T, C> reference) {
         if (reference.getParent() instanceof CanHoldContext) {
-            AssignmentContext[] contexts = ((CanHoldContext)reference.getParent()).getContext();
-            contexts[0] = null;
+            AssignmentContextHelper.setContext((CanHoldContext)reference.getParent(), 0, null);
         } else {
             super.clearContext(reference);
         }
@@ -56,10 +56,10 @@ public class InheritedAssignmentContextHolder<V extends Variable<V, T>, T extend
     @Override
     @SuppressWarnings("unchecked")
     public <U extends AssignmentContext> U getAssignmentContext(Assignment<V, T> assignment, AssignmentContextReference<V, T, U> reference) {
-        if (iIndex >= 0 && iIndex < CanHoldContext.sMaxSize && reference.getParent() instanceof CanHoldContext) {
-            AssignmentContext[] contexts = ((CanHoldContext)reference.getParent()).getContext();
+        if (iIndex >= 0 && reference.getParent() instanceof CanHoldContext) {
+            CanHoldContext holder = (CanHoldContext)reference.getParent();
 
-            VersionedContext<U> context = (VersionedContext<U>)contexts[iIndex];
+            VersionedContext<U> context = (VersionedContext<U>)AssignmentContextHelper.getContext(holder, iIndex);
             if (context == null) {
                 context = new VersionedContext<U>();
                 if (reference.getParent() instanceof CanInheritContext)
@@ -67,7 +67,7 @@ public class InheritedAssignmentContextHolder<V extends Variable<V, T>, T extend
                             ((InheritedAssignment<V, T>)assignment).getParentAssignment().getAssignmentContext(reference)), iVersion);
                 else
                     context.setContent(reference.getParent().createAssignmentContext(assignment), iVersion);
-                contexts[iIndex] = context;
+                AssignmentContextHelper.setContext(holder, iIndex, context);
             } else if (!context.isCurrent(iVersion)) {
                 if (reference.getParent() instanceof CanInheritContext)
                     context.setContent(((CanInheritContext<V, T, U>)reference.getParent()).inheritAssignmentContext(assignment,
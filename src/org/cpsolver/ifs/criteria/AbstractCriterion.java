@@ -64,7 +64,7 @@ public abstract class AbstractCriterion<V extends Variable<V, T>, T extends Valu
     protected boolean iDebug = false;
     
     private AssignmentContextReference<V, T, ValueContext> iContextReference = null;
-    private AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
+    private volatile AssignmentContext[] iContext = null;
     private int iLastCacheId = 0;
 
     
@@ -156,6 +156,11 @@ public abstract class AbstractCriterion<V extends Variable<V, T>, T extends Valu
         return iContext;
     }
     
+    @Override
+    public void setContext(AssignmentContext[] contexts) {
+        iContext = contexts;
+    }
+    
     @Override
     public double getValue(Assignment<V, T> assignment) {
         return getContext(assignment).getTotal();
@@ -1,9 +1,11 @@
 package org.cpsolver.ifs.extension;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -129,6 +131,30 @@ import org.cpsolver.ifs.util.DataProperties;
  * <td>Another way how to express ageing: number of iterations to decrease a
  * conflict to 1/2 (default is 0 -- no ageing)</td>
  * </tr>
+ * <tr>
+ * <td>ConflictStatistics.Capacity</td>
+ * <td>{@link Integer}</td>
+ * <td>Maximal number of memorized conflicts (default is 0 -- no limit). When
+ * the limit is reached, the weakest conflicts (with the lowest aged counters)
+ * are forgotten, so that the memory used by the statistics does not grow
+ * during long runs.</td>
+ * </tr>
+ * <tr>
+ * <td>ConflictStatistics.Stripes</td>
+ * <td>{@link Integer}</td>
+ * <td>Number of stripes the statistics are split into. Each stripe has its
+ * own lock, so that the statistics can be updated by multiple solver threads
+ * at once (default is 16).</td>
+ * </tr>
+ * <tr>
+ * <td>ConflictStatistics.SharedCounters</td>
+ * <td>{@link Boolean}</td>
+ * <td>When a conflict is memorized for the first time, the same counter is
+ * used both for the unassigned value and for its variable, so that it is
+ * incremented twice when the same assignment unassigns the same value again
+ * (default is true, as in the previous versions). When false, the two tables
+ * use separate counters.</td>
+ * </tr>
  * </table>
  * 
  * @see Solver
@@ -162,15 +188,15 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
     private static final String PARAM_AGEING = "ConflictStatistics.Ageing";
     private static final String PARAM_HALF_AGE = "ConflictStatistics.AgeingHalfTime";
     private static final String PARAM_PRINT = "ConflictStatistics.Print";
+    private static final String PARAM_CAPACITY = "ConflictStatistics.Capacity";
+    private static final String PARAM_STRIPES = "ConflictStatistics.Stripes";
+    private static final String PARAM_SHARED = "ConflictStatistics.SharedCounters";
 
     private double iAgeing = 1.0;
     private boolean iPrint = false;
-
-    private Map<AssignedValue<T>, List<AssignedValue<T>>> iAssignments = new HashMap<AssignedValue<T>, List<AssignedValue<T>>>();
-    private Map<V, List<AssignedValue<T>>> iUnassignedVariables = new HashMap<V, List<AssignedValue<T>>>();
-    private Map<AssignedValue<T>, List<AssignedValue<T>>> iNoGoods = new HashMap<AssignedValue<T>, List<AssignedValue<T>>>();
-    
-    private final ReentrantReadWriteLock iLock = new ReentrantReadWriteLock();
+    private int iCapacity = 0;
+    private boolean iSharedCounters = true;
+    private List<Stripe> iStripes;
 
     public ConflictStatistics(Solver<V, T> solver, DataProperties properties) {
         super(solver, properties);
@@ -179,6 +205,14 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
         if (halfAge > 0)
             iAgeing = Math.exp(Math.log(0.5) / (halfAge));
         iPrint = properties.getPropertyBoolean(PARAM_PRINT, iPrint);
+        int nrStripes = Math.max(1, properties.getPropertyInt(PARAM_STRIPES, 16));
+        iCapacity = properties.getPropertyInt(PARAM_CAPACITY, iCapacity);
+        if (iCapacity > 0)
+            iCapacity = Math.max(16, (iCapacity + nrStripes - 1) / nrStripes);
+        iSharedCounters = properties.getPropertyBoolean(PARAM_SHARED, iSharedCounters);
+        iStripes = new ArrayList<Stripe>(nrStripes);
+        for (int i = 0; i < nrStripes; i++)
+            iStripes.add(new Stripe());
     }
 
     @Override
@@ -190,78 +224,144 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
     public void unregister(Model<V, T> model) {
         super.unregister(model);
     }
+    
+    /** Stripe of the given (unassigned) variable */
+    private Stripe stripe(V variable) {
+        if (iStripes.size() == 1) return iStripes.get(0);
+        int h = variable.hashCode();
+        h ^= (h >>> 16);
+        return iStripes.get((h & 0x7fffffff) % iStripes.size());
+    }
 
     private void variableUnassigned(long iteration, T unassignedValue, AssignedValue<T> noGood) {
         if (iteration <= 0) return;
-        iLock.writeLock().lock();
+        Stripe stripe = stripe(unassignedValue.variable());
+        stripe.iLock.writeLock().lock();
         try {
-            AssignedValue<T> unass = new AssignedValue<T>(iteration, unassignedValue, iAgeing);
-            List<AssignedValue<T>> noGoodsForUnassignment = iNoGoods.get(unass);
-            if (noGoodsForUnassignment != null) {
-                if (noGoodsForUnassignment.contains(noGood)) {
-                    (noGoodsForUnassignment.get(noGoodsForUnassignment.indexOf(noGood))).incCounter(iteration);
-                } else {
-                    noGoodsForUnassignment.add(noGood);
-                }
+            Map<T, AssignedValue<T>> noGoodsForUnassignment = stripe.iNoGoods.get(unassignedValue);
+            if (noGoodsForUnassignment == null) {
+                noGoodsForUnassignment = new HashMap<T, AssignedValue<T>>();
+                stripe.iNoGoods.put(unassignedValue, noGoodsForUnassignment);
+            }
+            AssignedValue<T> counter = noGoodsForUnassignment.get(noGood.getValue());
+            if (counter != null) {
+                counter.incCounter(iteration);
             } else {
-                noGoodsForUnassignment = new ArrayList<AssignedValue<T>>();
-                noGoodsForUnassignment.add(noGood);
-                iNoGoods.put(unass, noGoodsForUnassignment);
+                noGoodsForUnassignment.put(noGood.getValue(), noGood);
+                if (++stripe.iNrNoGoods > iCapacity && iCapacity > 0)
+                    stripe.iNrNoGoods = evict(stripe.iNoGoods, stripe.iNrNoGoods, iteration);
             }
         } finally {
-            iLock.writeLock().unlock();
+            stripe.iLock.writeLock().unlock();
         }
     }
 
     public void reset() {
-        iLock.writeLock().lock();
-        try {
-            iUnassignedVariables.clear();
-            iAssignments.clear();
-        } finally {
-            iLock.writeLock().unlock();
+        for (Stripe stripe: iStripes) {
+            stripe.iLock.writeLock().lock();
+            try {
+                stripe.iUnassignedVariables.clear();
+                stripe.iAssignments.clear();
+                stripe.iNrUnassignedVariables = 0;
+                stripe.iNrAssignments = 0;
+            } finally {
+                stripe.iLock.writeLock().unlock();
+            }
         }
     }
 
+    /**
+     * Memorized conflicts (only collected when ConflictStatistics.Print is set), the returned map is a copy
+     * @return unassigned value &#8594; assignments that caused its unassignment
+     */
     public Map<AssignedValue<T>, List<AssignedValue<T>>> getNoGoods() {
-        return iNoGoods;
+        Map<AssignedValue<T>, List<AssignedValue<T>>> noGoods = new HashMap<AssignedValue<T>, List<AssignedValue<T>>>();
+        for (Stripe stripe: iStripes) {
+            stripe.iLock.readLock().lock();
+            try {
+                for (Map.Entry<T, Map<T, AssignedValue<T>>> entry: stripe.iNoGoods.entrySet())
+                    noGoods.put(new AssignedValue<T>(0, entry.getKey(), iAgeing), new ArrayList<AssignedValue<T>>(entry.getValue().values()));
+            } finally {
+                stripe.iLock.readLock().unlock();
+            }
+        }
+        return noGoods;
     }
 
     public void variableUnassigned(long iteration, T unassignedValue, T assignedValue) {
         if (iteration <= 0) return;
-        AssignedValue<T> ass = new AssignedValue<T>(iteration, assignedValue, iAgeing);
-        AssignedValue<T> unass = new AssignedValue<T>(iteration, unassignedValue, iAgeing);
-        iLock.writeLock().lock();
+        Stripe stripe = stripe(unassignedValue.variable());
+        stripe.iLock.writeLock().lock();
         try {
-            if (iAssignments.containsKey(unass)) {
-                List<AssignedValue<T>> asss = iAssignments.get(unass);
-                if (asss.contains(ass)) {
-                    asss.get(asss.indexOf(ass)).incCounter(iteration);
-                } else {
-                    asss.add(ass);
-                }
+            Map<T, AssignedValue<T>> asss = stripe.iAssignments.get(unassignedValue);
+            if (asss == null) {
+                asss = new HashMap<T, AssignedValue<T>>();
+                stripe.iAssignments.put(unassignedValue, asss);
+            }
+            AssignedValue<T> created = null;
+            AssignedValue<T> ass = asss.get(assignedValue);
+            if (ass != null) {
+                ass.incCounter(iteration);
             } else {
-                List<AssignedValue<T>> asss = new ArrayList<AssignedValue<T>>();
-                asss.add(ass);
-                iAssignments.put(unass, asss);
+                created = new AssignedValue<T>(iteration, assignedValue, iAgeing);
+                asss.put(assignedValue, created);
+                if (++stripe.iNrAssignments > iCapacity && iCapacity > 0)
+                    stripe.iNrAssignments = evict(stripe.iAssignments, stripe.iNrAssignments, iteration);
             }
-            if (iUnassignedVariables.containsKey(unassignedValue.variable())) {
-                List<AssignedValue<T>> asss = iUnassignedVariables.get(unassignedValue.variable());
-                if (asss.contains(ass)) {
-                    (asss.get(asss.indexOf(ass))).incCounter(iteration);
-                } else {
-                    asss.add(ass);
-                }
+            asss = stripe.iUnassignedVariables.get(unassignedValue.variable());
+            if (asss == null) {
+                asss = new HashMap<T, AssignedValue<T>>();
+                stripe.iUnassignedVariables.put(unassignedValue.variable(), asss);
+            }
+            ass = asss.get(assignedValue);
+            if (ass != null) {
+                ass.incCounter(iteration);
             } else {
-                List<AssignedValue<T>> asss = new ArrayList<AssignedValue<T>>();
-                asss.add(ass);
-                iUnassignedVariables.put(unassignedValue.variable(), asss);
+                asss.put(assignedValue, created != null && iSharedCounters ? created : new AssignedValue<T>(iteration, assignedValue, iAgeing));
+                if (++stripe.iNrUnassignedVariables > iCapacity && iCapacity > 0)
+                    stripe.iNrUnassignedVariables = evict(stripe.iUnassignedVariables, stripe.iNrUnassignedVariables, iteration);
             }
         } finally {
-            iLock.writeLock().unlock();
+            stripe.iLock.writeLock().unlock();
         }
     }
-
+    
+    /**
+     * Forget the weakest counters of the given table (with the lowest aged value), so that only 3/4 of the
+     * capacity remains. Since a quarter of the capacity is freed, the eviction is only done once in a while.
+     * @param table a table of counters, must be called while holding the write lock of its stripe
+     * @param size current number of counters in the table
+     * @param iteration current iteration
+     * @return number of counters that remained in the table
+     */
+    private <K> int evict(Map<K, Map<T, AssignedValue<T>>> table, int size, long iteration) {
+        int remove = size - (3 * iCapacity) / 4;
+        if (remove <= 0) return size;
+        double[] counters = new double[size];
+        int n = 0;
+        for (Map<T, AssignedValue<T>> counter: table.values())
+            for (AssignedValue<T> ass: counter.values())
+                if (n < counters.length) counters[n++] = ass.getCounter(iteration);
+        Arrays.sort(counters, 0, n);
+        if (remove > n) remove = n;
+        double limit = counters[remove - 1];
+        int removeEqual = remove;
+        for (int i = 0; i < remove && counters[i] < limit; i++)
+            removeEqual--;
+        for (Iterator<Map<T, AssignedValue<T>>> i = table.values().iterator(); i.hasNext(); ) {
+            Map<T, AssignedValue<T>> counter = i.next();
+            for (Iterator<AssignedValue<T>> j = counter.values().iterator(); j.hasNext(); ) {
+                double c = j.next().getCounter(iteration);
+                if (c < limit || (c == limit && removeEqual > 0)) {
+                    if (c == limit) removeEqual--;
+                    j.remove();
+                    size--;
+                }
+            }
+            if (counter.isEmpty()) i.remove();
+        }
+        return size;
+    }
     /**
      * Counts number of unassignments of the given conflicting values caused by
      * the assignment of the given value.
@@ -288,18 +388,18 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
      * @return number of unassignments
      */
     public double countRemovals(long iteration, T conflictValue, T value) {
-        iLock.readLock().lock();
+        Stripe stripe = stripe(conflictValue.variable());
+        stripe.iLock.readLock().lock();
         try {
-            List<AssignedValue<T>> asss = iUnassignedVariables.get(conflictValue.variable());
+            Map<T, AssignedValue<T>> asss = stripe.iUnassignedVariables.get(conflictValue.variable());
             if (asss == null)
                 return 0;
-            AssignedValue<T> ass = new AssignedValue<T>(iteration, value, iAgeing);
-            int idx = asss.indexOf(ass);
-            if (idx < 0)
+            AssignedValue<T> ass = asss.get(value);
+            if (ass == null)
                 return 0;
-            return (asss.get(idx)).getCounter(iteration);
+            return ass.getCounter(iteration);
         } finally {
-            iLock.readLock().unlock();
+            stripe.iLock.readLock().unlock();
         }
     }
 
@@ -313,25 +413,35 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
      * @return number of potential unassignments
      */
     public long countPotentialConflicts(Assignment<V, T> assignment, long iteration, T value, int limit) {
-        iLock.readLock().lock();
+        List<T> values = null;
+        double[] counters = null;
+        Stripe stripe = stripe(value.variable());
+        stripe.iLock.readLock().lock();
         try {
-            List<AssignedValue<T>> asss = iAssignments.get(new AssignedValue<T>(iteration, value, iAgeing));
+            Map<T, AssignedValue<T>> asss = stripe.iAssignments.get(value);
             if (asss == null)
                 return 0;
-            long count = 0;
-            for (AssignedValue<T> ass : asss) {
+            values = new ArrayList<T>(asss.size());
+            counters = new double[asss.size()];
+            for (AssignedValue<T> ass : asss.values()) {
                 if (ass.getValue().variable().getAssignment(assignment) == null) {
-                    if (limit >= 0) {
-                        count += ass.getCounter(iteration) * Math.max(0, 1 + limit - value.variable().getModel().conflictValues(assignment, ass.getValue()).size());
-                    } else {
-                        count += ass.getCounter(iteration);
-                    }
+                    counters[values.size()] = ass.getCounter(iteration);
+                    values.add(ass.getValue());
                 }
             }
-            return count;            
         } finally {
-            iLock.readLock().unlock();
+            stripe.iLock.readLock().unlock();
+        }
+        // conflicts are computed outside of the lock
+        long count = 0;
+        for (int i = 0; i < values.size(); i++) {
+            if (limit >= 0) {
+                count += counters[i] * Math.max(0, 1 + limit - value.variable().getModel().conflictValues(assignment, values.get(i)).size());
+            } else {
+                count += counters[i];
+            }
         }
+        return count;
     }
     
     /**
@@ -340,33 +450,39 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
      * @return total number of past assignments
      */
     public long countAssignments(V variable) {
-        iLock.readLock().lock();
+        Stripe stripe = stripe(variable);
+        stripe.iLock.readLock().lock();
         try {
-            List<AssignedValue<T>> assignments = iUnassignedVariables.get(variable);
+            Map<T, AssignedValue<T>> assignments = stripe.iUnassignedVariables.get(variable);
             if (assignments == null || assignments.isEmpty()) return 0;
             double ret = 0;
-            for (AssignedValue<T> assignment: assignments) {
+            for (AssignedValue<T> assignment: assignments.values()) {
                 ret += assignment.getCounter(0);
             }
             return Math.round(ret);
         } finally {
-            iLock.readLock().unlock();
+            stripe.iLock.readLock().unlock();
         }
     }
 
     @Override
     public String toString() {
-        iLock.readLock().lock();
+        for (Stripe stripe: iStripes)
+            stripe.iLock.readLock().lock();
         try {
             if (iPrint) {
+                final Map<T, Collection<AssignedValue<T>>> noGoods = new HashMap<T, Collection<AssignedValue<T>>>();
+                for (Stripe stripe: iStripes)
+                    for (Map.Entry<T, Map<T, AssignedValue<T>>> entry: stripe.iNoGoods.entrySet())
+                        noGoods.put(entry.getKey(), entry.getValue().values());
                 StringBuffer sb = new StringBuffer("Statistics{");
                 TreeSet<AssignedValue<T>> sortedUnassignments = new TreeSet<AssignedValue<T>>(new Comparator<AssignedValue<T>>() {
                     @Override
                     public int compare(AssignedValue<T> x1, AssignedValue<T> x2) {
                         int c1 = 0, c2 = 0;
-                        for (AssignedValue<T> y: iNoGoods.get(x1))
+                        for (AssignedValue<T> y: noGoods.get(x1.getValue()))
                             c1 += y.getCounter(0);
-                        for (AssignedValue<T> y: iNoGoods.get(x2))
+                        for (AssignedValue<T> y: noGoods.get(x2.getValue()))
                             c2 += y.getCounter(0);
                         int cmp = Double.compare(c1, c2);
                         if (cmp != 0)
@@ -374,11 +490,12 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
                         return x1.compareTo(0, x2);
                     }
                 });
-                sortedUnassignments.addAll(iNoGoods.keySet());
+                for (T value: noGoods.keySet())
+                    sortedUnassignments.add(new AssignedValue<T>(0, value, iAgeing));
                 int printedUnassignments = 0;
                 for (AssignedValue<T> x : sortedUnassignments) {
                     int c = 0;
-                    for (AssignedValue<T> y: iNoGoods.get(x))
+                    for (AssignedValue<T> y: noGoods.get(x.getValue()))
                         c += y.getCounter(0);
                     sb.append("\n    ").append(c + "x ").append(x.toString(0, false)).append(" <= {");
                     TreeSet<AssignedValue<T>> sortedAssignments = new TreeSet<AssignedValue<T>>(new Comparator<AssignedValue<T>>() {
@@ -390,7 +507,7 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
                             return x1.compareTo(0, x2);
                         }
                     });
-                    sortedAssignments.addAll(iNoGoods.get(x));
+                    sortedAssignments.addAll(noGoods.get(x.getValue()));
                     int printedAssignments = 0;
                     for (AssignedValue<T> y : sortedAssignments) {
                         sb.append("\n        ").append(y.toString(0, true));
@@ -418,7 +535,8 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
                         return v1.compareTo(v2);
                     }
                 });
-                sortedUnassignedVariables.addAll(iUnassignedVariables.keySet());
+                for (Stripe stripe: iStripes)
+                    sortedUnassignedVariables.addAll(stripe.iUnassignedVariables.keySet());
                 int printedVariables = 0;
                 for (V variable : sortedUnassignedVariables) {
                     sb.append("\n      ").append(countAssignments(variable) + "x ").append(variable.getName()).append(" <= {");
@@ -431,7 +549,7 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
                             return x1.compareTo(0, x2);
                         }
                     });
-                    sortedAssignments.addAll(iUnassignedVariables.get(variable));
+                    sortedAssignments.addAll(stripe(variable).iUnassignedVariables.get(variable).values());
                     int printedAssignments = 0;
                     for (AssignedValue<T> x : sortedAssignments) {
                         sb.append("\n        ").append(x.toString(0, true));
@@ -450,7 +568,8 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
                 return sb.toString();            
             }
         } finally {
-            iLock.readLock().unlock();
+            for (Stripe stripe: iStripes)
+                stripe.iLock.readLock().unlock();
         }
     }
 
@@ -492,4 +611,16 @@ public class ConflictStatistics<V extends Variable<V, T>, T extends Value<V, T>>
     public void constraintRemoved(Constraint<V, T> constraint) {
         constraint.removeConstraintListener(this);
     }
+    
+    /**
+     * A stripe of the conflict-based statistics. Variables are distributed among the stripes by their hash codes,
+     * all the counters of an unassigned variable are kept in its stripe, protected by the stripe's lock.
+     */
+    private class Stripe {
+        private final ReentrantReadWriteLock iLock = new ReentrantReadWriteLock();
+        private Map<T, Map<T, AssignedValue<T>>> iAssignments = new HashMap<T, Map<T, AssignedValue<T>>>();
+        private Map<V, Map<T, AssignedValue<T>>> iUnassignedVariables = new HashMap<V, Map<T, AssignedValue<T>>>();
+        private Map<T, Map<T, AssignedValue<T>>> iNoGoods = new HashMap<T, Map<T, AssignedValue<T>>>();
+        private int iNrAssignments = 0, iNrUnassignedVariables = 0, iNrNoGoods = 0;
+    }
 }
@@ -274,6 +274,7 @@ public class BacktrackNeighbourSelection<V extends Variable<V, T>, T extends Val
             if (!checkBound(variables2resolve, idx, depth, value, conflicts))
                 continue;
             List<V> newVariables2resolve = new ArrayList<V>(variables2resolve);
+            int savepoint = context.getAssignment().savepoint();
             for (Iterator<T> i = conflicts.iterator(); i.hasNext();) {
                 T conflict = i.next();
                 context.getAssignment().unassign(0, conflict.variable());
@@ -284,14 +285,7 @@ public class BacktrackNeighbourSelection<V extends Variable<V, T>, T extends Val
                 context.getAssignment().unassign(0, current.variable());
             context.getAssignment().assign(0, value);
             backtrack(context, newVariables2resolve, idx + 1, depth - 1);
-            if (current == null)
-                context.getAssignment().unassign(0, variable);
-            else
-                context.getAssignment().assign(0, current);
-            for (Iterator<T> i = conflicts.iterator(); i.hasNext();) {
-                T conflict = i.next();
-                context.getAssignment().assign(0, conflict); 
-            }
+            context.getAssignment().rollback(savepoint);
         }
     }
 
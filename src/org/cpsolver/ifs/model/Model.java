@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -19,12 +20,14 @@ import org.cpsolver.ifs.assignment.DefaultInheritedAssignment;
 import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
 import org.cpsolver.ifs.assignment.EmptyAssignment;
 import org.cpsolver.ifs.assignment.InheritedAssignment;
+import org.cpsolver.ifs.assignment.context.AbstractClassWithContext;
 import org.cpsolver.ifs.assignment.context.AssignmentContext;
 import org.cpsolver.ifs.assignment.context.AssignmentContextReference;
 import org.cpsolver.ifs.assignment.context.HasAssignmentContext;
 import org.cpsolver.ifs.criteria.Criterion;
 import org.cpsolver.ifs.solution.Solution;
 import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.Metrics;
 import org.cpsolver.ifs.util.ToolBox;
 
 
@@ -83,6 +86,8 @@ import org.cpsolver.ifs.util.ToolBox;
  */
 public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
     private static org.apache.logging.log4j.Logger sLogger = org.apache.logging.log4j.LogManager.getLogger(Model.class);
+    private static Metrics.ByClass sConflictTimers = Metrics.byClass("conflicts");
+    private static Metrics.ByClass sListenerTimers = Metrics.byClass("listener");
     protected static java.text.DecimalFormat sTimeFormat = new java.text.DecimalFormat("0.00",
             new java.text.DecimalFormatSymbols(Locale.US));
     protected static java.text.DecimalFormat sDoubleFormat = new java.text.DecimalFormat("0.00",
@@ -103,6 +108,9 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
     private int iBestUnassignedVariables = -1;
     private int iBestPerturbations = 0;
     private double iBestValue = 0.0;
+    private int iBestAssignedPerturbations = 0; // assigned variables of the best solution that are not assigned their initial values
+    private volatile long iBestSaveId = 0;
+    private BestSnapshot iBestSnapshot = new BestSnapshot();
     private int iNextReferenceId = 0;
     private int iNextVariableIndex = 0;
     @Deprecated
@@ -426,6 +434,19 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
      */
     public Set<T> conflictValues(Assignment<V, T> assignment, T value) {
         Set<T> conflictValues = new HashSet<T>();
+        if (Metrics.isEnabled()) {
+            for (Constraint<V, T> constraint : value.variable().hardConstraints()) {
+                long t0 = System.nanoTime();
+                constraint.computeConflicts(assignment, value, conflictValues);
+                sConflictTimers.of(constraint).recordSince(t0);
+            }
+            for (GlobalConstraint<V, T> constraint : globalConstraints()) {
+                long t0 = System.nanoTime();
+                constraint.computeConflicts(assignment, value, conflictValues);
+                sConflictTimers.of(constraint).recordSince(t0);
+            }
+            return conflictValues;
+        }
         for (Constraint<V, T> constraint : value.variable().hardConstraints())
             constraint.computeConflicts(assignment, value, conflictValues);
         for (GlobalConstraint<V, T> constraint : globalConstraints())
@@ -507,8 +528,16 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
      **/
     public void beforeAssigned(Assignment<V, T> assignment, long iteration, T value) {
         beforeAssigned(iteration, value);
-        for (ModelListener<V, T> listener : iModelListeners)
-            listener.beforeAssigned(assignment, iteration, value);
+        if (Metrics.isEnabled()) {
+            for (ModelListener<V, T> listener : iModelListeners) {
+                long t0 = System.nanoTime();
+                listener.beforeAssigned(assignment, iteration, value);
+                sListenerTimers.of(listener).recordSince(t0);
+            }
+        } else {
+            for (ModelListener<V, T> listener : iModelListeners)
+                listener.beforeAssigned(assignment, iteration, value);
+        }
     }
 
     /** Called before a value is unassigned from its variable 
@@ -526,8 +555,16 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
      **/
     public void beforeUnassigned(Assignment<V, T> assignment, long iteration, T value) {
         beforeUnassigned(iteration, value);
-        for (ModelListener<V, T> listener : iModelListeners)
-            listener.beforeUnassigned(assignment, iteration, value);
+        if (Metrics.isEnabled()) {
+            for (ModelListener<V, T> listener : iModelListeners) {
+                long t0 = System.nanoTime();
+                listener.beforeUnassigned(assignment, iteration, value);
+                sListenerTimers.of(listener).recordSince(t0);
+            }
+        } else {
+            for (ModelListener<V, T> listener : iModelListeners)
+                listener.beforeUnassigned(assignment, iteration, value);
+        }
     }
 
     /** Called after a value is assigned to its variable
@@ -545,8 +582,17 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
      **/
     public void afterAssigned(Assignment<V, T> assignment,  long iteration, T value) {
         afterAssigned(iteration, value);
-        for (ModelListener<V, T> listener : iModelListeners)
-            listener.afterAssigned(assignment, iteration, value);
+        if (Metrics.isEnabled()) {
+            for (ModelListener<V, T> listener : iModelListeners) {
+                long t0 = System.nanoTime();
+                listener.afterAssigned(assignment, iteration, value);
+                sListenerTimers.of(listener).recordSince(t0);
+            }
+        } else {
+            for (ModelListener<V, T> listener : iModelListeners)
+                listener.afterAssigned(assignment, iteration, value);
+        }
+        iBestSnapshot.changed(assignment, value.variable());
     }
     
     /** Called after a value is unassigned from its variable
@@ -564,8 +610,17 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
      **/
     public void afterUnassigned(Assignment<V, T> assignment, long iteration, T value) {
         afterUnassigned(iteration, value);
-        for (ModelListener<V, T> listener : iModelListeners)
-            listener.afterUnassigned(assignment, iteration, value);
+        if (Metrics.isEnabled()) {
+            for (ModelListener<V, T> listener : iModelListeners) {
+                long t0 = System.nanoTime();
+                listener.afterUnassigned(assignment, iteration, value);
+                sListenerTimers.of(listener).recordSince(t0);
+            }
+        } else {
+            for (ModelListener<V, T> listener : iModelListeners)
+                listener.afterUnassigned(assignment, iteration, value);
+        }
+        iBestSnapshot.changed(assignment, value.variable());
     }
 
     @Override
@@ -774,30 +829,75 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
         saveBest(getDefaultAssignment());
     }
 
-    /** Save the current assignment as the best ever found assignment 
+    /** Save the current assignment as the best ever found assignment.
+     * If the best assignment was last saved from the same assignment, only the variables
+     * that have been changed since then are updated (see {@link Model#getBestChangedVariables(Assignment)}).
+     * The number of perturbations of the best solution is updated from the same changes in this case, the total value
+     * is always taken from {@link Model#getTotalValue(Assignment)}.
      * @param assignment current assignment 
      **/
     public void saveBest(Assignment<V, T> assignment) {
         iBestUnassignedVariables = iVariables.size() - assignment.nrAssignedVariables();
-        iBestPerturbations = perturbVariables(assignment).size();
+        Collection<V> changed = getBestChangedVariables(assignment);
+        if (changed == null) {
+            iBestAssignedPerturbations = 0;
+            for (V variable: variablesWithInitialValue())
+                if (isAssignedPerturbation(variable, assignment.getValue(variable))) iBestAssignedPerturbations ++;
+        } else {
+            for (V variable: changed) {
+                T value = assignment.getValue(variable), best = variable.getBestAssignment();
+                if (isAssignedPerturbation(variable, value)) iBestAssignedPerturbations ++;
+                if (isAssignedPerturbation(variable, best)) iBestAssignedPerturbations --;
+            }
+        }
+        iBestPerturbations = iBestAssignedPerturbations;
+        if (iBestUnassignedVariables > 0 && !variablesWithInitialValue().isEmpty()) {
+            for (V variable: variablesWithInitialValue())
+                if (assignment.getValue(variable) == null && !perturbVariables(assignment, Collections.singletonList(variable)).isEmpty()) iBestPerturbations ++;
+        }
         iBestValue = getTotalValue(assignment);
-        for (V variable : iVariables) {
+        for (V variable : (changed == null ? iVariables : changed)) {
             variable.setBestAssignment(assignment.getValue(variable), assignment.getIteration(variable));
         }
+        iBestSnapshot.saved(assignment);
         for (Criterion<V, T> criterion: getCriteria()) {
             criterion.bestSaved(assignment);
         }
     }
 
+    /**
+     * True if the given value is assigned and the variable has a different initial value
+     */
+    private boolean isAssignedPerturbation(V variable, T value) {
+        return value != null && variable.getInitialAssignment() != null && !variable.getInitialAssignment().equals(value);
+    }
+
     /** Clear the best ever found assignment */
     public void clearBest() {
         iBestUnassignedVariables = -1;
         iBestPerturbations = 0;
         iBestValue = 0;
+        iBestAssignedPerturbations = 0;
+        iBestSaveId++;
         for (V variable : iVariables) {
             variable.setBestAssignment(null, 0);
         }
     }
+    
+    /**
+     * Variables that have been changed in the given assignment since the best assignment was saved
+     * (using {@link Model#saveBest(Assignment)}). All the other variables are assigned the same as in the
+     * best assignment. This information is only available when the best assignment was last saved from the
+     * given assignment and the assignment has a non-negative index (see {@link Assignment#getIndex()}).
+     * If the best variable assignments are changed directly (using {@link Variable#setBestAssignment(Value, long)}),
+     * {@link Model#clearBest()} or {@link Model#saveBest(Assignment)} must follow.
+     * @param assignment current assignment
+     * @return variables changed since the best was saved, null if not known
+     */
+    public Collection<V> getBestChangedVariables(Assignment<V, T> assignment) {
+        BestSnapshotContext context = iBestSnapshot.getSnapshot(assignment);
+        return (context == null ? null : context.iChanged);
+    }
 
     /**
      * Restore the best ever found assignment into the current assignment
@@ -815,7 +915,9 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
     @SuppressWarnings("unchecked")
     protected void restoreBest(Assignment<V, T> assignment, Comparator<V> assignmentOrder) {
         TreeSet<V> sortedVariables = new TreeSet<V>(assignmentOrder);
-        for (V variable : iVariables) {
+        long saveId = iBestSaveId;
+        BestSnapshotContext snapshot = iBestSnapshot.getSnapshot(assignment);
+        for (V variable : (snapshot == null ? iVariables : new ArrayList<V>(snapshot.iChanged))) {
             T value = assignment.getValue(variable);
             if (value == null) {
                 if (variable.getBestAssignment() != null)
@@ -892,6 +994,7 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
             }
             assignment.assign(0, value);
         }
+        iBestSnapshot.restored(assignment, snapshot, saveId);
         for (Criterion<V, T> criterion: getCriteria()) {
             criterion.bestRestored(assignment);
         }
@@ -1272,4 +1375,94 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
     public InheritedAssignment<V, T> createInheritedAssignment(Solution<V, T> solution, int index) {
         return new DefaultInheritedAssignment<V, T>(solution, index);
     }
+    
+    /**
+     * Keeps track of variables that have been changed since the best assignment was last saved
+     * from a particular assignment, see {@link Model#getBestChangedVariables(Assignment)}.
+     */
+    private class BestSnapshot extends AbstractClassWithContext<V, T, BestSnapshotContext> {
+        
+        @Override
+        public BestSnapshotContext createAssignmentContext(Assignment<V, T> assignment) {
+            return new BestSnapshotContext();
+        }
+        
+        @Override
+        public Model<V, T> getModel() {
+            return Model.this;
+        }
+        
+        /**
+         * Context of the given assignment, if the best assignment was last saved from it
+         */
+        BestSnapshotContext getSnapshot(Assignment<V, T> assignment) {
+            if (assignment.getIndex() < 0) return null;
+            BestSnapshotContext context = getContext(assignment);
+            return (context.iSaveId == iBestSaveId ? context : null);
+        }
+        
+        /**
+         * Variable of the given assignment has been changed
+         */
+        void changed(Assignment<V, T> assignment, V variable) {
+            BestSnapshotContext context = getSnapshot(assignment);
+            if (context != null)
+                context.iChanged.add(variable);
+        }
+        
+        /**
+         * Best assignment has been restored into the given assignment, start tracking its changes
+         * (the given save id is the one from the time the restore started, so that the tracking is not
+         * started when the best assignment was saved by another thread in the meantime)
+         */
+        void restored(Assignment<V, T> assignment, BestSnapshotContext snapshot, long saveId) {
+            if (snapshot != null) {
+                snapshot.restored(assignment, snapshot.iChanged);
+            } else if (assignment.getIndex() >= 0) {
+                BestSnapshotContext context = getContext(assignment);
+                context.iSaveId = saveId;
+                context.iChanged.clear();
+                context.restored(assignment, iVariables);
+            }
+        }
+        
+        /**
+         * Best assignment has been saved from the given assignment
+         */
+        void saved(Assignment<V, T> assignment) {
+            iBestSaveId++;
+            if (assignment.getIndex() < 0) return;
+            BestSnapshotContext context = getContext(assignment);
+            context.iSaveId = iBestSaveId;
+            context.iChanged.clear();
+        }
+    }
+    
+    /**
+     * Assignment context of the {@link BestSnapshot}
+     */
+    private class BestSnapshotContext implements AssignmentContext {
+        private long iSaveId = -1;
+        private Set<V> iChanged = new HashSet<V>();
+        
+        /**
+         * Best assignment has been restored, only keep the given variables that are not assigned the same as in the best
+         */
+        void restored(Assignment<V, T> assignment, Collection<V> variables) {
+            if (variables == iChanged) {
+                for (Iterator<V> i = iChanged.iterator(); i.hasNext(); ) {
+                    V variable = i.next();
+                    if (isBest(assignment, variable)) i.remove();
+                }
+            } else {
+                for (V variable: variables)
+                    if (!isBest(assignment, variable)) iChanged.add(variable);
+            }
+        }
+        
+        private boolean isBest(Assignment<V, T> assignment, V variable) {
+            T value = assignment.getValue(variable);
+            return (value == null ? variable.getBestAssignment() == null : value.equals(variable.getBestAssignment()));
+        }
+    }
 }
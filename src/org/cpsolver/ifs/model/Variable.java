@@ -5,12 +5,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.assignment.DefaultParallelAssignment;
 import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
 import org.cpsolver.ifs.assignment.EmptyAssignment;
-import org.cpsolver.ifs.assignment.context.CanHoldContext;
+import org.cpsolver.ifs.assignment.context.AssignmentContextHelper;
 import org.cpsolver.ifs.util.IdGenerator;
 
 
@@ -58,8 +59,8 @@ public class Variable<V extends Variable<V, T>, T extends Value<V, T>> implement
     private T iInitialValue = null; // initial value
     /** Assigned value */
     protected T iValue = null; // assigned value
-    @SuppressWarnings("unchecked")
-    private Value<V, T>[] iAssignedValues = (Value<V, T>[])Array.newInstance(Value.class, CanHoldContext.sMaxSize); // assigned values
+    private volatile AtomicReferenceArray<Value<V, T>> iAssignedValues = null; // assigned values (allocated lazily)
+    private volatile boolean iGrowingAssignedValues = false; // assigned values are being copied into a bigger array
     private T iBestValue = null; // best value
     private long iBestAssignmentIteration = 0;
     private List<T> iValues = null;
@@ -187,11 +188,64 @@ public class Variable<V extends Variable<V, T>, T extends Value<V, T>> implement
     /**
      * Returns current assignments.
      * BEWARE: Do not use outside of {@link DefaultParallelAssignment}.
-     * @return currently assigned values
+     * @return copy of the currently assigned values, null if no value has been assigned yet (the array may also be shorter than the number of parallel assignments)
      **/
     @Deprecated
+    @SuppressWarnings("unchecked")
     public Value<V, T>[] getAssignments() {
-        return iAssignedValues;
+        AtomicReferenceArray<Value<V, T>> values = iAssignedValues;
+        if (values == null) return null;
+        Value<V, T>[] ret = (Value<V, T>[])Array.newInstance(Value.class, values.length());
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = values.get(i);
+        return ret;
+    }
+    
+    /**
+     * Returns current assignment of the given assignment index.
+     * BEWARE: Do not use outside of {@link DefaultParallelAssignment}.
+     * @param index assignment index
+     * @return currently assigned value, null if not assigned
+     **/
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public T getAssignment(int index) {
+        AtomicReferenceArray<Value<V, T>> values = iAssignedValues;
+        return (values == null || index >= values.length() ? null : (T)values.get(index));
+    }
+    
+    /**
+     * Sets current assignment of the given assignment index. The array of assigned values is
+     * allocated (or grown) when needed, using {@link AssignmentContextHelper#getCapacity()} as its size.
+     * Only the allocation is done under a lock; a write that may have raced with a grow is repeated under the lock.
+     * BEWARE: Do not use outside of {@link DefaultParallelAssignment}.
+     * @param index assignment index
+     * @param value currently assigned value
+     **/
+    @Deprecated
+    public void setAssignment(int index, T value) {
+        AtomicReferenceArray<Value<V, T>> values = iAssignedValues;
+        if (values != null && index < values.length()) {
+            values.set(index, value);
+            // the write is lost only when the array was being copied at the same time
+            if (!iGrowingAssignedValues && values == iAssignedValues) return;
+        } else if (value == null) {
+            return;
+        }
+        synchronized (this) {
+            values = iAssignedValues;
+            if (values == null || index >= values.length()) {
+                iGrowingAssignedValues = true;
+                AtomicReferenceArray<Value<V, T>> grown = new AtomicReferenceArray<Value<V, T>>(Math.max(index + 1, AssignmentContextHelper.getCapacity()));
+                if (values != null)
+                    for (int i = 0; i < values.length(); i++)
+                        grown.set(i, values.get(i));
+                iAssignedValues = grown;
+                iGrowingAssignedValues = false;
+                values = grown;
+            }
+            values.set(index, value);
+        }
     }
 
     /** Returns initial assignment 
@@ -1,23 +1,35 @@
 package org.cpsolver.ifs.solver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.assignment.DefaultParallelAssignment;
 import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
+import org.cpsolver.ifs.assignment.OverlayInheritedAssignment;
+import org.cpsolver.ifs.assignment.context.AssignmentContext;
+import org.cpsolver.ifs.assignment.context.AssignmentContextHelper;
 import org.cpsolver.ifs.assignment.context.CanHoldContext;
+import org.cpsolver.ifs.assignment.context.HasAssignmentContext;
+import org.cpsolver.ifs.criteria.Criterion;
 import org.cpsolver.ifs.model.LazyNeighbour;
 import org.cpsolver.ifs.model.LazyNeighbour.LazyNeighbourAcceptanceCriterion;
 import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.Constraint;
 import org.cpsolver.ifs.model.Neighbour;
 import org.cpsolver.ifs.model.Value;
 import org.cpsolver.ifs.model.Variable;
@@ -25,6 +37,7 @@ import org.cpsolver.ifs.solution.Solution;
 import org.cpsolver.ifs.solution.SolutionListener;
 import org.cpsolver.ifs.util.DataProperties;
 import org.cpsolver.ifs.util.JProf;
+import org.cpsolver.ifs.util.Metrics;
 import org.cpsolver.ifs.util.Progress;
 import org.cpsolver.ifs.util.ToolBox;
 
@@ -35,9 +48,39 @@ import org.cpsolver.ifs.util.ToolBox;
  * works with its own assignment {@link DefaultParallelAssignment}, but the best solution
  * is shared among all of them.<br>
  * <br>
+ * Each solver thread also uses its own random number generator (see {@link ToolBox#setThreadSeed(long)}),
+ * seeded from General.Seed and the thread index.<br>
+ * <br>
  * When {@link DefaultSingleAssignment} is given to the solver, only one solution is used.
  * A neighbour is assigned to this (shared) solution when it does not create any conflicts
- * outside of {@link Neighbour#assignments()}.
+ * outside of {@link Neighbour#assignments()}.<br>
+ * <br>
+ * With ParallelSolver.SingleSolutionOptimistic set to true, a neighbour is first evaluated
+ * (conflicts and, for a {@link LazyNeighbour}, its acceptance) on an inherited assignment, without
+ * holding the solution lock. The lock is then only taken to check per-variable version stamps:
+ * when none of the variables of the neighbour and none of the variables sharing a hard constraint
+ * with them have changed since the evaluation started, the neighbour is assigned without any further
+ * checks. Otherwise, the evaluation is retried (up to ParallelSolver.SingleSolutionRetries times)
+ * before falling back to the locked assignment described above. Problems with global constraints
+ * always use the locked assignment.<br>
+ * <br>
+ * With ParallelSolver.SingleSolutionOverlay set to true, the per-iteration sub-solutions (and the inherited
+ * assignments used by the optimistic evaluation) are {@link OverlayInheritedAssignment}s instead of the
+ * inherited assignments created by {@link Model#createInheritedAssignment(Solution, int)}, so that creating
+ * them does not copy the shared solution. With ParallelSolver.SingleSolutionOverlayCheck set to a positive number
+ * (defaults to 0, the check is meant for debugging), that many sub-solutions of each thread are checked for consistency
+ * with the shared solution first (see {@link SolverThread#checkInheritedAssignment(Assignment)}); when a check fails, the
+ * thread stops using the overlay and continues with the inherited assignments of the model.<br>
+ * <br>
+ * When each thread works with its own solution, the threads can exchange their solutions (island model).
+ * With ParallelSolver.MigrationInterval set to a positive number, every that many iterations a thread checks whether its
+ * current solution has improved since the last check. If it has not, a better solution is imported according to
+ * ParallelSolver.MigrationPolicy: Best (the best solution found so far, default), Peer (solution of a randomly
+ * selected other thread), BestPeer (the best of the solutions of the other threads), or Partial (values of
+ * up to ParallelSolver.MigrationSize variables, see {@link ParallelSolver#getMigrationVariables(Model, int)}, are taken
+ * from a randomly selected other thread). A solution is only imported when it is better than the current solution
+ * of the thread. The solutions of the other threads are taken from snapshots that each thread publishes at its own
+ * migration checks (between two iterations), so an imported solution is never a partially evaluated neighbour.
  * 
  * @see Solver
  * 
@@ -64,20 +107,60 @@ import org.cpsolver.ifs.util.ToolBox;
  * @param <T> Value
  **/
 public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> extends Solver<V, T> {
+    private static java.text.DecimalFormat sDoubleFormat = new java.text.DecimalFormat("0.00", new java.text.DecimalFormatSymbols(Locale.US));
+    private static Metrics.Counter sRetriesCounter = Metrics.counter("parallel.retries");
+    private static Metrics.Counter sFallbacksCounter = Metrics.counter("parallel.fallbacks");
+    private static Metrics.Counter sStaleCounter = Metrics.counter("parallel.stale");
+    private static Metrics.Histogram sBatchHistogram = Metrics.histogram("parallel.batch");
+    private static Metrics.Histogram sLockTimer = Metrics.timer("parallel.lock");
+    private static Metrics.Counter sMigrationsCounter = Metrics.counter("parallel.migrations");
     private SynchronizationThread iSynchronizationThread = null;
+    private AtomicLong iVersion = new AtomicLong(0);
+    private volatile long iRestoreVersion = 0;
+    private long[] iVersions = null;
+    private long[] iConstraintVersions = null;
+    private long iConstraintOffset = 0;
     private int iNrFinished = 0;
     
     public ParallelSolver(DataProperties properties) {
         super(properties);
     }
     
+    /**
+     * Solution of a solver thread as published for the other threads (island model migration), it is not changed once created
+     */
+    private static class SolutionSnapshot<V extends Variable<V, T>, T extends Value<V, T>> {
+        private final Map<V, T> iValues;
+        private final int iUnassigned;
+        private final double iValue;
+        
+        private SolutionSnapshot(Map<V, T> values, int unassigned, double value) {
+            iValues = values; iUnassigned = unassigned; iValue = value;
+        }
+    }
+    
+    /**
+     * Source of a solution that is imported by a stagnating thread (see ParallelSolver.MigrationPolicy)
+     */
+    public static enum MigrationPolicy {
+        /** The best solution found so far */
+        Best,
+        /** Solution of a randomly selected other thread (as published at its last migration check) */
+        Peer,
+        /** The best of the solutions of the other threads (as published at their last migration checks) */
+        BestPeer,
+        /** Values of a subset of variables (see {@link ParallelSolver#getMigrationVariables(Model, int)}) from a randomly selected other thread */
+        Partial
+    }
+    
     /** Starts solver */
     @Override
     public void start() {
-        int nrSolvers = Math.min(Math.abs(getProperties().getPropertyInt("Parallel.NrSolvers", 4)), CanHoldContext.sMaxSize - 1);
+        int nrSolvers = Math.abs(getProperties().getPropertyInt("Parallel.NrSolvers", 4));
         if (nrSolvers == 1) {
             super.start();
         } else {
+            AssignmentContextHelper.setCapacity(nrSolvers + 1);
             iSynchronizationThread = new SynchronizationThread(nrSolvers);
             iSynchronizationThread.setPriority(THREAD_PRIORITY);
             iSynchronizationThread.start();
@@ -93,7 +176,8 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
     /** Sets initial solution */
     @Override
     public void setInitalSolution(Model<V, T> model) {
-        int nrSolvers = Math.min(Math.abs(getProperties().getPropertyInt("Parallel.NrSolvers", 4)), CanHoldContext.sMaxSize - 1);
+        int nrSolvers = Math.abs(getProperties().getPropertyInt("Parallel.NrSolvers", 4));
+        if (nrSolvers > 1) AssignmentContextHelper.setCapacity(nrSolvers + 1);
         boolean updateMasterSolution = getProperties().getPropertyBoolean("Parallel.UpdateMasterSolution", true);
         setInitalSolution(new Solution<V, T>(model, nrSolvers > 1 ? new DefaultParallelAssignment<V, T>(updateMasterSolution ? 1 : 0) : new DefaultSingleAssignment<V, T>(), 0, 0));
     }
@@ -161,14 +245,35 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                 if (hasSingleSolution() && iNrSolvers > 1 && getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionQueue", false))
                     queue = new ArrayBlockingQueue<Neighbour<V, T>>(2 * iNrSolvers);
                 
+                iVersions = null;
+                if (hasSingleSolution() && iNrSolvers > 1 && queue == null && getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionOptimistic", false)) {
+                    if (currentSolution().getModel().globalConstraints().isEmpty()) {
+                        int size = 0;
+                        for (V variable: currentSolution().getModel().variables())
+                            size = Math.max(size, variable.getIndex() + 1);
+                        iVersions = new long[size];
+                        long minId = Long.MAX_VALUE, maxId = -1;
+                        for (Constraint<V, T> constraint: currentSolution().getModel().constraints()) {
+                            if (!constraint.isHard()) continue;
+                            minId = Math.min(minId, constraint.getId());
+                            maxId = Math.max(maxId, constraint.getId());
+                        }
+                        iConstraintOffset = (maxId < 0 ? 0 : minId);
+                        iConstraintVersions = new long[maxId < 0 ? 0 : (int)(maxId - minId + 1)];
+                    } else {
+                        sLogger.info("Optimistic assignment disabled: there are global constraints.");
+                    }
+                }
+                
                 if (!iStop) {
                     for (int i = 1; i <= iNrSolvers; i++) {
                         SolverThread thread = new SolverThread(i, queue);
                         thread.setPriority(THREAD_PRIORITY);
                         thread.setName("Solver-" + i);
-                        thread.start();
                         iSolvers.add(thread);
                     }
+                    for (SolverThread thread: iSolvers)
+                        thread.start();
                 }
                 
                 if (queue != null) {
@@ -232,6 +337,7 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                 iProgress.setStatus("Solver failed.");
                 onFailure();
             } finally {
+                Metrics.release(ParallelSolver.this);
                 iSynchronizationThread = null;
             }
         }
@@ -252,6 +358,33 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
         return solution;
     }
     
+    /**
+     * Variables whose values are imported from another thread when ParallelSolver.MigrationPolicy is Partial.
+     * A randomly selected variable is taken first, followed by the variables it shares a constraint with (and so on),
+     * so that a part of the problem is imported together with its constraints.
+     * @param model problem model
+     * @param size maximal number of variables to return
+     * @return variables to import
+     */
+    protected Collection<V> getMigrationVariables(Model<V, T> model, int size) {
+        List<V> variables = new ArrayList<V>(Math.min(size, model.variables().size()));
+        Set<V> added = new HashSet<V>();
+        V seed = ToolBox.random(model.variables());
+        if (seed == null) return variables;
+        variables.add(seed); added.add(seed);
+        for (int i = 0; i < variables.size() && variables.size() < size; i++) {
+            for (Constraint<V, T> constraint: variables.get(i).constraints()) {
+                for (V variable: constraint.variables()) {
+                    if (added.add(variable)) {
+                        variables.add(variable);
+                        if (variables.size() >= size) return variables;
+                    }
+                }
+            }
+        }
+        return variables;
+    }
+    
     /**
      * Returns true if the solver works only with one solution (regardless the number of threads it is using)
      * @return true if the current solution is {@link DefaultSingleAssignment}
@@ -272,6 +405,16 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
         private Solution<V, T> iSolution;
         private Assignment<V, T> iAssignment;
         private BlockingQueue<Neighbour<V, T>> iQueue;
+        private long iNrOptimistic = 0, iNrRetries = 0, iNrFallbacks = 0;
+        private boolean iOverlay = false;
+        private int iOverlayChecks = 0;
+        private long iMigrationInterval = 0;
+        private MigrationPolicy iMigrationPolicy = MigrationPolicy.Best;
+        private int iMigrationSize = 100;
+        private long iIterations = 0, iNrMigrations = 0;
+        private int iLastUnassigned = -1;
+        private double iLastValue = 0.0;
+        private volatile SolutionSnapshot<V, T> iSnapshot = null;
         
         public SolverThread(int index, BlockingQueue<Neighbour<V, T>> queue) {
             iIndex = index;
@@ -280,23 +423,52 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
             iSolution = (iSingle || iCurrentSolution.getAssignment().getIndex() == index ? iCurrentSolution : createParallelSolution(iIndex));
             iAssignment = iSolution.getAssignment();
             iQueue = queue;
+            iOverlay = getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionOverlay", false);
+            iOverlayChecks = getProperties().getPropertyInt("ParallelSolver.SingleSolutionOverlayCheck", iOverlayChecks);
+            iMigrationInterval = getProperties().getPropertyLong("ParallelSolver.MigrationInterval", iMigrationInterval);
+            iMigrationPolicy = MigrationPolicy.valueOf(getProperties().getProperty("ParallelSolver.MigrationPolicy", iMigrationPolicy.name()));
+            iMigrationSize = getProperties().getPropertyInt("ParallelSolver.MigrationSize", iMigrationSize);
+        }
+        
+        /**
+         * Create an inherited assignment of the shared solution (single solution)
+         * @return {@link OverlayInheritedAssignment} when ParallelSolver.SingleSolutionOverlay is true, {@link Model#createInheritedAssignment(Solution, int)} otherwise
+         */
+        protected Assignment<V, T> createInheritedAssignment() {
+            if (iOverlay)
+                return new OverlayInheritedAssignment<V, T>(iSolution, iIndex);
+            return iModel.createInheritedAssignment(iSolution, iIndex);
         }
         
         @Override
         public void run() {
             iStartTime = JProf.currentTimeSec();
+            ToolBox.setThreadSeed(ToolBox.getSeed(iIndex));
             try {
                 boolean neighbourCheck = getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionNeighbourCheck", false);
                 boolean tryLazyFirst = getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionTryLazyFirst", false);
+                int retries = getProperties().getPropertyInt("ParallelSolver.SingleSolutionRetries", 3);
                 
                 while (!iStop) {
                     // Break if cannot continue
                     if (!getTerminationCondition().canContinue(iSolution)) break;
                     
+                    // Import a better solution if the current one is no longer improving
+                    if (!iSingle && iMigrationInterval > 0 && ++iIterations % iMigrationInterval == 0)
+                        migrate();
+                    
                     // Create a sub-solution if needed
                     Solution<V, T> current = iSolution;
                     if (iSingle) {
-                        current = new Solution<V, T>(iModel, iModel.createInheritedAssignment(iSolution, iIndex), iSolution.getIteration(), iSolution.getTime());
+                        current = new Solution<V, T>(iModel, createInheritedAssignment(), iSolution.getIteration(), iSolution.getTime());
+                        if (iOverlay && iOverlayChecks > 0) {
+                            iOverlayChecks --;
+                            if (!checkInheritedAssignment(current.getAssignment())) {
+                                sLogger.error(getName() + ": overlay sub-solution is not consistent with the shared solution, using " + iModel.getClass().getSimpleName() + "'s inherited assignment instead.");
+                                iOverlay = false; iOverlayChecks = 0;
+                                current = new Solution<V, T>(iModel, createInheritedAssignment(), iSolution.getIteration(), iSolution.getTime());
+                            }
+                        }
                         current.addSolutionListener(new SolutionListener<V, T>() {
                             @Override
                             public void solutionUpdated(Solution<V, T> solution) {
@@ -321,17 +493,24 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                             @Override
                             public void bestRestored(Solution<V, T> solution) {
                                 iSolution.restoreBest();
+                                iRestoreVersion = iVersion.incrementAndGet();
                             }
                         });
                     }
 
                     // Neighbour selection
                     Neighbour<V, T> neighbour = null;
+                    boolean metrics = Metrics.isEnabled();
+                    long t0 = (metrics ? System.nanoTime() : 0l);
                     try {
                         neighbour = getNeighbourSelection().selectNeighbour(current);
                     } catch (Exception e) {
                         sLogger.debug("Failed to select a neighbour: " + (e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage()), e);
                     }
+                    if (metrics) {
+                        sIterationsCounter.inc();
+                        sSelectionTimer.recordSince(t0);
+                    }
                     for (SolverListener<V, T> listener : iSolverListeners) {
                         if (!listener.neighbourSelected(iAssignment, iSolution.getIteration(), neighbour)) {
                             neighbour = null;
@@ -368,6 +547,23 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                             continue;
                         }
                         
+                        if (iVersions != null && (!neighbourCheck || neighbour instanceof LazyNeighbour)) {
+                            Boolean result = null;
+                            for (int attempt = 0; result == null && attempt <= retries; attempt++)
+                                result = assignOptimistic(neighbour, assignments, time);
+                            if (result != null) {
+                                if (metrics)
+                                    (result ? sAcceptedCounter : sRejectedCounter).inc();
+                                if (!result) {
+                                    for (SolverListener<V, T> listener : iSolverListeners)
+                                        listener.neighbourFailed(current.getAssignment(), iSolution.getIteration(), neighbour);
+                                }
+                                continue;
+                            }
+                            iNrFallbacks ++;
+                            if (metrics) sFallbacksCounter.inc();
+                        }
+                        
                         if (tryLazyFirst && neighbour instanceof LazyNeighbour) {
                             LazyNeighbour<V, T> lazy = (LazyNeighbour<V, T>)neighbour;
                             double before = current.getModel().getTotalValue(current.getAssignment());
@@ -382,15 +578,13 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                         lock.lock();
                         try {
                             LazyNeighbourAcceptanceCriterion<V,T> lazy = null;
-                            double before = 0, value = 0;
+                            double value = 0;
                             if (neighbour instanceof LazyNeighbour) {
-                                before = iSolution.getModel().getTotalValue(iSolution.getAssignment());
                                 lazy = ((LazyNeighbour<V, T>)neighbour).getAcceptanceCriterion();
                             } else if (neighbourCheck) {
-                                before = iSolution.getModel().getTotalValue(iSolution.getAssignment());
                                 value = neighbour.value(current.getAssignment());
                             }
-                            Map<V, T> undo = new HashMap<V, T>();
+                            int savepoint = iSolution.getAssignment().savepoint(true);
                             for (Iterator<Map.Entry<V, T>> i = assignments.entrySet().iterator(); i.hasNext(); ) {
                                 Map.Entry<V, T> e = i.next();
                                 T cur = iSolution.getAssignment().getValue(e.getKey());
@@ -399,7 +593,7 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                                 } else if (cur != null && cur.equals(e.getValue())) {
                                     i.remove();
                                 } else {
-                                    undo.put(e.getKey(), iSolution.getAssignment().unassign(iSolution.getIteration(), e.getKey()));
+                                    iSolution.getAssignment().unassign(iSolution.getIteration(), e.getKey());
                                 }
                             }
                             List<T> conf = null;
@@ -424,23 +618,22 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                                 }
                             if (!fail) {
                                 if (lazy != null) {
-                                    double after = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                                    if (!lazy.accept(iSolution.getAssignment(), (LazyNeighbour<V, T>) neighbour, after - before))
+                                    if (!lazy.accept(iSolution.getAssignment(), (LazyNeighbour<V, T>) neighbour, iSolution.getAssignment().getValueDelta(savepoint)))
                                         fail = true;
                                 } else if (neighbourCheck) {
-                                    double after = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                                    if (before + value < after && before < after && !getSolutionComparator().isBetterThanBestSolution(iSolution))
+                                    double delta = iSolution.getAssignment().getValueDelta(savepoint);
+                                    if (value < delta && delta > 0 && !getSolutionComparator().isBetterThanBestSolution(iSolution))
                                         fail = true;
                                 }
                             }
-                            if (fail) {
-                                for (V var: undo.keySet())
-                                    iSolution.getAssignment().unassign(iSolution.getIteration(), var);
-                                for (T val: undo.values())
-                                    if (val != null)
-                                        iSolution.getAssignment().assign(iSolution.getIteration(), val);
-                            }
+                            if (fail)
+                                iSolution.getAssignment().rollback(savepoint);
+                            else
+                                iSolution.getAssignment().release(savepoint);
+                            if (iVersions != null) changed(assignments.keySet());
                             iSolution.update(time, !fail);
+                            if (metrics)
+                                (fail ? sRejectedCounter : sAcceptedCounter).inc();
                             if (fail) {
                                 for (SolverListener<V, T> listener : iSolverListeners)
                                     listener.neighbourFailed(current.getAssignment(), iSolution.getIteration(), neighbour);
@@ -465,6 +658,7 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                         } finally {
                             lock.unlock();
                         }
+                        if (metrics) sAcceptedCounter.inc();
 
                         onAssigned(iStartTime, iSolution);
                         
@@ -481,6 +675,10 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                     onFailure();
                 }
             }
+            if (iVersions != null)
+                sLogger.debug(getName() + ": " + iNrOptimistic + " optimistic assignments, " + iNrRetries + " retries, " + iNrFallbacks + " fallbacks.");
+            if (iMigrationInterval > 0 && !iSingle)
+                sLogger.debug(getName() + ": " + iNrMigrations + " migrations.");
             Lock lock = currentSolution().getLock().writeLock();
             lock.lock();
             try {
@@ -490,15 +688,327 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
             }
         }
         
+        /**
+         * Island model migration: when the current solution has not improved since the last check, import a better
+         * solution (or a part of it) according to the migration policy.
+         */
+        protected void migrate() {
+            int unassigned = iAssignment.nrUnassignedVariables(iModel);
+            double value = iModel.getTotalValue(iAssignment);
+            // publish the current solution for the other threads (this thread is between two iterations, no neighbour is being evaluated)
+            if (iMigrationPolicy != MigrationPolicy.Best) {
+                Map<V, T> published = new HashMap<V, T>();
+                for (V variable: iAssignment.assignedVariables())
+                    published.put(variable, iAssignment.getValue(variable));
+                iSnapshot = new SolutionSnapshot<V, T>(published, unassigned, value);
+            }
+            if (iLastUnassigned < 0 || isBetter(unassigned, value, iLastUnassigned, iLastValue)) {
+                // still improving
+                iLastUnassigned = unassigned; iLastValue = value;
+                return;
+            }
+            Map<V, T> values = null;
+            switch (iMigrationPolicy) {
+                case Best:
+                    values = getBestSolution(unassigned, value);
+                    break;
+                case Peer:
+                case Partial:
+                    List<SolverThread> peers = new ArrayList<SolverThread>(iSynchronizationThread.iSolvers);
+                    peers.remove(this);
+                    if (!peers.isEmpty())
+                        values = getPeerSolution(ToolBox.random(peers), unassigned, value, iMigrationPolicy == MigrationPolicy.Partial ? getMigrationVariables(iModel, iMigrationSize) : null);
+                    break;
+                case BestPeer:
+                    SolverThread best = null;
+                    int bestUnassigned = unassigned;
+                    double bestValue = value;
+                    for (SolverThread peer: iSynchronizationThread.iSolvers) {
+                        if (peer == this) continue;
+                        SolutionSnapshot<V, T> snapshot = peer.iSnapshot;
+                        if (snapshot != null && isBetter(snapshot.iUnassigned, snapshot.iValue, bestUnassigned, bestValue)) {
+                            best = peer; bestUnassigned = snapshot.iUnassigned; bestValue = snapshot.iValue;
+                        }
+                    }
+                    if (best != null)
+                        values = getPeerSolution(best, unassigned, value, null);
+                    break;
+            }
+            if (values != null && !values.isEmpty()) {
+                Lock lock = iSolution.getLock().writeLock();
+                lock.lock();
+                try {
+                    long iteration = iSolution.getIteration();
+                    for (Map.Entry<V, T> e: values.entrySet()) {
+                        T current = iAssignment.getValue(e.getKey());
+                        if (current != null && !current.equals(e.getValue()))
+                            iAssignment.unassign(iteration, e.getKey());
+                    }
+                    for (T val: values.values()) {
+                        if (val == null || iAssignment.getValue(val.variable()) != null) continue;
+                        for (T conflict: iModel.conflictValues(iAssignment, val))
+                            iAssignment.unassign(iteration, conflict.variable());
+                        iAssignment.assign(iteration, val);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                iNrMigrations ++;
+                if (Metrics.isEnabled()) sMigrationsCounter.inc();
+                unassigned = iAssignment.nrUnassignedVariables(iModel);
+                value = iModel.getTotalValue(iAssignment);
+            }
+            iLastUnassigned = unassigned; iLastValue = value;
+        }
+        
+        /**
+         * Compare two solutions, fewer unassigned variables first, then lower total value
+         */
+        private boolean isBetter(int unassigned1, double value1, int unassigned2, double value2) {
+            if (unassigned1 != unassigned2) return unassigned1 < unassigned2;
+            return value1 < value2;
+        }
+        
+        /**
+         * Best solution found so far, if it is better than the given one
+         * @param unassigned number of unassigned variables of the current solution
+         * @param value total value of the current solution
+         * @return values of all the variables in the best solution, null if there is no better best solution
+         */
+        private Map<V, T> getBestSolution(int unassigned, double value) {
+            Solution<V, T> master = currentSolution();
+            Lock lock = master.getLock().readLock();
+            lock.lock();
+            try {
+                if (master.getBestInfo() == null) return null;
+                if (!isBetter(Math.max(0, iModel.getBestUnassignedVariables()), master.getBestValue(), unassigned, value)) return null;
+                Map<V, T> values = new LinkedHashMap<V, T>();
+                for (V variable: iModel.variables())
+                    values.put(variable, variable.getBestAssignment());
+                return values;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Solution of the given thread (as published at its last migration check), if it is better than the given one
+         * @param peer other solver thread
+         * @param unassigned number of unassigned variables of the current solution
+         * @param value total value of the current solution
+         * @param variables variables to import, null for all
+         * @return values of the variables in the peer's solution, null if the peer has not published a better solution
+         */
+        private Map<V, T> getPeerSolution(SolverThread peer, int unassigned, double value, Collection<V> variables) {
+            SolutionSnapshot<V, T> snapshot = peer.iSnapshot;
+            if (snapshot == null || !isBetter(snapshot.iUnassigned, snapshot.iValue, unassigned, value)) return null;
+            Map<V, T> values = new LinkedHashMap<V, T>();
+            for (V variable: (variables == null ? iModel.variables() : variables))
+                values.put(variable, snapshot.iValues.get(variable));
+            return values;
+        }
+        
+        /**
+         * Consistency check of an inherited assignment (used with ParallelSolver.SingleSolutionOverlayCheck set to the
+         * number of sub-solutions to be checked by each thread). Under the read lock of the shared solution, a randomly
+         * selected assigned variable is unassigned and assigned back in the inherited assignment. The assignment contexts
+         * of its constraints, of the global constraints, and of the criteria must be the same objects before and after that
+         * and regardless of whether they are looked up through {@link AssignmentContextHelper} or through the assignment;
+         * the criteria and the total value must not change and the number of assigned variables must match the shared solution.
+         * @param assignment inherited assignment (of the shared solution) that is to be checked
+         * @return true if the inherited assignment is consistent
+         */
+        protected boolean checkInheritedAssignment(Assignment<V, T> assignment) {
+            Assignment<V, T> parent = iSolution.getAssignment();
+            Lock lock = iSolution.getLock().readLock();
+            lock.lock();
+            try {
+                V variable = ToolBox.random(parent.assignedVariables());
+                if (variable == null) return true;
+                T value = parent.getValue(variable);
+                long iteration = parent.getIteration(variable);
+                List<Object> sources = new ArrayList<Object>(variable.constraints());
+                sources.addAll(iModel.globalConstraints());
+                sources.addAll(iModel.getCriteria());
+                Map<Object, AssignmentContext> contexts = new HashMap<Object, AssignmentContext>();
+                boolean consistent = checkContexts(assignment, sources, contexts, variable);
+                double[] values = new double[iModel.getCriteria().size()];
+                int idx = 0;
+                for (Criterion<V, T> criterion: iModel.getCriteria())
+                    values[idx++] = criterion.getValue(assignment);
+                double total = iModel.getTotalValue(assignment);
+                assignment.unassign(iteration, variable);
+                assignment.assign(iteration, value);
+                consistent &= checkContexts(assignment, sources, contexts, variable);
+                if (!value.equals(assignment.getValue(variable)) || assignment.nrAssignedVariables() != parent.nrAssignedVariables()) {
+                    sLogger.error(getName() + ": inherited assignment has " + assignment.nrAssignedVariables() + " assigned variables, " + parent.nrAssignedVariables() + " expected (after " + variable.getName() + " was re-assigned)");
+                    consistent = false;
+                }
+                idx = 0;
+                for (Criterion<V, T> criterion: iModel.getCriteria()) {
+                    double expected = values[idx++], actual = criterion.getValue(assignment);
+                    if (Math.abs(expected - actual) > 1e-6) {
+                        sLogger.error(getName() + ": inherited assignment has " + criterion.getName() + " = " + actual + ", " + expected + " expected (after " + variable.getName() + " was re-assigned)");
+                        consistent = false;
+                    }
+                }
+                if (Math.abs(total - iModel.getTotalValue(assignment)) > 1e-6) {
+                    sLogger.error(getName() + ": inherited assignment has a total value of " + iModel.getTotalValue(assignment) + ", " + total + " expected (after " + variable.getName() + " was re-assigned)");
+                    consistent = false;
+                }
+                return consistent;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Check that the assignment contexts of the given objects are the same when looked up through {@link AssignmentContextHelper}
+         * and through the assignment, and that they are the same as the ones in the given map (the map is filled in when empty)
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private boolean checkContexts(Assignment<V, T> assignment, List<Object> sources, Map<Object, AssignmentContext> contexts, V variable) {
+            boolean consistent = true;
+            for (Object source: sources) {
+                if (!(source instanceof HasAssignmentContext)) continue;
+                HasAssignmentContext<V, T, AssignmentContext> object = (HasAssignmentContext)source;
+                AssignmentContext context = assignment.getAssignmentContext(object.getAssignmentContextReference());
+                if (source instanceof CanHoldContext && AssignmentContextHelper.getContext(object, assignment) != context) {
+                    sLogger.error(getName() + ": inherited assignment has two different contexts of " + source + " (" + variable.getName() + " was re-assigned)");
+                    consistent = false;
+                }
+                AssignmentContext previous = contexts.put(source, context);
+                if (previous != null && previous != context) {
+                    sLogger.error(getName() + ": inherited assignment has a new context of " + source + " after " + variable.getName() + " was re-assigned");
+                    consistent = false;
+                }
+            }
+            return consistent;
+        }
+        
+        /**
+         * Optimistic assignment of a neighbour to the shared solution. The neighbour is evaluated on a new inherited assignment first,
+         * then the solution lock is taken and the neighbour is assigned when none of the relevant variables have changed in the meantime.
+         * @param neighbour neighbour to assign
+         * @param assignments its assignments
+         * @param time current solver time
+         * @return true if assigned, false if the neighbour has been rejected, null if the evaluation is no longer valid
+         * (a change of the solution interfered with it)
+         */
+        protected Boolean assignOptimistic(Neighbour<V, T> neighbour, Map<V, T> assignments, double time) {
+            long version = iVersion.get();
+            Assignment<V, T> test = createInheritedAssignment();
+            boolean fail = false;
+            double before = 0;
+            if (neighbour instanceof LazyNeighbour)
+                before = iModel.getTotalValue(test);
+            for (Map.Entry<V, T> e: assignments.entrySet()) {
+                T cur = test.getValue(e.getKey());
+                if (cur == null ? e.getValue() != null : !cur.equals(e.getValue()))
+                    test.unassign(iSolution.getIteration(), e.getKey());
+            }
+            for (T val: assignments.values()) {
+                if (val == null || test.getValue(val.variable()) != null) continue;
+                if (iModel.inConflict(test, val)) { fail = true; break; }
+                test.assign(iSolution.getIteration(), val);
+            }
+            if (!fail && neighbour instanceof LazyNeighbour) {
+                double after = iModel.getTotalValue(test);
+                if (!((LazyNeighbour<V, T>)neighbour).getAcceptanceCriterion().accept(test, (LazyNeighbour<V, T>) neighbour, after - before))
+                    fail = true;
+            }
+            
+            Lock lock = iSolution.getLock().writeLock();
+            lock.lock();
+            try {
+                if (isChanged(assignments.keySet(), version)) {
+                    iNrRetries ++;
+                    if (Metrics.isEnabled()) sRetriesCounter.inc();
+                    return null;
+                }
+                if (fail) {
+                    iSolution.update(time, false);
+                    return false;
+                }
+                Assignment<V, T> assignment = iSolution.getAssignment();
+                for (Map.Entry<V, T> e: assignments.entrySet()) {
+                    T cur = assignment.getValue(e.getKey());
+                    if (cur == null ? e.getValue() != null : !cur.equals(e.getValue()))
+                        assignment.unassign(iSolution.getIteration(), e.getKey());
+                }
+                for (T val: assignments.values()) {
+                    if (val != null && assignment.getValue(val.variable()) == null)
+                        assignment.assign(iSolution.getIteration(), val);
+                }
+                changed(assignments.keySet());
+                iSolution.update(time, true);
+                iNrOptimistic ++;
+                
+                onAssigned(iStartTime, iSolution);
+                
+                if ((iSaveBestUnassigned < 0 || iSaveBestUnassigned >= assignment.nrUnassignedVariables(iModel)) && getSolutionComparator().isBetterThanBestSolution(iSolution)) {
+                    iSolution.saveBest();
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
     }
     
     /**
-     * Solver thread
+     * Mark the given variables and their hard constraints as changed in the shared solution (single solution with optimistic assignment).
+     * Must be called while holding the solution write lock.
+     * @param variables variables that have been (or could have been) changed
+     */
+    protected void changed(Collection<V> variables) {
+        long version = iVersion.incrementAndGet();
+        for (V variable: variables) {
+            iVersions[variable.getIndex()] = version;
+            for (Constraint<V, T> constraint: variable.hardConstraints()) {
+                // the table grows when a constraint is added to the model later on
+                long idx = constraint.getId() - iConstraintOffset;
+                if (idx < 0 || idx >= Integer.MAX_VALUE) continue;
+                if (idx >= iConstraintVersions.length)
+                    iConstraintVersions = Arrays.copyOf(iConstraintVersions, Math.max((int)idx + 1, 2 * iConstraintVersions.length));
+                iConstraintVersions[(int)idx] = version;
+            }
+        }
+    }
+    
+    /**
+     * Check whether any of the given variables, or any hard constraint of these variables (i.e., some other variable
+     * of the constraint), has changed since the given version (single solution with optimistic assignment).
+     * Must be called while holding the solution write lock.
+     * @param variables variables of a neighbour
+     * @param version version of the shared solution when the neighbour was evaluated
+     * @return true if the evaluation of the neighbour may be no longer valid
+     */
+    protected boolean isChanged(Collection<V> variables, long version) {
+        if (iRestoreVersion > version) return true;
+        for (V variable: variables) {
+            if (iVersions[variable.getIndex()] > version) return true;
+            for (Constraint<V, T> constraint: variable.hardConstraints()) {
+                long idx = constraint.getId() - iConstraintOffset;
+                // constraints with a lower id than any hard constraint of the model when the solver started cannot be tracked
+                if (idx < 0 || idx >= Integer.MAX_VALUE) return true;
+                if (idx < iConstraintVersions.length && iConstraintVersions[(int)idx] > version) return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Assignment thread (single solution with ParallelSolver.SingleSolutionQueue enabled). Neighbours selected by the
+     * solver threads are drained from the queue in batches (of up to ParallelSolver.SingleSolutionBatchSize neighbours)
+     * and assigned to the solution while holding the solution lock only once per batch. A neighbour that changes
+     * a variable already changed by an earlier neighbour of the same batch is considered stale and it is skipped.
      */
     protected class AssignmentThread extends Thread {
         private double iStartTime;
         private Solution<V, T> iSolution;
         private BlockingQueue<Neighbour<V, T>> iQueue;
+        private long iNrBatches = 0, iNrNeighbours = 0, iNrAccepted = 0, iNrStale = 0, iNrRejected = 0;
         
         public AssignmentThread(BlockingQueue<Neighbour<V, T>> queue) {
             setName("Assignment");
@@ -512,101 +1022,80 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
             iStartTime = JProf.currentTimeSec();
             try {
                 boolean neighbourCheck = getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionNeighbourCheck", false);
+                int batchSize = Math.max(1, getProperties().getPropertyInt("ParallelSolver.SingleSolutionBatchSize", iQueue.remainingCapacity() + iQueue.size()));
+                List<Neighbour<V, T>> batch = new ArrayList<Neighbour<V, T>>(batchSize);
+                Set<V> changed = new HashSet<V>();
                 
                 while (!iStop) {
                     // Break if cannot continue
                     if (!getTerminationCondition().canContinue(iSolution)) break;
                     
-                    // Create a sub-solution if needed
-                    Neighbour<V, T> neighbour = iQueue.poll(1000, TimeUnit.MILLISECONDS);
-                    
-                    if (neighbour == null) continue;
-
-                    double time = JProf.currentTimeSec() - iStartTime;
-                    
-                    Map<V, T> assignments = null;
-                    try {
-                        assignments = neighbour.assignments();
-                    } catch (Exception e) {
-                        sLogger.error("Failed to enumerate " + neighbour.getClass().getSimpleName(), e);
-                    }
-                    if (assignments == null) {
-                        sLogger.debug("No assignments returned.");
-                        // still update the solution (increase iteration etc.)
-                        iSolution.update(time, false);
-                        continue;
-                    }
+                    // Wait for the first neighbour, then take all that are waiting
+                    Neighbour<V, T> first = iQueue.poll(1000, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.clear();
+                    batch.add(first);
+                    if (batchSize > 1)
+                        iQueue.drainTo(batch, batchSize - 1);
                     
-                    // Assign selected value to the selected variable
+                    int accepted = 0, stale = 0;
+                    changed.clear();
                     Lock lock = iSolution.getLock().writeLock();
                     lock.lock();
+                    boolean metrics = Metrics.isEnabled();
+                    long t0 = (metrics ? System.nanoTime() : 0l);
                     try {
-                        LazyNeighbourAcceptanceCriterion<V,T> lazy = null;
-                        double before = 0, value = 0;
-                        if (neighbour instanceof LazyNeighbour) {
-                            before = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                            lazy = ((LazyNeighbour<V, T>)neighbour).getAcceptanceCriterion();
-                        } else if (neighbourCheck) {
-                            before = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                            value = neighbour.value(iSolution.getAssignment());
-                        }
-                        Map<V, T> undo = new HashMap<V, T>();
-                        for (V var: assignments.keySet())
-                            undo.put(var, iSolution.getAssignment().unassign(iSolution.getIteration(), var));
-                        List<T> conf = null;
-                        for (T val: assignments.values()) {
-                            if (val == null) continue;
-                            if (iSolution.getModel().inConflict(iSolution.getAssignment(), val)) {
-                                if (conf == null) conf = new ArrayList<T>();
-                                conf.add(val);
-                            } else {
-                                iSolution.getAssignment().assign(iSolution.getIteration(), val);
+                        for (Neighbour<V, T> neighbour: batch) {
+                            double time = JProf.currentTimeSec() - iStartTime;
+                            
+                            Map<V, T> assignments = null;
+                            try {
+                                assignments = neighbour.assignments();
+                            } catch (Exception e) {
+                                sLogger.error("Failed to enumerate " + neighbour.getClass().getSimpleName(), e);
                             }
-                        }
-                        boolean fail = false;
-                        if (conf != null)
-                            for (T val: conf) {
-                                if (val == null) continue;
-                                if (iSolution.getModel().inConflict(iSolution.getAssignment(), val)) {
-                                    fail = true;
-                                    break;
-                                }
-                                iSolution.getAssignment().assign(iSolution.getIteration(), val);
+                            if (assignments == null) {
+                                sLogger.debug("No assignments returned.");
+                                // still update the solution (increase iteration etc.)
+                                iSolution.update(time, false);
+                                continue;
                             }
-                        if (!fail) {
-                            if (lazy != null) {
-                                double after = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                                if (!lazy.accept(iSolution.getAssignment(), (LazyNeighbour<V, T>) neighbour, after - before))
-                                    fail = true;
-                            } else if (neighbourCheck) {
-                                double after = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                                if (before + value < after && before < after && !getSolutionComparator().isBetterThanBestSolution(iSolution))
-                                    fail = true;
+                            
+                            boolean isStale = false;
+                            for (V variable: assignments.keySet())
+                                if (changed.contains(variable)) { isStale = true; break; }
+                            if (isStale) {
+                                stale ++;
+                                iSolution.update(time, false);
+                                for (SolverListener<V, T> listener : iSolverListeners)
+                                    listener.neighbourFailed(iSolution.getAssignment(), iSolution.getIteration(), neighbour);
+                                continue;
+                            }
+                            
+                            if (assign(neighbour, assignments, time, neighbourCheck)) {
+                                accepted ++;
+                                changed.addAll(assignments.keySet());
                             }
-                        }
-                        if (fail) {
-                            for (V var: undo.keySet())
-                                iSolution.getAssignment().unassign(iSolution.getIteration(), var);
-                            for (T val: undo.values())
-                                if (val != null)
-                                    iSolution.getAssignment().assign(iSolution.getIteration(), val);
-                        }
-                        iSolution.update(time, !fail);
-                        if (fail) {
-                            for (SolverListener<V, T> listener : iSolverListeners)
-                                listener.neighbourFailed(iSolution.getAssignment(), iSolution.getIteration(), neighbour);
-                            continue;
-                        }
-                        
-                        onAssigned(iStartTime, iSolution);
-
-                        if ((iSaveBestUnassigned < 0 || iSaveBestUnassigned >= iSolution.getAssignment().nrUnassignedVariables(iSolution.getModel())) && getSolutionComparator().isBetterThanBestSolution(iSolution)) {
-                            iSolution.saveBest();
                         }
                     } finally {
                         lock.unlock();
                     }
+                    if (metrics) {
+                        sLockTimer.recordSince(t0);
+                        sBatchHistogram.record(batch.size());
+                        sAcceptedCounter.add(accepted);
+                        sStaleCounter.add(stale);
+                        sRejectedCounter.add(batch.size() - accepted - stale);
+                    }
+                    
+                    iNrBatches ++; iNrNeighbours += batch.size(); iNrAccepted += accepted; iNrStale += stale; iNrRejected += batch.size() - accepted - stale;
+                    if (sLogger.isTraceEnabled())
+                        sLogger.trace("Batch of " + batch.size() + " neighbours: " + accepted + " accepted, " + stale + " stale, " + (batch.size() - accepted - stale) + " rejected.");
                 }
+                
+                sLogger.debug(getName() + ": " + iNrBatches + " batches, " + iNrNeighbours + " neighbours (" +
+                        sDoubleFormat.format(iNrBatches == 0 ? 0.0 : ((double)iNrNeighbours) / iNrBatches) + " per batch), " +
+                        iNrAccepted + " accepted, " + iNrStale + " stale, " + iNrRejected + " rejected.");
 
             } catch (Exception ex) {
                 sLogger.error(ex.getMessage(), ex);
@@ -621,6 +1110,73 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
             }
         }
         
+        /**
+         * Assign a neighbour to the solution, must be called while holding the solution write lock.
+         * @param neighbour neighbour to assign
+         * @param assignments its assignments
+         * @param time current solver time
+         * @param neighbourCheck neighbour check is enabled (ParallelSolver.SingleSolutionNeighbourCheck)
+         * @return true if the neighbour has been assigned, false if it has been rejected (and the solution has been reverted)
+         */
+        protected boolean assign(Neighbour<V, T> neighbour, Map<V, T> assignments, double time, boolean neighbourCheck) {
+            LazyNeighbourAcceptanceCriterion<V,T> lazy = null;
+            double value = 0;
+            if (neighbour instanceof LazyNeighbour) {
+                lazy = ((LazyNeighbour<V, T>)neighbour).getAcceptanceCriterion();
+            } else if (neighbourCheck) {
+                value = neighbour.value(iSolution.getAssignment());
+            }
+            int savepoint = iSolution.getAssignment().savepoint(true);
+            for (V var: assignments.keySet())
+                iSolution.getAssignment().unassign(iSolution.getIteration(), var);
+            List<T> conf = null;
+            for (T val: assignments.values()) {
+                if (val == null) continue;
+                if (iSolution.getModel().inConflict(iSolution.getAssignment(), val)) {
+                    if (conf == null) conf = new ArrayList<T>();
+                    conf.add(val);
+                } else {
+                    iSolution.getAssignment().assign(iSolution.getIteration(), val);
+                }
+            }
+            boolean fail = false;
+            if (conf != null)
+                for (T val: conf) {
+                    if (val == null) continue;
+                    if (iSolution.getModel().inConflict(iSolution.getAssignment(), val)) {
+                        fail = true;
+                        break;
+                    }
+                    iSolution.getAssignment().assign(iSolution.getIteration(), val);
+                }
+            if (!fail) {
+                if (lazy != null) {
+                    if (!lazy.accept(iSolution.getAssignment(), (LazyNeighbour<V, T>) neighbour, iSolution.getAssignment().getValueDelta(savepoint)))
+                        fail = true;
+                } else if (neighbourCheck) {
+                    double delta = iSolution.getAssignment().getValueDelta(savepoint);
+                    if (value < delta && delta > 0 && !getSolutionComparator().isBetterThanBestSolution(iSolution))
+                        fail = true;
+                }
+            }
+            if (fail)
+                iSolution.getAssignment().rollback(savepoint);
+            else
+                iSolution.getAssignment().release(savepoint);
+            iSolution.update(time, !fail);
+            if (fail) {
+                for (SolverListener<V, T> listener : iSolverListeners)
+                    listener.neighbourFailed(iSolution.getAssignment(), iSolution.getIteration(), neighbour);
+                return false;
+            }
+            
+            onAssigned(iStartTime, iSolution);
+
+            if ((iSaveBestUnassigned < 0 || iSaveBestUnassigned >= iSolution.getAssignment().nrUnassignedVariables(iSolution.getModel())) && getSolutionComparator().isBetterThanBestSolution(iSolution)) {
+                iSolution.saveBest();
+            }
+            return true;
+        }
     }
 
 }
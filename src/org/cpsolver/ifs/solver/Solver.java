@@ -30,6 +30,7 @@ import org.cpsolver.ifs.termination.GeneralTerminationCondition;
 import org.cpsolver.ifs.termination.TerminationCondition;
 import org.cpsolver.ifs.util.DataProperties;
 import org.cpsolver.ifs.util.JProf;
+import org.cpsolver.ifs.util.Metrics;
 import org.cpsolver.ifs.util.Progress;
 import org.cpsolver.ifs.util.ToolBox;
 
@@ -206,6 +207,15 @@ public class Solver<V extends Variable<V, T>, T extends Value<V, T>> {
     public static int THREAD_PRIORITY = 3;
     /** log */
     protected static org.apache.logging.log4j.Logger sLogger = org.apache.logging.log4j.LogManager.getLogger(Solver.class);
+    /** Solver metrics, see {@link Metrics} */
+    protected static Metrics.Counter sIterationsCounter = Metrics.counter("solver.iterations");
+    protected static Metrics.Counter sAcceptedCounter = Metrics.counter("solver.accepted");
+    protected static Metrics.Counter sRejectedCounter = Metrics.counter("solver.rejected");
+    protected static Metrics.Histogram sSelectionTimer = Metrics.timer("solver.select");
+    protected static Metrics.Histogram sAssignmentTimer = Metrics.timer("solver.assign");
+    static {
+        Metrics.ratio("solver.acceptance", "solver.accepted", "solver.iterations");
+    }
     /** current solution */
     protected Solution<V, T> iCurrentSolution = null;
     /** last solution (after IFS Solver finishes) */
@@ -488,6 +498,8 @@ public class Solver<V extends Variable<V, T>, T extends Value<V, T>> {
     }
 
     public void initSolver() {
+        Metrics.configure(this, getProperties());
+
         long seed = getProperties().getPropertyLong("General.Seed", System.currentTimeMillis());
         ToolBox.setSeed(seed);
 
@@ -638,7 +650,13 @@ public class Solver<V extends Variable<V, T>, T extends Value<V, T>> {
                 // Iterations: until solver can continue
                 while (!iStop && getTerminationCondition().canContinue(iCurrentSolution)) {
                     // Neighbour selection
+                    boolean metrics = Metrics.isEnabled();
+                    long t0 = (metrics ? System.nanoTime() : 0l);
                     Neighbour<V, T> neighbour = getNeighbourSelection().selectNeighbour(iCurrentSolution);
+                    if (metrics) {
+                        sIterationsCounter.inc();
+                        sSelectionTimer.recordSince(t0);
+                    }
                     for (SolverListener<V, T> listener : iSolverListeners) {
                         if (!listener.neighbourSelected(iCurrentSolution.getAssignment(), iCurrentSolution.getIteration(), neighbour)) {
                             neighbour = null;
@@ -653,6 +671,7 @@ public class Solver<V extends Variable<V, T>, T extends Value<V, T>> {
                     }
 
                     // Assign selected value to the selected variable
+                    long t1 = (metrics ? System.nanoTime() : 0l);
                     Lock lock = iCurrentSolution.getLock().writeLock();
                     lock.lock();
                     try {
@@ -660,6 +679,10 @@ public class Solver<V extends Variable<V, T>, T extends Value<V, T>> {
                     } finally {
                         lock.unlock();
                     }
+                    if (metrics) {
+                        sAcceptedCounter.inc();
+                        sAssignmentTimer.recordSince(t1);
+                    }
                     double time = JProf.currentTimeSec() - startTime;
                     iCurrentSolution.update(time);
 
@@ -707,6 +730,7 @@ public class Solver<V extends Variable<V, T>, T extends Value<V, T>> {
                 iProgress.setStatus("Solver failed.");
                 onFailure();
             } finally {
+                Metrics.release(Solver.this);
                 iSolverThread = null;
             }
         }
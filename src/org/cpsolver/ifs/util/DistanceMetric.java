@@ -1,7 +1,13 @@
 package org.cpsolver.ifs.util;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.cpsolver.studentsct.constraint.HardDistanceConflicts;
@@ -18,6 +24,11 @@ import org.cpsolver.studentsct.constraint.HardDistanceConflicts;
  * For instructors, the preference is computed using the distance in meters and the three constants 
  * Instructor.NoPreferenceLimit (distance &lt;= limit &rarr; no preference), Instructor.DiscouragedLimit (distance &lt;= limit &rarr; discouraged),
  * Instructor.ProhibitedLimit (distance &lt;= limit &rarr; strongly discouraged), the back-to-back placement is prohibited when the distance is over the last limit.
+ * <br><br>
+ * Rooms can be given a compact index by {@link DistanceMetric#getRoomIndex(Long)}. Distances between indexed rooms
+ * ({@link DistanceMetric#getDistanceInMinutes(int, Long, Double, Double, int, Long, Double, Double)} and
+ * {@link DistanceMetric#getDistanceInMeters(int, Long, Double, Double, int, Long, Double, Double)}) are computed only once
+ * and then kept in a dense, lazily filled (lower triangular) matrix, so that a repeated lookup is just an array read (without any locking).
  * 
  * @author  Tomas Muller
  * @version IFS 1.3 (Iterative Forward Search)<br>
@@ -132,6 +143,14 @@ public class DistanceMetric {
     private boolean iHardDistanceConflicts = false;
     
     private final ReentrantReadWriteLock iLock = new ReentrantReadWriteLock();
+    /** Compact room indexes (shared with the copies of this metric) */
+    private RoomIndexes iRoomIndexes = new RoomIndexes();
+    /** Distance matrices indexed by room indexes (travel minutes + 1 and meters, 0 and NaN for not yet computed),
+     * only the lower triangle is kept: row i has i + 1 elements and the distance between rooms i and j is at [max(i,j)][min(i,j)];
+     * rows and their elements are published through atomic arrays, meters are kept as raw long bits of the double value */
+    private volatile AtomicReferenceArray<AtomicIntegerArray> iMinutesMatrix = new AtomicReferenceArray<AtomicIntegerArray>(0);
+    private volatile AtomicReferenceArray<AtomicLongArray> iMetersMatrix = new AtomicReferenceArray<AtomicLongArray>(0);
+    private static final long sNaNBits = Double.doubleToRawLongBits(Double.NaN);
     
     /** Default properties */
     public DistanceMetric() {
@@ -152,6 +171,7 @@ public class DistanceMetric {
         iDistanceHardLimitInMinutes = m.iDistanceHardLimitInMinutes;
         iDistanceLongLimitInMinutes = m.iDistanceLongLimitInMinutes;
         iHardDistanceConflicts = m.iHardDistanceConflicts;
+        iRoomIndexes = m.iRoomIndexes;
         m.iLock.readLock().lock();
         try {
             for (Map.Entry<Long, Map<Long, Integer>> e: m.iTravelTimes.entrySet())
@@ -398,6 +418,7 @@ public class DistanceMetric {
      */
     public void setMaxTravelDistanceInMinutes(int maxTravelTime) {
         iMaxTravelTime = maxTravelTime;
+        clearMatrices();
     }
 
     /** Add travel time between two locations 
@@ -427,6 +448,7 @@ public class DistanceMetric {
         } finally {
             iLock.writeLock().unlock();
         }
+        clearMatrices();
     }
     
     /** Return travel time between two locations. 
@@ -490,6 +512,124 @@ public class DistanceMetric {
      **/
     public Map<Long, Map<Long, Integer>> getTravelTimes() { return iTravelTimes; }
     
+    /**
+     * Compact index of a room. Indexes are assigned on the first call (e.g., when the room is loaded) and they are shared
+     * with the copies of this distance metric. Rooms should cache their index together with {@link DistanceMetric#getRoomIndexesId()}.
+     * @param roomId room id
+     * @return room index (starting with zero), -1 if the room id is null
+     */
+    public int getRoomIndex(Long roomId) {
+        return iRoomIndexes.index(roomId);
+    }
+    
+    /**
+     * Unique id of the room indexes used by this distance metric. Two distance metrics with the same id are giving the
+     * same room indexes.
+     * @return room indexes id (greater than zero)
+     */
+    public int getRoomIndexesId() {
+        return iRoomIndexes.getId();
+    }
+    
+    /** Return travel time between two indexed locations. Same as {@link DistanceMetric#getDistanceInMinutes(Long, Double, Double, Long, Double, Double)},
+     * but the distance is computed only once for each pair of room indexes.
+     * @param index1 first room's index (see {@link DistanceMetric#getRoomIndex(Long)})
+     * @param roomId1 first room's id
+     * @param lat1 first room's latitude
+     * @param lon1 first room's longitude
+     * @param index2 second room's index
+     * @param roomId2 second room's id
+     * @param lat2 second room's latitude
+     * @param lon2 second room's longitude
+     * @return distance in minutes
+     **/
+    public int getDistanceInMinutes(int index1, Long roomId1, Double lat1, Double lon1, int index2, Long roomId2, Double lat2, Double lon2) {
+        if (index1 < 0 || index2 < 0)
+            return getDistanceInMinutes(roomId1, lat1, lon1, roomId2, lat2, lon2);
+        int i = Math.max(index1, index2), j = Math.min(index1, index2);
+        AtomicReferenceArray<AtomicIntegerArray> matrix = iMinutesMatrix;
+        if (i < matrix.length()) {
+            AtomicIntegerArray row = matrix.get(i);
+            if (row != null) {
+                int minutes = row.get(j);
+                if (minutes > 0) return minutes - 1;
+            }
+        }
+        int distance = getDistanceInMinutes(roomId1, lat1, lon1, roomId2, lat2, lon2);
+        setMinutes(i, j, distance);
+        return distance;
+    }
+    
+    /** Return travel distance between two indexed locations. Same as {@link DistanceMetric#getDistanceInMeters(Long, Double, Double, Long, Double, Double)},
+     * but the distance is computed only once for each pair of room indexes.
+     * @param index1 first room's index (see {@link DistanceMetric#getRoomIndex(Long)})
+     * @param roomId1 first room's id
+     * @param lat1 first room's latitude
+     * @param lon1 first room's longitude
+     * @param index2 second room's index
+     * @param roomId2 second room's id
+     * @param lat2 second room's latitude
+     * @param lon2 second room's longitude
+     * @return distance in meters
+     **/
+    public double getDistanceInMeters(int index1, Long roomId1, Double lat1, Double lon1, int index2, Long roomId2, Double lat2, Double lon2) {
+        if (index1 < 0 || index2 < 0)
+            return getDistanceInMeters(roomId1, lat1, lon1, roomId2, lat2, lon2);
+        int i = Math.max(index1, index2), j = Math.min(index1, index2);
+        AtomicReferenceArray<AtomicLongArray> matrix = iMetersMatrix;
+        if (i < matrix.length()) {
+            AtomicLongArray row = matrix.get(i);
+            if (row != null) {
+                long meters = row.get(j);
+                if (meters != sNaNBits) return Double.longBitsToDouble(meters);
+            }
+        }
+        double distance = getDistanceInMeters(roomId1, lat1, lon1, roomId2, lat2, lon2);
+        if (!Double.isNaN(distance))
+            setMeters(i, j, distance);
+        return distance;
+    }
+    
+    private synchronized void setMinutes(int i, int j, int distance) {
+        AtomicReferenceArray<AtomicIntegerArray> matrix = iMinutesMatrix;
+        if (matrix.length() <= i) {
+            AtomicReferenceArray<AtomicIntegerArray> grown = new AtomicReferenceArray<AtomicIntegerArray>(Math.max(i + 1, iRoomIndexes.size()));
+            for (int k = 0; k < matrix.length(); k++)
+                grown.set(k, matrix.get(k));
+            iMinutesMatrix = matrix = grown;
+        }
+        AtomicIntegerArray row = matrix.get(i);
+        if (row == null) {
+            row = new AtomicIntegerArray(i + 1);
+            matrix.set(i, row);
+        }
+        row.set(j, distance + 1);
+    }
+    
+    private synchronized void setMeters(int i, int j, double distance) {
+        AtomicReferenceArray<AtomicLongArray> matrix = iMetersMatrix;
+        if (matrix.length() <= i) {
+            AtomicReferenceArray<AtomicLongArray> grown = new AtomicReferenceArray<AtomicLongArray>(Math.max(i + 1, iRoomIndexes.size()));
+            for (int k = 0; k < matrix.length(); k++)
+                grown.set(k, matrix.get(k));
+            iMetersMatrix = matrix = grown;
+        }
+        AtomicLongArray row = matrix.get(i);
+        if (row == null) {
+            long[] nan = new long[i + 1];
+            Arrays.fill(nan, sNaNBits);
+            row = new AtomicLongArray(nan);
+            matrix.set(i, row);
+        }
+        row.set(j, Double.doubleToRawLongBits(distance));
+    }
+    
+    /** Forget all the distances computed between indexed rooms (e.g., when a travel time is changed) */
+    private synchronized void clearMatrices() {
+        iMinutesMatrix = new AtomicReferenceArray<AtomicIntegerArray>(0);
+        iMetersMatrix = new AtomicReferenceArray<AtomicLongArray>(0);
+    }
+    
     /**
      * True if distances should be considered between classes that are NOT back-to-back. Distance in minutes is then 
      * to be compared with the difference between end of the last class and start of the second class plus break time of the first class.
@@ -528,6 +668,34 @@ public class DistanceMetric {
     }
 
     
+    /**
+     * Compact room indexes
+     */
+    private static class RoomIndexes {
+        private static AtomicInteger sLastId = new AtomicInteger(0);
+        private int iId = sLastId.incrementAndGet();
+        private Map<Long, Integer> iIndexes = new ConcurrentHashMap<Long, Integer>();
+        
+        public int getId() { return iId; }
+        
+        public int size() { return iIndexes.size(); }
+        
+        public int index(Long roomId) {
+            if (roomId == null) return -1;
+            Integer index = iIndexes.get(roomId);
+            if (index == null) {
+                synchronized (this) {
+                    index = iIndexes.get(roomId);
+                    if (index == null) {
+                        index = iIndexes.size();
+                        iIndexes.put(roomId, index);
+                    }
+                }
+            }
+            return index;
+        }
+    }
+    
     /** Few tests 
      * @param args program arguments
      **/
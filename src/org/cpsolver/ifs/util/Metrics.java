@@ -0,0 +1,451 @@
+package org.cpsolver.ifs.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cpsolver.ifs.util.CSVFile.CSVField;
+
+/**
+ * Low-overhead solver instrumentation. A static registry of named counters
+ * (rates are computed from them when the metrics are reported), histograms
+ * (count, total, min, max, and power of two buckets for the percentiles), and
+ * ratios of two counters (e.g., acceptance ratio). <br>
+ * <br>
+ * The instrumentation is disabled by default. All the hooks are guarded by
+ * {@link Metrics#isEnabled()}, which is just a read of a volatile field, so the
+ * instrumented code costs next to nothing when the metrics are disabled. Metrics
+ * are enabled by {@link Metrics#configure(Object, DataProperties)} (called by the
+ * solver during its initialization) when Metrics.Enabled is set to true. When
+ * Metrics.File is set, the metrics are written into the given CSV file every
+ * Metrics.Interval seconds (defaults to 60) and when the solver is finished.
+ * Since the registry is static, only one solver at a time owns the configuration
+ * (the first one that enables the metrics, until it is finished, see
+ * {@link Metrics#release(Object)}); other solvers running in the same JVM
+ * (e.g., an online sectioning engine next to a batch solver) neither reset nor
+ * disable it.
+ * <br>
+ * <br>
+ * Timers record nano seconds, they are reported in milliseconds.
+ *
+ * @author  Tomas Muller
+ * @version IFS 1.3 (Iterative Forward Search)<br>
+ *          Copyright (C) 2006 - 2016 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class Metrics {
+    private static Logger sLogger = LogManager.getLogger(Metrics.class);
+    private static volatile boolean sEnabled = false;
+    private static Map<String, Counter> sCounters = new ConcurrentHashMap<String, Counter>();
+    private static Map<String, Histogram> sHistograms = new ConcurrentHashMap<String, Histogram>();
+    private static Map<String, String[]> sRatios = new ConcurrentHashMap<String, String[]>();
+    private static Map<String, ByClass> sByClass = new ConcurrentHashMap<String, ByClass>();
+    private static long sResetTime = System.nanoTime();
+    private static Writer sWriter = null;
+    private static Object sOwner = null;
+
+    /** True if the instrumentation is enabled */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /** Enable or disable the instrumentation */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Configure the metrics: Metrics.Enabled enables the instrumentation,
+     * Metrics.File and Metrics.Interval (in seconds) enable periodical writing
+     * of the metrics into a CSV file. Counters and histograms are reset when
+     * the metrics are enabled. Nothing is changed when the metrics are owned
+     * by some other solver, or when they are not enabled and the given solver
+     * does not own them.
+     * @param owner solver that is being initialized
+     * @param properties solver configuration
+     */
+    public static synchronized void configure(Object owner, DataProperties properties) {
+        if (sOwner != null && sOwner != owner) return;
+        boolean enabled = properties.getPropertyBoolean("Metrics.Enabled", false);
+        if (!enabled && sOwner == null) return;
+        if (sWriter != null) {
+            sWriter.interrupt();
+            sWriter = null;
+        }
+        if (enabled) reset();
+        sEnabled = enabled;
+        sOwner = (enabled ? owner : null);
+        String file = properties.getProperty("Metrics.File");
+        if (enabled && file != null && !file.isEmpty()) {
+            sWriter = new Writer(new File(file), Math.round(1000.0 * properties.getPropertyDouble("Metrics.Interval", 60.0)));
+            sWriter.start();
+        }
+    }
+
+    /** Write the metrics into the configured file (if any), e.g., when the solver is finished */
+    public static synchronized void flush() {
+        if (sEnabled && sWriter != null)
+            sWriter.save();
+    }
+    
+    /**
+     * Called when a solver is finished: if it owns the metrics, they are written into the configured file (if any)
+     * and the ownership is released, so that another solver can configure them. The collected metrics are kept
+     * (and the instrumentation stays enabled) until the metrics are configured again.
+     * @param owner solver that is finished
+     */
+    public static synchronized void release(Object owner) {
+        if (sOwner != owner) return;
+        flush();
+        if (sWriter != null) {
+            sWriter.interrupt();
+            sWriter = null;
+        }
+        sOwner = null;
+    }
+
+    /** Reset all counters and histograms */
+    public static synchronized void reset() {
+        for (Counter counter : sCounters.values())
+            counter.reset();
+        for (Histogram histogram : sHistograms.values())
+            histogram.reset();
+        sResetTime = System.nanoTime();
+    }
+
+    /**
+     * Counter of the given name, it is created when it does not exist
+     * @param name counter name
+     * @return counter
+     */
+    public static Counter counter(String name) {
+        Counter counter = sCounters.get(name);
+        if (counter == null) {
+            synchronized (sCounters) {
+                counter = sCounters.get(name);
+                if (counter == null) {
+                    counter = new Counter(name);
+                    sCounters.put(name, counter);
+                }
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Histogram of the given name, it is created when it does not exist
+     * @param name histogram name
+     * @return histogram of arbitrary (non-negative) values
+     */
+    public static Histogram histogram(String name) {
+        return histogram(name, false);
+    }
+
+    /**
+     * Timer (histogram of durations in nano seconds) of the given name, it is created when it does not exist
+     * @param name timer name
+     * @return histogram of durations
+     */
+    public static Histogram timer(String name) {
+        return histogram(name, true);
+    }
+
+    private static Histogram histogram(String name, boolean time) {
+        Histogram histogram = sHistograms.get(name);
+        if (histogram == null) {
+            synchronized (sHistograms) {
+                histogram = sHistograms.get(name);
+                if (histogram == null) {
+                    histogram = new Histogram(name, time);
+                    sHistograms.put(name, histogram);
+                }
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Register a ratio of two counters, reported together with the other metrics
+     * @param name ratio name
+     * @param numerator name of the numerator counter
+     * @param denominator name of the denominator counter
+     */
+    public static void ratio(String name, String numerator, String denominator) {
+        sRatios.put(name, new String[] { numerator, denominator });
+    }
+
+    /**
+     * Timers of the given name prefix, one for each class (e.g., constraint or criterion class)
+     * @param prefix timer name prefix, the simple name of the class is appended to it
+     * @return timers indexed by class
+     */
+    public static ByClass byClass(String prefix) {
+        ByClass byClass = sByClass.get(prefix);
+        if (byClass == null) {
+            synchronized (sByClass) {
+                byClass = sByClass.get(prefix);
+                if (byClass == null) {
+                    byClass = new ByClass(prefix);
+                    sByClass.put(prefix, byClass);
+                }
+            }
+        }
+        return byClass;
+    }
+
+    /**
+     * Current metrics as a CSV file. The rate of a counter (per second) is computed since the last reset.
+     * @return CSV file with one line per metric
+     */
+    public static CSVFile toCSV() {
+        CSVFile csv = new CSVFile();
+        csv.setHeader(new CSVField[] {
+                new CSVField("Metric"), new CSVField("Type"), new CSVField("Count"), new CSVField("Rate [1/s]"),
+                new CSVField("Total"), new CSVField("Mean"), new CSVField("Min"), new CSVField("Max"),
+                new CSVField("P50"), new CSVField("P90"), new CSVField("P99"), new CSVField("Unit")
+        });
+        double seconds = Math.max(1e-9, (System.nanoTime() - sResetTime) / 1e9);
+        List<String> names = new ArrayList<String>(sCounters.keySet());
+        Collections.sort(names);
+        for (String name: names) {
+            long count = sCounters.get(name).get();
+            csv.addLine(new CSVField[] {
+                    new CSVField(name), new CSVField("counter"), new CSVField(count), new CSVField(format(count / seconds))
+            });
+        }
+        names = new ArrayList<String>(sRatios.keySet());
+        Collections.sort(names);
+        for (String name: names) {
+            String[] ratio = sRatios.get(name);
+            Counter numerator = sCounters.get(ratio[0]), denominator = sCounters.get(ratio[1]);
+            long den = (denominator == null ? 0 : denominator.get());
+            if (den == 0) continue;
+            csv.addLine(new CSVField[] {
+                    new CSVField(name), new CSVField("ratio"), new CSVField(den), new CSVField(""),
+                    new CSVField(numerator == null ? 0 : numerator.get()), new CSVField(format((numerator == null ? 0.0 : numerator.get()) / den))
+            });
+        }
+        names = new ArrayList<String>(sHistograms.keySet());
+        Collections.sort(names);
+        for (String name: names) {
+            Histogram h = sHistograms.get(name);
+            long count = h.getCount();
+            if (count == 0) continue;
+            double unit = (h.isTime() ? 1e6 : 1.0);
+            csv.addLine(new CSVField[] {
+                    new CSVField(name), new CSVField(h.isTime() ? "timer" : "histogram"), new CSVField(count), new CSVField(format(count / seconds)),
+                    new CSVField(format(h.getTotal() / unit)), new CSVField(format(h.getMean() / unit)),
+                    new CSVField(format(h.getMin() / unit)), new CSVField(format(h.getMax() / unit)),
+                    new CSVField(format(h.getPercentile(0.5) / unit)), new CSVField(format(h.getPercentile(0.9) / unit)), new CSVField(format(h.getPercentile(0.99) / unit)),
+                    new CSVField(h.isTime() ? "ms" : "")
+            });
+        }
+        return csv;
+    }
+
+    /**
+     * Save current metrics into a CSV file
+     * @param file output file
+     * @throws IOException when the file cannot be written
+     */
+    public static void save(File file) throws IOException {
+        toCSV().save(file);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    /** Counter, backed by a {@link LongAdder} to avoid contention between solver threads */
+    public static class Counter {
+        private String iName;
+        private LongAdder iCount = new LongAdder();
+
+        private Counter(String name) { iName = name; }
+
+        /** Counter name */
+        public String getName() { return iName; }
+
+        /** Increment the counter by one */
+        public void inc() { iCount.increment(); }
+
+        /** Increment the counter by the given amount */
+        public void add(long value) { iCount.add(value); }
+
+        /** Current value */
+        public long get() { return iCount.sum(); }
+
+        /** Reset the counter */
+        public void reset() { iCount.reset(); }
+
+        @Override
+        public String toString() { return iName + "=" + get(); }
+    }
+
+    /** Histogram of non-negative values (e.g., durations), using power of two buckets */
+    public static class Histogram {
+        private String iName;
+        private boolean iTime;
+        private LongAdder iCount = new LongAdder();
+        private LongAdder iTotal = new LongAdder();
+        private AtomicLong iMin = new AtomicLong(Long.MAX_VALUE);
+        private AtomicLong iMax = new AtomicLong(0);
+        private LongAdder[] iBuckets = new LongAdder[65];
+
+        private Histogram(String name, boolean time) {
+            iName = name; iTime = time;
+            for (int i = 0; i < iBuckets.length; i++)
+                iBuckets[i] = new LongAdder();
+        }
+
+        /** Histogram name */
+        public String getName() { return iName; }
+
+        /** True if the recorded values are durations in nano seconds */
+        public boolean isTime() { return iTime; }
+
+        /** Record a value (negative values are counted as zero) */
+        public void record(long value) {
+            if (value < 0) value = 0;
+            iCount.increment();
+            iTotal.add(value);
+            iBuckets[64 - Long.numberOfLeadingZeros(value)].increment();
+            long min = iMin.get();
+            while (value < min && !iMin.compareAndSet(min, value))
+                min = iMin.get();
+            long max = iMax.get();
+            while (value > max && !iMax.compareAndSet(max, value))
+                max = iMax.get();
+        }
+
+        /** Record the time elapsed since the given time, as returned by {@link System#nanoTime()} */
+        public void recordSince(long startNanoTime) {
+            record(System.nanoTime() - startNanoTime);
+        }
+
+        /** Number of recorded values */
+        public long getCount() { return iCount.sum(); }
+
+        /** Sum of the recorded values */
+        public long getTotal() { return iTotal.sum(); }
+
+        /** Average recorded value */
+        public double getMean() {
+            long count = getCount();
+            return (count == 0 ? 0.0 : ((double)getTotal()) / count);
+        }
+
+        /** Smallest recorded value */
+        public long getMin() {
+            long min = iMin.get();
+            return (min == Long.MAX_VALUE ? 0 : min);
+        }
+
+        /** Largest recorded value */
+        public long getMax() { return iMax.get(); }
+
+        /**
+         * Approximate percentile (upper bound of the bucket in which the percentile falls, capped by the maximum)
+         * @param p percentile between 0.0 and 1.0
+         */
+        public long getPercentile(double p) {
+            long count = getCount();
+            if (count == 0) return 0;
+            long limit = (long)Math.ceil(p * count), sum = 0;
+            for (int i = 0; i < iBuckets.length; i++) {
+                sum += iBuckets[i].sum();
+                if (sum >= limit)
+                    return (i == 0 ? 0 : Math.min(getMax(), i >= 63 ? Long.MAX_VALUE : (1l << i) - 1));
+            }
+            return getMax();
+        }
+
+        /** Reset the histogram */
+        public void reset() {
+            iCount.reset(); iTotal.reset();
+            iMin.set(Long.MAX_VALUE); iMax.set(0);
+            for (LongAdder bucket: iBuckets)
+                bucket.reset();
+        }
+
+        @Override
+        public String toString() { return iName + "{count=" + getCount() + ", mean=" + getMean() + "}"; }
+    }
+
+    /** Timers with a common prefix, one for each class */
+    public static class ByClass extends ClassValue<Histogram> {
+        private String iPrefix;
+
+        private ByClass(String prefix) { iPrefix = prefix; }
+
+        @Override
+        protected Histogram computeValue(Class<?> clazz) {
+            String name = clazz.getSimpleName();
+            if (name.isEmpty()) name = clazz.getName().substring(clazz.getName().lastIndexOf('.') + 1);
+            return timer(iPrefix + "." + name);
+        }
+
+        /** Timer of the class of the given object */
+        public Histogram of(Object object) {
+            return get(object.getClass());
+        }
+    }
+
+    /** Periodically writes the metrics into a CSV file */
+    private static class Writer extends Thread {
+        private File iFile;
+        private long iInterval;
+
+        private Writer(File file, long interval) {
+            super("MetricsWriter");
+            setDaemon(true);
+            iFile = file; iInterval = interval;
+        }
+
+        @Override
+        public void run() {
+            if (iInterval <= 0) return;
+            try {
+                while (!isInterrupted()) {
+                    sleep(iInterval);
+                    save();
+                }
+            } catch (InterruptedException e) {
+            }
+        }
+
+        private void save() {
+            try {
+                if (iFile.getParentFile() != null)
+                    iFile.getParentFile().mkdirs();
+                Metrics.save(iFile);
+            } catch (Exception e) {
+                sLogger.warn("Failed to write metrics into " + iFile + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
 
@@ -59,6 +60,7 @@ import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
 public class ToolBox {
     private static long sSeed = System.currentTimeMillis();
     private static Random sRandom = new Random(sSeed);
+    private static ThreadLocal<Random> sThreadRandom = new ThreadLocal<Random>();
 
     /** Returns random number (int) from the set 0 .. limit - 1 
      * @param limit a limit 
@@ -81,7 +83,7 @@ public class ToolBox {
                 return set.iterator().next();
             case 2:
                 Iterator<E> i = set.iterator();
-                if (sRandom.nextBoolean()) i.next();
+                if (getRandom().nextBoolean()) i.next();
                 return i.next();
             default:
                 int index = random(set.size());
@@ -252,18 +254,67 @@ public class ToolBox {
         return sSeed;
     }
 
-    /** Gets random number generator 
+    /**
+     * Returns a seed that is derived from the current seed (see {@link ToolBox#getSeed()})
+     * and the given thread index. Different thread indexes produce independent random streams
+     * that are reproducible for the same seed.
+     * @param threadIndex solver thread index
+     * @return random seed for the given thread
+     */
+    public static long getSeed(int threadIndex) {
+        return sSeed + threadIndex * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Sets a random number generator that is used by the current thread only. All the
+     * random methods of this class (e.g., {@link ToolBox#random()}, {@link ToolBox#random(Collection)},
+     * {@link ToolBox#sample(List, int)}, or {@link ToolBox#permutations(List, int)})
+     * called by the current thread will use it instead of the shared random number generator.
+     * This is used by the solver threads of the {@link org.cpsolver.ifs.solver.ParallelSolver}
+     * so that they do not contend on the shared random number generator.
+     * @param seed random seed for the current thread
+     */
+    public static void setThreadSeed(long seed) {
+        sThreadRandom.set(new Random(new SplittableRandom(seed).nextLong()));
+    }
+
+    /**
+     * Clears the random number generator of the current thread, see {@link ToolBox#setThreadSeed(long)}.
+     * The shared random number generator is used afterwards.
+     */
+    public static void clearThreadSeed() {
+        sThreadRandom.remove();
+    }
+
+    /**
+     * Sets the random number generator of the current thread (see {@link ToolBox#setThreadSeed(long)}),
+     * returning the previous one so that it can be restored afterwards.
+     * @param random random number generator of the current thread, null to use the shared one
+     * @return previous random number generator of the current thread, null if the shared one was used
+     */
+    public static Random setThreadRandom(Random random) {
+        Random previous = sThreadRandom.get();
+        if (random == null)
+            sThreadRandom.remove();
+        else
+            sThreadRandom.set(random);
+        return previous;
+    }
+
+    /** Gets random number generator. If the current thread has its own random number
+     * generator (see {@link ToolBox#setThreadSeed(long)}), it is returned instead of the shared one.
      * @return random number generator
      **/
     public static Random getRandom() {
-        return sRandom;
+        Random random = sThreadRandom.get();
+        return (random == null ? sRandom : random);
     }
 
     /** Generates random double number 
      * @return random number
      **/
     public static double random() {
-        return sRandom.nextDouble();
+        return getRandom().nextDouble();
     }
 
     /** Configurates log4j loging */
@@ -198,8 +198,7 @@ public class StudentPreferencePenalties {
     public double getPenalty(TimeLocation time) {
         int nrSlots = 0;
         double penalty = 0.0;
-        for (Enumeration<Integer> e = time.getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
+        for (int slot: time.getSlotsArray()) {
             nrSlots++;
             penalty += (iWeight.get(day(slot) + "." + time(slot))).doubleValue();
         }
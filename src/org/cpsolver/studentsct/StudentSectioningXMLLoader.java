@@ -1,6 +1,9 @@
 package org.cpsolver.studentsct;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
@@ -12,6 +15,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.RoomLocation;
 import org.cpsolver.coursett.model.TimeLocation;
@@ -58,8 +69,10 @@ import org.cpsolver.studentsct.reservation.Restriction;
 import org.cpsolver.studentsct.reservation.UniversalOverride;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
+import org.dom4j.io.STAXEventReader;
 
 /**
  * Load student sectioning model from an XML file.
@@ -109,6 +122,11 @@ import org.dom4j.io.SAXReader;
  * <td>{@link StudentFilter}</td>
  * <td>If provided, students are filtered by the given student filter</td>
  * </tr>
+ * <tr>
+ * <td>Xml.Streaming</td>
+ * <td>{@link Boolean}</td>
+ * <td>If true, the input file is read by a streaming (StAX) parser, see {@link StudentSectioningXMLLoader#loadStreaming()}</td>
+ * </tr>
  * </table>
  * 
  * <br>
@@ -153,6 +171,7 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
     private StudentFilter iStudentFilter = null;
     private boolean iWaitlistCritical = false;
     private boolean iMoveCriticalUp = false;
+    private boolean iStreaming = false;
 
     /**
      * Constructor
@@ -174,6 +193,7 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         iLoadStudents = getModel().getProperties().getPropertyBoolean("Xml.LoadStudents", true);
         iWaitlistCritical = getModel().getProperties().getPropertyBoolean("Xml.WaitlistCritical", false);
         iMoveCriticalUp = getModel().getProperties().getPropertyBoolean("Xml.MoveCriticalUp", false);
+        iStreaming = getModel().getProperties().getPropertyBoolean("Xml.Streaming", false);
         if (getModel().getProperties().getProperty("Xml.StudentFilter") != null) {
             try {
                 iStudentFilter = (StudentFilter) Class.forName(
@@ -213,6 +233,13 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         iLoadOfferings = loadOfferings;
     }
 
+    /** Set whether to use a streaming parser 
+     * @param streaming true if the input file is to be read by a streaming (StAX) parser
+     **/
+    public void setStreaming(boolean streaming) {
+        iStreaming = streaming;
+    }
+
     /** Create BitSet from a bit string */
     private static BitSet createBitSet(String bitString) {
         BitSet ret = new BitSet(bitString.length());
@@ -225,6 +252,10 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
     /** Load the file */
     @Override
     public void load() throws Exception {
+        if (iStreaming) {
+            loadStreaming();
+            return;
+        }
         sLogger.debug("Reading XML data from " + iInputFile);
 
         Document document = (new SAXReader()).read(iInputFile);
@@ -341,6 +372,226 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         sLogger.debug("Model successfully loaded.");
     }
     
+    /**
+     * Load the file using a streaming (StAX) parser. Unlike {@link StudentSectioningXMLLoader#load()}, the whole
+     * document is never held in memory: only one offering, student, linked sections constraint, or travel time
+     * element is read into a small DOM subtree at a time, which is then loaded by the same methods as
+     * when the whole document is read (e.g., {@link StudentSectioningXMLLoader#loadOffering(Element, Map, Map, HashMap, HashMap, HashMap, Map)}
+     * or {@link StudentSectioningXMLLoader#loadStudent(Element, Map, Map, List, List)}). The timetable file
+     * (General.InputTimetable) is streamed in the same way.<br>
+     * <br>
+     * The elements are processed in the order in which they appear in the file, so the offerings must
+     * come before the students and the linked sections (as they are written by {@link StudentSectioningXMLSaver}).
+     * Best and current enrollments are assigned once the whole file has been read.
+     * @throws Exception when the XML file cannot be read or parsed
+     */
+    public void loadStreaming() throws Exception {
+        sLogger.debug("Streaming XML data from " + iInputFile);
+        
+        InputStream in = new BufferedInputStream(new FileInputStream(iInputFile));
+        try {
+            XMLEventReader reader = createXMLInputFactory().createXMLEventReader(in);
+            STAXEventReader elementReader = new STAXEventReader();
+            
+            StartElement root = nextChild(reader);
+            if (root == null || !"sectioning".equals(root.getName().getLocalPart())) {
+                sLogger.error("Given XML file is not student sectioning problem.");
+                return;
+            }
+            reader.nextEvent();
+            
+            Map<Long, Placement> timetable = null;
+            if (iTimetableFile != null) {
+                sLogger.info("Reading timetable from " + iTimetableFile + " ...");
+                timetable = loadTimetableStreaming(iTimetableFile);
+                if (timetable == null) return;
+            }
+            
+            if (attributeValue(root, "term") != null)
+                getModel().getProperties().setProperty("Data.Term", attributeValue(root, "term"));
+            if (attributeValue(root, "year") != null)
+                getModel().getProperties().setProperty("Data.Year", attributeValue(root, "year"));
+            if (attributeValue(root, "initiative") != null)
+                getModel().getProperties().setProperty("Data.Initiative", attributeValue(root, "initiative"));
+            
+            Map<Long, Offering> offeringTable = new HashMap<Long, Offering>();
+            Map<Long, Course> courseTable = new HashMap<Long, Course>();
+            HashMap<Long, Config> configTable = new HashMap<Long, Config>();
+            HashMap<Long, Subpart> subpartTable = new HashMap<Long, Subpart>();
+            HashMap<Long, Section> sectionTable = new HashMap<Long, Section>();
+            boolean offeringsLoaded = false;
+            List<Enrollment> bestEnrollments = new ArrayList<Enrollment>();
+            List<Enrollment> currentEnrollments = new ArrayList<Enrollment>();
+            boolean logLoaded = false;
+            
+            StartElement child = null;
+            while ((child = nextChild(reader)) != null) {
+                String name = child.getName().getLocalPart();
+                if (!logLoaded) {
+                    Element rootEl = DocumentHelper.createElement("sectioning");
+                    if ("log".equals(name))
+                        rootEl.add(elementReader.readElement(reader));
+                    Progress.getInstance(getModel()).load(rootEl, true);
+                    Progress.getInstance(getModel()).message(Progress.MSGLEVEL_STAGE, "Restoring from backup ...");
+                    logLoaded = true;
+                    if ("log".equals(name)) continue;
+                }
+                if (iLoadOfferings && "offerings".equals(name)) {
+                    reader.nextEvent();
+                    Map<Long, Long> parents = new HashMap<Long, Long>();
+                    while ((child = nextChild(reader)) != null) {
+                        if (!"offering".equals(child.getName().getLocalPart())) {
+                            skipElement(reader); continue;
+                        }
+                        Element offeringEl = elementReader.readElement(reader);
+                        loadOffering(offeringEl, offeringTable, courseTable, configTable, subpartTable, sectionTable, timetable);
+                        for (Iterator<?> j = offeringEl.elementIterator("course"); j.hasNext();) {
+                            Element courseEl = (Element) j.next();
+                            if (courseEl.attributeValue("parent") != null)
+                                parents.put(Long.valueOf(courseEl.attributeValue("id")), Long.valueOf(courseEl.attributeValue("parent")));
+                        }
+                    }
+                    for (Map.Entry<Long, Long> entry: parents.entrySet())
+                        courseTable.get(entry.getKey()).setParent(courseTable.get(entry.getValue()));
+                    if (!parents.isEmpty() && getModel().getProperties().getPropertyBoolean("Sectioning.DependentCourses", true)) 
+                        getModel().addGlobalConstraint(new DependentCourses());
+                    offeringsLoaded = true;
+                } else if (iLoadStudents && "students".equals(name)) {
+                    if (!offeringsLoaded) {
+                        for (Offering offering : getModel().getOfferings()) {
+                            offeringTable.put(Long.valueOf(offering.getId()), offering);
+                            for (Course course : offering.getCourses()) {
+                                courseTable.put(Long.valueOf(course.getId()), course);
+                            }
+                        }
+                        offeringsLoaded = true;
+                    }
+                    reader.nextEvent();
+                    while ((child = nextChild(reader)) != null) {
+                        if (!"student".equals(child.getName().getLocalPart())) {
+                            skipElement(reader); continue;
+                        }
+                        loadStudent(elementReader.readElement(reader), offeringTable, courseTable, bestEnrollments, currentEnrollments);
+                    }
+                } else if (iLoadOfferings && "constraints".equals(name)) {
+                    reader.nextEvent();
+                    while ((child = nextChild(reader)) != null) {
+                        if (!"linked-sections".equals(child.getName().getLocalPart())) {
+                            skipElement(reader); continue;
+                        }
+                        loadLinkedSection(elementReader.readElement(reader), offeringTable);
+                    }
+                } else if (iLoadOfferings && getModel().getDistanceConflict() != null && "travel-times".equals(name)) {
+                    reader.nextEvent();
+                    while ((child = nextChild(reader)) != null) {
+                        if (!"travel-time".equals(child.getName().getLocalPart())) {
+                            skipElement(reader); continue;
+                        }
+                        loadTravelTime(elementReader.readElement(reader), getModel().getDistanceConflict().getDistanceMetric());
+                    }
+                } else {
+                    skipElement(reader);
+                }
+            }
+            reader.close();
+            
+            if (!logLoaded) {
+                Progress.getInstance(getModel()).load(DocumentHelper.createElement("sectioning"), true);
+                Progress.getInstance(getModel()).message(Progress.MSGLEVEL_STAGE, "Restoring from backup ...");
+            }
+            
+            if (!bestEnrollments.isEmpty()) assignBest(bestEnrollments);
+            if (!currentEnrollments.isEmpty()) assignCurrent(currentEnrollments);
+            
+            if (iMoveCriticalUp) moveCriticalRequestsUp();
+        } finally {
+            in.close();
+        }
+        
+        sLogger.debug("Model successfully loaded.");
+    }
+    
+    /**
+     * Load the given timetable using a streaming (StAX) parser
+     * @param timetableFile XML file in the course timetabling XML format
+     * @return loaded timetable (map class id: assigned placement), null if the file is not a course timetabling problem
+     * @throws Exception when the XML file cannot be read or parsed
+     */
+    protected Map<Long, Placement> loadTimetableStreaming(File timetableFile) throws Exception {
+        InputStream in = new BufferedInputStream(new FileInputStream(timetableFile));
+        try {
+            XMLEventReader reader = createXMLInputFactory().createXMLEventReader(in);
+            STAXEventReader elementReader = new STAXEventReader();
+            StartElement root = nextChild(reader);
+            if (root == null || !"timetable".equals(root.getName().getLocalPart())) {
+                sLogger.error("Given XML file is not course timetabling problem.");
+                return null;
+            }
+            reader.nextEvent();
+            Map<Long, Placement> timetable = new HashMap<Long, Placement>();
+            Map<Long, RoomLocation> rooms = new HashMap<Long, RoomLocation>();
+            StartElement child = null;
+            while ((child = nextChild(reader)) != null) {
+                String name = child.getName().getLocalPart();
+                if ("rooms".equals(name) || "classes".equals(name)) {
+                    reader.nextEvent();
+                    while ((child = nextChild(reader)) != null) {
+                        if ("rooms".equals(name) && "room".equals(child.getName().getLocalPart()))
+                            loadTimetableRoom(elementReader.readElement(reader), rooms);
+                        else if ("classes".equals(name) && "class".equals(child.getName().getLocalPart()))
+                            loadTimetableClass(elementReader.readElement(reader), rooms, timetable);
+                        else
+                            skipElement(reader);
+                    }
+                } else {
+                    skipElement(reader);
+                }
+            }
+            reader.close();
+            return timetable;
+        } finally {
+            in.close();
+        }
+    }
+    
+    /** Create StAX input factory, external entities and DTDs are not processed */
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+    
+    /**
+     * Move to the next child element of the current element
+     * @return start of the next child element (it is not consumed), null if the end of the current element has been reached (and consumed)
+     */
+    private static StartElement nextChild(XMLEventReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            XMLEvent event = reader.peek();
+            if (event.isStartElement()) return event.asStartElement();
+            reader.nextEvent();
+            if (event.isEndElement()) return null;
+        }
+        return null;
+    }
+    
+    /** Skip the next element, including all its children */
+    private static void skipElement(XMLEventReader reader) throws XMLStreamException {
+        int depth = 0;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) depth++;
+            else if (event.isEndElement() && --depth == 0) return;
+        }
+    }
+    
+    /** Attribute value of the given element, null if not present */
+    private static String attributeValue(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return (attribute == null ? null : attribute.getValue());
+    }
+    
     /**
      * Load offerings
      * @param offeringsEl offerings element
@@ -354,34 +605,7 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         HashMap<Long, Section> sectionTable = new HashMap<Long, Section>();
         for (Iterator<?> i = offeringsEl.elementIterator("offering"); i.hasNext();) {
             Element offeringEl = (Element) i.next();
-            Offering offering = new Offering(
-                    Long.parseLong(offeringEl.attributeValue("id")),
-                    offeringEl.attributeValue("name", "O" + offeringEl.attributeValue("id")));
-            offering.setDummy("true".equals(offeringEl.attributeValue("dummy", "false")));
-            offeringTable.put(Long.valueOf(offering.getId()), offering);
-            getModel().addOffering(offering);
-            
-            for (Iterator<?> j = offeringEl.elementIterator("course"); j.hasNext();) {
-                Element courseEl = (Element) j.next();
-                Course course = loadCourse(courseEl, offering);
-                courseTable.put(Long.valueOf(course.getId()), course);
-            }
-            
-            for (Iterator<?> j = offeringEl.elementIterator("config"); j.hasNext();) {
-                Element configEl = (Element) j.next();
-                Config config = loadConfig(configEl, offering, subpartTable, sectionTable, timetable);
-                configTable.put(config.getId(), config);
-            }
-            
-            for (Iterator<?> j = offeringEl.elementIterator("reservation"); j.hasNext(); ) {
-                Element reservationEl = (Element)j.next();
-                loadReservation(reservationEl, offering, configTable, sectionTable);
-            } 
-            
-            for (Iterator<?> j = offeringEl.elementIterator("restriction"); j.hasNext(); ) {
-                Element restrictionEl = (Element)j.next();
-                loadRestriction(restrictionEl, offering, configTable, sectionTable);
-            }
+            loadOffering(offeringEl, offeringTable, courseTable, configTable, subpartTable, sectionTable, timetable);
         }
         
         boolean hasParent = false;
@@ -401,6 +625,49 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
             getModel().addGlobalConstraint(new DependentCourses());
     }
     
+    /**
+     * Load offering (including its courses, configurations, reservations and restrictions)
+     * @param offeringEl offering element
+     * @param offeringTable offering table
+     * @param courseTable course table
+     * @param configTable config table
+     * @param subpartTable subpart table
+     * @param sectionTable section table
+     * @param timetable provided timetable (null if to be loaded from the given document)
+     * @return loaded offering
+     */
+    protected Offering loadOffering(Element offeringEl, Map<Long, Offering> offeringTable, Map<Long, Course> courseTable, HashMap<Long, Config> configTable, HashMap<Long, Subpart> subpartTable, HashMap<Long, Section> sectionTable, Map<Long, Placement> timetable) {
+        Offering offering = new Offering(
+                Long.parseLong(offeringEl.attributeValue("id")),
+                offeringEl.attributeValue("name", "O" + offeringEl.attributeValue("id")));
+        offering.setDummy("true".equals(offeringEl.attributeValue("dummy", "false")));
+        offeringTable.put(Long.valueOf(offering.getId()), offering);
+        getModel().addOffering(offering);
+        
+        for (Iterator<?> j = offeringEl.elementIterator("course"); j.hasNext();) {
+            Element courseEl = (Element) j.next();
+            Course course = loadCourse(courseEl, offering);
+            courseTable.put(Long.valueOf(course.getId()), course);
+        }
+        
+        for (Iterator<?> j = offeringEl.elementIterator("config"); j.hasNext();) {
+            Element configEl = (Element) j.next();
+            Config config = loadConfig(configEl, offering, subpartTable, sectionTable, timetable);
+            configTable.put(config.getId(), config);
+        }
+        
+        for (Iterator<?> j = offeringEl.elementIterator("reservation"); j.hasNext(); ) {
+            Element reservationEl = (Element)j.next();
+            loadReservation(reservationEl, offering, configTable, sectionTable);
+        } 
+        
+        for (Iterator<?> j = offeringEl.elementIterator("restriction"); j.hasNext(); ) {
+            Element restrictionEl = (Element)j.next();
+            loadRestriction(restrictionEl, offering, configTable, sectionTable);
+        }
+        return offering;
+    }
+    
     /**
      * Load course
      * @param courseEl course element
@@ -775,54 +1042,69 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
     protected Map<Long, Placement> loadTimetable(Element timetableRoot) {
         Map<Long, Placement> timetable = new HashMap<Long, Placement>();
         HashMap<Long, RoomLocation> rooms = new HashMap<Long, RoomLocation>();
-        for (Iterator<?> i = timetableRoot.element("rooms").elementIterator("room"); i.hasNext();) {
-            Element roomEl = (Element)i.next();
-            Long roomId = Long.valueOf(roomEl.attributeValue("id"));
-            Double posX = null, posY = null;
-            if (roomEl.attributeValue("location") != null) {
-                String loc = roomEl.attributeValue("location");
-                posX = Double.valueOf(loc.substring(0, loc.indexOf(',')));
-                posY = Double.valueOf(loc.substring(loc.indexOf(',') + 1));
-            }
-            RoomLocation room = new RoomLocation(
-                    Long.valueOf(roomEl.attributeValue("id")),
-                    roomEl.attributeValue("name", "R" + roomEl.attributeValue("id")),
-                    roomEl.attributeValue("building") == null ? null : Long.valueOf(roomEl.attributeValue("building")),
-                    0, Integer.parseInt(roomEl.attributeValue("capacity")),
-                    posX, posY, "true".equals(roomEl.attributeValue("ignoreTooFar")), null);
-            rooms.put(roomId, room);
+        for (Iterator<?> i = timetableRoot.element("rooms").elementIterator("room"); i.hasNext();)
+            loadTimetableRoom((Element)i.next(), rooms);
+        for (Iterator<?> i = timetableRoot.element("classes").elementIterator("class"); i.hasNext();)
+            loadTimetableClass((Element)i.next(), rooms, timetable);
+        return timetable;
+    }
+    
+    /**
+     * Load a room of the given timetable
+     * @param roomEl room element in the course timetabling XML format
+     * @param rooms room table to be populated
+     */
+    protected void loadTimetableRoom(Element roomEl, Map<Long, RoomLocation> rooms) {
+        Long roomId = Long.valueOf(roomEl.attributeValue("id"));
+        Double posX = null, posY = null;
+        if (roomEl.attributeValue("location") != null) {
+            String loc = roomEl.attributeValue("location");
+            posX = Double.valueOf(loc.substring(0, loc.indexOf(',')));
+            posY = Double.valueOf(loc.substring(loc.indexOf(',') + 1));
         }
-        for (Iterator<?> i = timetableRoot.element("classes").elementIterator("class"); i.hasNext();) {
-            Element classEl = (Element)i.next();
-            Long classId = Long.valueOf(classEl.attributeValue("id"));
-            TimeLocation time = null;
-            Element timeEl = null;
-            for (Iterator<?> j = classEl.elementIterator("time"); j.hasNext(); ) {
-                Element e = (Element)j.next();
-                if ("true".equals(e.attributeValue("solution", "false"))) { timeEl = e; break; }
-            }
-            if (timeEl != null) {
-                time = new TimeLocation(
-                        Integer.parseInt(timeEl.attributeValue("days"), 2),
-                        Integer.parseInt(timeEl.attributeValue("start")),
-                        Integer.parseInt(timeEl.attributeValue("length")), 0, 0,
-                        classEl.attributeValue("datePattern") == null ? null : Long.valueOf(classEl.attributeValue("datePattern")),
-                        classEl.attributeValue("datePatternName", ""), createBitSet(classEl.attributeValue("dates")),
-                        Integer.parseInt(timeEl.attributeValue("breakTime", "0")));
-                if (timeEl.attributeValue("pattern") != null)
-                    time.setTimePatternId(Long.valueOf(timeEl.attributeValue("pattern")));
-            }
-            List<RoomLocation> room = new ArrayList<RoomLocation>();
-            for (Iterator<?> j = classEl.elementIterator("room"); j.hasNext();) {
-                Element roomEl = (Element) j.next();
-                if (!"true".equals(roomEl.attributeValue("solution", "false"))) continue;
-                room.add(rooms.get(Long.valueOf(roomEl.attributeValue("id"))));
-            }
-            Placement placement = (time == null ? null : new Placement(null, time, room));
-            if (placement != null)
-                timetable.put(classId, placement);
+        RoomLocation room = new RoomLocation(
+                Long.valueOf(roomEl.attributeValue("id")),
+                roomEl.attributeValue("name", "R" + roomEl.attributeValue("id")),
+                roomEl.attributeValue("building") == null ? null : Long.valueOf(roomEl.attributeValue("building")),
+                0, Integer.parseInt(roomEl.attributeValue("capacity")),
+                posX, posY, "true".equals(roomEl.attributeValue("ignoreTooFar")), null);
+        rooms.put(roomId, room);
+    }
+    
+    /**
+     * Load a class of the given timetable
+     * @param classEl class element in the course timetabling XML format
+     * @param rooms room table
+     * @param timetable timetable to be populated (class id: assigned placement)
+     */
+    protected void loadTimetableClass(Element classEl, Map<Long, RoomLocation> rooms, Map<Long, Placement> timetable) {
+        Long classId = Long.valueOf(classEl.attributeValue("id"));
+        TimeLocation time = null;
+        Element timeEl = null;
+        for (Iterator<?> j = classEl.elementIterator("time"); j.hasNext(); ) {
+            Element e = (Element)j.next();
+            if ("true".equals(e.attributeValue("solution", "false"))) { timeEl = e; break; }
         }
-        return timetable;
+        if (timeEl != null) {
+            time = new TimeLocation(
+                    Integer.parseInt(timeEl.attributeValue("days"), 2),
+                    Integer.parseInt(timeEl.attributeValue("start")),
+                    Integer.parseInt(timeEl.attributeValue("length")), 0, 0,
+                    classEl.attributeValue("datePattern") == null ? null : Long.valueOf(classEl.attributeValue("datePattern")),
+                    classEl.attributeValue("datePatternName", ""), createBitSet(classEl.attributeValue("dates")),
+                    Integer.parseInt(timeEl.attributeValue("breakTime", "0")));
+            if (timeEl.attributeValue("pattern") != null)
+                time.setTimePatternId(Long.valueOf(timeEl.attributeValue("pattern")));
+        }
+        List<RoomLocation> room = new ArrayList<RoomLocation>();
+        for (Iterator<?> j = classEl.elementIterator("room"); j.hasNext();) {
+            Element roomEl = (Element) j.next();
+            if (!"true".equals(roomEl.attributeValue("solution", "false"))) continue;
+            room.add(rooms.get(Long.valueOf(roomEl.attributeValue("id"))));
+        }
+        Placement placement = (time == null ? null : new Placement(null, time, room));
+        if (placement != null)
+            timetable.put(classId, placement);
     }
     
     /**
@@ -831,13 +1113,20 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
      * @param metric distance metric to be populated
      */
     protected void loadTravelTimes(Element travelTimesEl, DistanceMetric metric) {
-        for (Iterator<?> i = travelTimesEl.elementIterator("travel-time"); i.hasNext();) {
-            Element travelTimeEl = (Element)i.next();
-            metric.addTravelTime(
-                    Long.valueOf(travelTimeEl.attributeValue("id1")),
-                    Long.valueOf(travelTimeEl.attributeValue("id2")),
-                    Integer.valueOf(travelTimeEl.attributeValue("minutes")));
-        }
+        for (Iterator<?> i = travelTimesEl.elementIterator("travel-time"); i.hasNext();)
+            loadTravelTime((Element)i.next(), metric);
+    }
+    
+    /**
+     * Load travel time
+     * @param travelTimeEl travel-time element
+     * @param metric distance metric to be populated
+     */
+    protected void loadTravelTime(Element travelTimeEl, DistanceMetric metric) {
+        metric.addTravelTime(
+                Long.valueOf(travelTimeEl.attributeValue("id1")),
+                Long.valueOf(travelTimeEl.attributeValue("id2")),
+                Integer.valueOf(travelTimeEl.attributeValue("minutes")));
     }
     
     /**
@@ -846,16 +1135,23 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
      * @param offeringTable offering table
      */
     protected void loadLinkedSections(Element constraintsEl, Map<Long, Offering> offeringTable) {
-        for (Iterator<?> i = constraintsEl.elementIterator("linked-sections"); i.hasNext();) {
-            Element linkedEl = (Element) i.next();
-            List<Section> sections = new ArrayList<Section>();
-            for (Iterator<?> j = linkedEl.elementIterator("section"); j.hasNext();) {
-                Element sectionEl = (Element) j.next();
-                Offering offering = offeringTable.get(Long.valueOf(sectionEl.attributeValue("offering")));
-                sections.add(offering.getSection(Long.valueOf(sectionEl.attributeValue("id"))));
-            }
-            getModel().addLinkedSections("true".equals(linkedEl.attributeValue("mustBeUsed", "false")), sections);
+        for (Iterator<?> i = constraintsEl.elementIterator("linked-sections"); i.hasNext();)
+            loadLinkedSection((Element) i.next(), offeringTable);
+    }
+    
+    /**
+     * Load linked sections constraint
+     * @param linkedEl linked-sections element
+     * @param offeringTable offering table
+     */
+    protected void loadLinkedSection(Element linkedEl, Map<Long, Offering> offeringTable) {
+        List<Section> sections = new ArrayList<Section>();
+        for (Iterator<?> j = linkedEl.elementIterator("section"); j.hasNext();) {
+            Element sectionEl = (Element) j.next();
+            Offering offering = offeringTable.get(Long.valueOf(sectionEl.attributeValue("offering")));
+            sections.add(offering.getSection(Long.valueOf(sectionEl.attributeValue("id"))));
         }
+        getModel().addLinkedSections("true".equals(linkedEl.attributeValue("mustBeUsed", "false")), sections);
     }
     
     /**
@@ -865,40 +1161,52 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
      * @param courseTable course table
      */
     protected void loadStudents(Element studentsEl, Map<Long, Offering> offeringTable, Map<Long, Course> courseTable, List<Enrollment> bestEnrollments, List<Enrollment> currentEnrollments) {
-        for (Iterator<?> i = studentsEl.elementIterator("student"); i.hasNext();) {
-            Element studentEl = (Element) i.next();
-            Student student = loadStudent(studentEl, offeringTable);
-            if (iStudentFilter != null && !iStudentFilter.accept(student))
-                continue;
-            for (Iterator<?> j = studentEl.elementIterator(); j.hasNext();) {
-                Element requestEl = (Element) j.next();
-                Request request = loadRequest(requestEl, student, offeringTable, courseTable);
-                if (request == null) continue;
-                
-                Element initialEl = requestEl.element("initial");
-                if (iLoadInitial && initialEl != null) {
-                    Enrollment enrollment = loadEnrollment(initialEl, request);
-                    if (enrollment != null)
-                        request.setInitialAssignment(enrollment);
-                }
-                Element currentEl = requestEl.element("current");
-                if (iLoadCurrent && currentEl != null) {
-                    Enrollment enrollment = loadEnrollment(currentEl, request);
-                    if (enrollment != null)
-                        currentEnrollments.add(enrollment);
-                }
-                Element bestEl = requestEl.element("best");
-                if (iLoadBest && bestEl != null) {
-                    Enrollment enrollment = loadEnrollment(bestEl, request);
-                    if (enrollment != null)
-                        bestEnrollments.add(enrollment);
-                }
-                Element fixedEl = requestEl.element("fixed");
-                if (fixedEl != null && request instanceof CourseRequest)
-                    ((CourseRequest)request).setFixedValue(loadEnrollment(fixedEl, request));
+        for (Iterator<?> i = studentsEl.elementIterator("student"); i.hasNext();)
+            loadStudent((Element) i.next(), offeringTable, courseTable, bestEnrollments, currentEnrollments);
+    }
+    
+    /**
+     * Load student (including its requests) and add it to the model, unless it is rejected by the student filter
+     * @param studentEl student element
+     * @param offeringTable offering table
+     * @param courseTable course table
+     * @param bestEnrollments best enrollments to be populated
+     * @param currentEnrollments current enrollments to be populated
+     * @return loaded student, null if the student has been filtered out
+     */
+    protected Student loadStudent(Element studentEl, Map<Long, Offering> offeringTable, Map<Long, Course> courseTable, List<Enrollment> bestEnrollments, List<Enrollment> currentEnrollments) {
+        Student student = loadStudent(studentEl, offeringTable);
+        if (iStudentFilter != null && !iStudentFilter.accept(student))
+            return null;
+        for (Iterator<?> j = studentEl.elementIterator(); j.hasNext();) {
+            Element requestEl = (Element) j.next();
+            Request request = loadRequest(requestEl, student, offeringTable, courseTable);
+            if (request == null) continue;
+            
+            Element initialEl = requestEl.element("initial");
+            if (iLoadInitial && initialEl != null) {
+                Enrollment enrollment = loadEnrollment(initialEl, request);
+                if (enrollment != null)
+                    request.setInitialAssignment(enrollment);
+            }
+            Element currentEl = requestEl.element("current");
+            if (iLoadCurrent && currentEl != null) {
+                Enrollment enrollment = loadEnrollment(currentEl, request);
+                if (enrollment != null)
+                    currentEnrollments.add(enrollment);
             }
-            getModel().addStudent(student);
+            Element bestEl = requestEl.element("best");
+            if (iLoadBest && bestEl != null) {
+                Enrollment enrollment = loadEnrollment(bestEl, request);
+                if (enrollment != null)
+                    bestEnrollments.add(enrollment);
+            }
+            Element fixedEl = requestEl.element("fixed");
+            if (fixedEl != null && request instanceof CourseRequest)
+                ((CourseRequest)request).setFixedValue(loadEnrollment(fixedEl, request));
         }
+        getModel().addStudent(student);
+        return student;
     }
     
     /**
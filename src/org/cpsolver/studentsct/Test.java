@@ -275,6 +275,8 @@ public class Test {
             TimeOverlapsCounter.sDebug = true;
         if (cfg.getProperty("CourseRequest.SameTimePrecise") != null)
             CourseRequest.sSameTimePrecise = cfg.getPropertyBoolean("CourseRequest.SameTimePrecise", false);
+        if (cfg.getProperty("CourseRequest.ShareSectionCombinations") != null)
+            CourseRequest.sShareSectionCombinations = cfg.getPropertyBoolean("CourseRequest.ShareSectionCombinations", true);
         Configurator.setLevel(BacktrackNeighbourSelection.class.getName(),
                 cfg.getPropertyBoolean("Debug.BacktrackNeighbourSelection", false) ? Level.DEBUG : Level.INFO);
         if (cfg.getPropertyBoolean("Test.FixPriorities", false))
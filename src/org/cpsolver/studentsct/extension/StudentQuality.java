@@ -3,15 +3,11 @@ package org.cpsolver.studentsct.extension;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 
 import org.apache.logging.log4j.Logger;
 import org.cpsolver.coursett.Constants;
@@ -1258,7 +1254,6 @@ public class StudentQuality extends ExtensionWithContext<Request, Enrollment, St
         protected double iTimeOverlapMaxLimit = 0.5000;
         private int iLunchStart, iLunchEnd, iLunchLength, iMaxTravelGap, iWorkDayLimit, iBackToBackDistance, iEarlySlot, iLateSlot, iAccBackToBackDistance;
         private String iFreeTimeAccommodation = "FT", iBackToBackAccommodation = "BTB", iBreakBetweenClassesAccommodation = "BBC";
-        private ReentrantReadWriteLock iLock = new ReentrantReadWriteLock();
         private Integer iUnavailabilityMaxTravelTime = null; 
         private DistanceMetric iUnavailabilityDistanceMetric = null;
         
@@ -1315,45 +1310,13 @@ public class StudentQuality extends ExtensionWithContext<Request, Enrollment, St
         public String getBreakBetweenClassesAccommodation() { return iBreakBetweenClassesAccommodation; }
         public List<Type> getTypes() { return iTypes; }
             
-        private Map<Long, Map<Long, Integer>> iDistanceCache = new HashMap<Long, Map<Long,Integer>>();
-        protected Integer getDistanceInMinutesFromCache(RoomLocation r1, RoomLocation r2) {
-            ReadLock lock = iLock.readLock();
-            lock.lock();
-            try {
-                Map<Long, Integer> other2distance = iDistanceCache.get(r1.getId());
-                return other2distance == null ? null : other2distance.get(r2.getId());
-            } finally {
-                lock.unlock();
-            }
-        }
-        
-        protected void setDistanceInMinutesFromCache(RoomLocation r1, RoomLocation r2, Integer distance) {
-            WriteLock lock = iLock.writeLock();
-            lock.lock();
-            try {
-                Map<Long, Integer> other2distance = iDistanceCache.get(r1.getId());
-                if (other2distance == null) {
-                    other2distance = new HashMap<Long, Integer>();
-                    iDistanceCache.put(r1.getId(), other2distance);
-                }
-                other2distance.put(r2.getId(), distance);
-            } finally {
-                lock.unlock();
-            }
-        }
-        
         protected int getDistanceInMinutes(RoomLocation r1, RoomLocation r2) {
             if (r1.getId().compareTo(r2.getId()) > 0) return getDistanceInMinutes(r2, r1);
             if (r1.getId().equals(r2.getId()) || r1.getIgnoreTooFar() || r2.getIgnoreTooFar())
                 return 0;
             if (r1.getPosX() == null || r1.getPosY() == null || r2.getPosX() == null || r2.getPosY() == null)
                 return iDistanceMetric.getMaxTravelDistanceInMinutes();
-            Integer distance = getDistanceInMinutesFromCache(r1, r2);
-            if (distance == null) {
-                distance = iDistanceMetric.getDistanceInMinutes(r1.getId(), r1.getPosX(), r1.getPosY(), r2.getId(), r2.getPosX(), r2.getPosY());
-                setDistanceInMinutesFromCache(r1, r2, distance);
-            }
-            return distance;
+            return iDistanceMetric.getDistanceInMinutes(r1.getDistanceIndex(iDistanceMetric), r1.getId(), r1.getPosX(), r1.getPosY(), r2.getDistanceIndex(iDistanceMetric), r2.getId(), r2.getPosX(), r2.getPosY());
         }
 
         public int getDistanceInMinutes(Placement p1, Placement p2) {
@@ -1390,33 +1353,6 @@ public class StudentQuality extends ExtensionWithContext<Request, Enrollment, St
             }
         }
         
-        private Map<Long, Map<Long, Integer>> iUnavailabilityDistanceCache = new HashMap<Long, Map<Long,Integer>>();
-        protected Integer getUnavailabilityDistanceInMinutesFromCache(RoomLocation r1, RoomLocation r2) {
-            ReadLock lock = iLock.readLock();
-            lock.lock();
-            try {
-                Map<Long, Integer> other2distance = iUnavailabilityDistanceCache.get(r1.getId());
-                return other2distance == null ? null : other2distance.get(r2.getId());
-            } finally {
-                lock.unlock();
-            }
-        }
-        
-        protected void setUnavailabilityDistanceInMinutesFromCache(RoomLocation r1, RoomLocation r2, Integer distance) {
-            WriteLock lock = iLock.writeLock();
-            lock.lock();
-            try {
-                Map<Long, Integer> other2distance = iUnavailabilityDistanceCache.get(r1.getId());
-                if (other2distance == null) {
-                    other2distance = new HashMap<Long, Integer>();
-                    iUnavailabilityDistanceCache.put(r1.getId(), other2distance);
-                }
-                other2distance.put(r2.getId(), distance);
-            } finally {
-                lock.unlock();
-            }
-        }
-        
         protected int getUnavailabilityDistanceInMinutes(RoomLocation r1, RoomLocation r2) {
             if (iUnavailabilityDistanceMetric == null) return getDistanceInMinutes(r1, r2);
             if (r1.getId().compareTo(r2.getId()) > 0) return getUnavailabilityDistanceInMinutes(r2, r1);
@@ -1424,12 +1360,7 @@ public class StudentQuality extends ExtensionWithContext<Request, Enrollment, St
                 return 0;
             if (r1.getPosX() == null || r1.getPosY() == null || r2.getPosX() == null || r2.getPosY() == null)
                 return iUnavailabilityDistanceMetric.getMaxTravelDistanceInMinutes();
-            Integer distance = getUnavailabilityDistanceInMinutesFromCache(r1, r2);
-            if (distance == null) {
-                distance = iUnavailabilityDistanceMetric.getDistanceInMinutes(r1.getId(), r1.getPosX(), r1.getPosY(), r2.getId(), r2.getPosX(), r2.getPosY());
-                setUnavailabilityDistanceInMinutesFromCache(r1, r2, distance);
-            }
-            return distance;
+            return iUnavailabilityDistanceMetric.getDistanceInMinutes(r1.getDistanceIndex(iUnavailabilityDistanceMetric), r1.getId(), r1.getPosX(), r1.getPosY(), r2.getDistanceIndex(iUnavailabilityDistanceMetric), r2.getId(), r2.getPosX(), r2.getPosY());
         }
 
         public int getUnavailabilityDistanceInMinutes(Placement p1, Unavailability p2) {
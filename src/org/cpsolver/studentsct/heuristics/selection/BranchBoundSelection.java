@@ -13,9 +13,17 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.logging.log4j.Logger;
 import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
+import org.cpsolver.ifs.assignment.OverlayInheritedAssignment;
+import org.cpsolver.ifs.assignment.context.AssignmentContextHelper;
 import org.cpsolver.ifs.heuristics.NeighbourSelection;
 import org.cpsolver.ifs.model.GlobalConstraint;
 import org.cpsolver.ifs.model.InfoProvider;
@@ -39,6 +47,7 @@ import org.cpsolver.studentsct.model.CourseRequest;
 import org.cpsolver.studentsct.model.Enrollment;
 import org.cpsolver.studentsct.model.FreeTimeRequest;
 import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.ScheduleMask;
 import org.cpsolver.studentsct.model.Section;
 import org.cpsolver.studentsct.model.Student;
 import org.cpsolver.studentsct.model.Unavailability;
@@ -74,6 +83,27 @@ import org.cpsolver.studentsct.weights.StudentWeights;
  * to better mimic the case when students can choose their sections (section
  * times).</td>
  * </tr>
+ * <tr>
+ * <td>Neighbour.BranchAndBoundThreads</td>
+ * <td>{@link Integer}</td>
+ * <td>Number of threads computing the branch &amp; bound of multiple students
+ * at once (defaults to 1, i.e., one student at a time). When greater than one,
+ * a batch of students is searched concurrently against the current assignment
+ * (under its read lock), the resulting schedules are then returned in the
+ * student order. Each schedule is re-validated against the enrollments
+ * committed before it and a student whose schedule is no longer valid (e.g.,
+ * a section, configuration, or course limit or a reservation got filled up in
+ * the mean time) is returned to the queue. Each thread searches its own
+ * {@link OverlayInheritedAssignment} of the current assignment, so that the
+ * assignment contexts it reads are its own (inherited) copies. Only used when
+ * the solver works with a single assignment ({@link DefaultSingleAssignment}).</td>
+ * </tr>
+ * <tr>
+ * <td>Neighbour.BranchAndBoundBatchSize</td>
+ * <td>{@link Integer}</td>
+ * <td>Number of students in a batch (defaults to four times the number of
+ * threads).</td>
+ * </tr>
  * </table>
  * <br>
  * <br>
@@ -121,6 +151,13 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
     protected long iNbrTimeoutReached = 0;
     protected long iNbrNoSolution = 0;
     protected long iNbrStudents = 0;
+    protected long iNbrRejected = 0;
+    
+    protected int iNrThreads = 1;
+    protected int iBatchSize = 4;
+    protected LinkedList<BranchBoundNeighbour> iBatch = new LinkedList<BranchBoundNeighbour>();
+    protected int iNrCommitted = 0;
+    private ForkJoinPool iPool = null;
 
     /**
      * Constructor
@@ -144,6 +181,8 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
         iDistConfWeight = properties.getPropertyDouble("DistanceConflict.Weight", iDistConfWeight);
         iBranchWhenSelectedHasNoConflict = properties.getPropertyBoolean("Students.BranchWhenSelectedHasNoConflict", iBranchWhenSelectedHasNoConflict);
         iTimesToAvoidHeuristics = properties.getPropertyBoolean("OnlineStudentSectioning.TimesToAvoidHeuristics", iTimesToAvoidHeuristics);
+        iNrThreads = Math.max(1, properties.getPropertyInt("Neighbour.BranchAndBoundThreads", iNrThreads));
+        iBatchSize = Math.max(iNrThreads, properties.getPropertyInt("Neighbour.BranchAndBoundBatchSize", 4 * iNrThreads));
     }
 
     /**
@@ -158,13 +197,41 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
         iNbrTimeoutReached = 0;
         iNbrNoSolution = 0;
         iTotalTime = 0;
+        iNbrRejected = 0;
         iNbrStudents = iStudents.size();
+        shutdownPool();
+    }
+    
+    /**
+     * Pool of Neighbour.BranchAndBoundThreads threads computing the batches, created when needed
+     * @return the pool
+     */
+    protected synchronized ForkJoinPool getPool() {
+        if (iPool == null) {
+            AssignmentContextHelper.setCapacity(1 + iNrThreads);
+            iPool = new ForkJoinPool(iNrThreads);
+        }
+        return iPool;
+    }
+
+    /**
+     * Shut down the pool (if created), e.g., when there are no more students to section
+     */
+    protected synchronized void shutdownPool() {
+        if (iPool != null) {
+            iPool.shutdown();
+            iPool = null;
+        }
     }
     
     public void setModel(StudentSectioningModel model) {
         iModel = model;
         List<Student> students = iOrder.order(iModel.getStudents());
         iStudents = new LinkedList<Student>(students);
+        synchronized (iBatch) {
+            iBatch.clear();
+            iNrCommitted = 0;
+        }
         iTimeOverlaps = model.getTimeOverlaps();
         iDistanceConflict = model.getDistanceConflict();
         iStudentQuality = model.getStudentQuality();
@@ -195,6 +262,8 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
      */
     @Override
     public Neighbour<Request, Enrollment> selectNeighbour(Solution<Request, Enrollment> solution) {
+        if (iNrThreads > 1 && solution.getAssignment() instanceof DefaultSingleAssignment)
+            return selectNeighbourInBatches(solution);
         Student student = null;
         while ((student = nextStudent()) != null) {
             Progress.getInstance(solution.getModel()).setProgress(iNbrStudents - iStudents.size());
@@ -209,6 +278,115 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
         return null;
     }
 
+    /**
+     * Select neighbour, computing the branch &amp; bound of a batch of students at once.
+     * The batch is computed by {@link BranchBoundSelection#iNrThreads} threads of {@link BranchBoundSelection#getPool()}
+     * under the read lock of the solution, each using its own {@link OverlayInheritedAssignment} of the current assignment.
+     * Computed schedules are returned in the order of the students, each schedule is checked by
+     * {@link BranchBoundSelection#isValid(Assignment, BranchBoundNeighbour)} first since the enrollments returned
+     * before it may have been already assigned.
+     */
+    protected Neighbour<Request, Enrollment> selectNeighbourInBatches(Solution<Request, Enrollment> solution) {
+        synchronized (iBatch) {
+            while (true) {
+                BranchBoundNeighbour neighbour = iBatch.poll();
+                if (neighbour != null) {
+                    if (iNrCommitted == 0 || isValid(solution.getAssignment(), neighbour)) {
+                        iNrCommitted ++;
+                        return neighbour;
+                    }
+                    iNbrRejected ++;
+                    addStudent(neighbour.getStudent());
+                    continue;
+                }
+                List<Student> students = new ArrayList<Student>(iBatchSize);
+                Student student = null;
+                while (students.size() < iBatchSize && (student = nextStudent()) != null)
+                    students.add(student);
+                if (students.isEmpty()) {
+                    shutdownPool();
+                    return null;
+                }
+                Progress.getInstance(solution.getModel()).setProgress(iNbrStudents - iStudents.size());
+                BranchBoundNeighbour[] neighbours = new BranchBoundNeighbour[students.size()];
+                Lock lock = solution.getLock().readLock();
+                lock.lock();
+                try {
+                    List<BatchSearch> searches = new ArrayList<BatchSearch>(iNrThreads);
+                    int[] next = new int[] { 0 };
+                    for (int i = 0; i < Math.min(iNrThreads, students.size()); i++)
+                        searches.add(new BatchSearch(new OverlayInheritedAssignment<Request, Enrollment>(solution, 1 + i), students, neighbours, next));
+                    for (Future<Object> search: getPool().invokeAll(searches))
+                        search.get();
+                } catch (InterruptedException e) {
+                    return null;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+                    throw new RuntimeException(e.getCause());
+                } finally {
+                    lock.unlock();
+                }
+                iNrCommitted = 0;
+                for (BranchBoundNeighbour n: neighbours)
+                    if (n != null) iBatch.add(n);
+            }
+        }
+    }
+    
+    /**
+     * Check whether a schedule that was computed in a batch can still be assigned, i.e., none
+     * of its enrollments are in a conflict with an enrollment of some other student (e.g., a section,
+     * configuration, or course limit or a reservation got filled up by a schedule of an other
+     * student of the same batch).
+     * @param assignment current assignment
+     * @param neighbour computed schedule
+     * @return true if the schedule can be assigned without unassigning any other student
+     */
+    protected boolean isValid(Assignment<Request, Enrollment> assignment, BranchBoundNeighbour neighbour) {
+        for (Enrollment enrollment: neighbour.getAssignment()) {
+            if (enrollment == null || enrollment.equals(assignment.getValue(enrollment.getRequest()))) continue;
+            for (Enrollment conflict: iModel.conflictValues(assignment, enrollment))
+                if (!conflict.getStudent().equals(neighbour.getStudent())) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Task computing the branch &amp; bound of students of a batch, using its own assignment
+     */
+    protected class BatchSearch implements Callable<Object> {
+        private Assignment<Request, Enrollment> iAssignment;
+        private List<Student> iBatchStudents;
+        private BranchBoundNeighbour[] iNeighbours;
+        private int[] iNext;
+        
+        /**
+         * Constructor
+         * @param assignment assignment of the task (an inherited assignment of the current assignment that is not shared with other tasks)
+         * @param students students of the batch
+         * @param neighbours computed schedules, in the order of the students
+         * @param next index of the next student to process (shared between the tasks of the batch)
+         */
+        public BatchSearch(Assignment<Request, Enrollment> assignment, List<Student> students, BranchBoundNeighbour[] neighbours, int[] next) {
+            iAssignment = assignment;
+            iBatchStudents = students;
+            iNeighbours = neighbours;
+            iNext = next;
+        }
+        
+        @Override
+        public Object call() {
+            while (true) {
+                int index;
+                synchronized (iNext) {
+                    index = iNext[0]++;
+                }
+                if (index >= iBatchStudents.size()) return null;
+                iNeighbours[index] = getSelection(iAssignment, iBatchStudents.get(index)).select();
+            }
+        }
+    }
+
     /**
      * Branch &amp; bound selection for a student
      * @param assignment current assignment
@@ -243,6 +421,10 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
         protected Assignment<Request, Enrollment> iCurrentAssignment;
         /** Times to avoid (used when comparing enrollments) */
         protected ArrayList<TimeToAvoid> iTimesToAvoid = null;
+        /** Enrollments of the current schedule mask */
+        private Enrollment[] iScheduleEnrollments = null;
+        /** Current schedule mask */
+        private ScheduleMask iSchedule = null;
 
         /**
          * Constructor
@@ -300,10 +482,12 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
             backTrack(0);
             iT1 = JProf.currentTimeMillis();
             
-            iNbrIterations ++;
-            iTotalTime += (iT1 - iT0);
-            if (iTimeoutReached) iNbrTimeoutReached ++;
-            if (iBestAssignment == null) iNbrNoSolution ++;
+            synchronized (BranchBoundSelection.this) {
+                iNbrIterations ++;
+                iTotalTime += (iT1 - iT0);
+                if (iTimeoutReached) iNbrTimeoutReached ++;
+                if (iBestAssignment == null) iNbrNoSolution ++;
+            }
             
             if (iBestAssignment == null)
                 return null;
@@ -608,15 +792,42 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
                 }) != null) return true;
             }
             float credit = enrollment.getCredit();
+            boolean checkOverlaps = getScheduleMask().intersects(enrollment.getScheduleMask());
             for (int i = 0; i < iAssignment.length; i++) {
                 if (iAssignment[i] != null && i != idx) {
                     credit += iAssignment[i].getCredit();
-                    if (credit > iStudent.getMaxCredit() || iAssignment[i].isOverlapping(enrollment))
+                    if (credit > iStudent.getMaxCredit() || (checkOverlaps && iAssignment[i].isOverlapping(enrollment)))
                         return true;
                 }
             }
             return false;
         }
+        
+        /**
+         * Time slots occupied by the current (partial) schedule of the student, i.e., a union of the masks
+         * of the enrollments in {@link Selection#iAssignment}. The mask is updated incrementally when
+         * an enrollment is added and recomputed when an enrollment is removed or replaced.
+         * @return mask of the current schedule
+         */
+        protected ScheduleMask getScheduleMask() {
+            if (iScheduleEnrollments == null || iScheduleEnrollments.length != iAssignment.length) {
+                iScheduleEnrollments = new Enrollment[iAssignment.length];
+                iSchedule = ScheduleMask.EMPTY;
+            }
+            boolean recompute = false;
+            for (int i = 0; i < iAssignment.length; i++) {
+                if (iScheduleEnrollments[i] == iAssignment[i]) continue;
+                if (iScheduleEnrollments[i] != null) recompute = true;
+                else if (!recompute) iSchedule = iSchedule.or(iAssignment[i].getScheduleMask());
+                iScheduleEnrollments[i] = iAssignment[i];
+            }
+            if (recompute) {
+                iSchedule = ScheduleMask.EMPTY;
+                for (Enrollment e: iAssignment)
+                    if (e != null) iSchedule = iSchedule.or(e.getScheduleMask());
+            }
+            return iSchedule;
+        }
 
         /** First conflicting enrollment 
          * @param idx index of request
@@ -634,10 +845,11 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
                 }
             }
             float credit = enrollment.getCredit();
+            boolean checkOverlaps = getScheduleMask().intersects(enrollment.getScheduleMask());
             for (int i = 0; i < iAssignment.length; i++) {
                 if (iAssignment[i] != null && i != idx) {
                     credit += iAssignment[i].getCredit();
-                    if (credit > iStudent.getMaxCredit() || iAssignment[i].isOverlapping(enrollment))
+                    if (credit > iStudent.getMaxCredit() || (checkOverlaps && iAssignment[i].isOverlapping(enrollment)))
                     return iAssignment[i];
                 }
             }
@@ -708,57 +920,79 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
          **/
         protected List<Enrollment> values(final CourseRequest request) {
             List<Enrollment> values = request.getAvaiableEnrollments(iCurrentAssignment, false);
-            Collections.sort(values, new Comparator<Enrollment>() {
-                
-                private HashMap<Enrollment, Double> iValues = new HashMap<Enrollment, Double>();
-                
-                private Double value(Enrollment e) {
-                    Double value = iValues.get(e);
-                    if (value == null) {
-                        if (iModel.getStudentQuality() != null)
-                            value = iModel.getStudentWeights().getWeight(iCurrentAssignment, e, iModel.getStudentQuality().conflicts(e));
-                        else
-                            value = iModel.getStudentWeights().getWeight(iCurrentAssignment, e,
-                                    (iModel.getDistanceConflict() == null ? null : iModel.getDistanceConflict().conflicts(e)),
-                                    (iModel.getTimeOverlaps() == null ? null : iModel.getTimeOverlaps().conflicts(e)));
-                        iValues.put(e, value);       
-                    }
-                    return value;
-                }
-                
+            if (values.size() <= 1) return values;
+            final Enrollment current = iCurrentAssignment.getValue(request);
+            List<WeightedEnrollment> weighted = new ArrayList<WeightedEnrollment>(values.size());
+            for (Enrollment e: values)
+                weighted.add(new WeightedEnrollment(e));
+            Collections.sort(weighted, new Comparator<WeightedEnrollment>() {
                 @Override
-                public int compare(Enrollment e1, Enrollment e2) {
+                public int compare(WeightedEnrollment w1, WeightedEnrollment w2) {
+                    Enrollment e1 = w1.getEnrollment(), e2 = w2.getEnrollment();
                     if (e1.equals(e2)) return 0;
-                    if (e1.equals(iCurrentAssignment.getValue(request))) return -1;
-                    if (e2.equals(iCurrentAssignment.getValue(request))) return 1;
+                    if (e1.equals(current)) return -1;
+                    if (e2.equals(current)) return 1;
                     if (iTimesToAvoid != null) {
-                        double o1 = 0.0, o2 = 0.0;
-                        for (Section s : e1.getSections()) {
-                            if (s.getTime() != null)
-                                for (TimeToAvoid avoid : iTimesToAvoid) {
-                                    if (avoid.priority() > e1.getRequest().getPriority())
-                                        o1 += avoid.overlap(s.getTime());
-                                }
-                        }
-                        for (Section s : e2.getSections()) {
-                            if (s.getTime() != null)
-                                for (TimeToAvoid avoid : iTimesToAvoid) {
-                                    if (avoid.priority() > e2.getRequest().getPriority())
-                                        o2 += avoid.overlap(s.getTime());
-                                }
-                        }
+                        double o1 = w1.getTimesToAvoidOverlap(), o2 = w2.getTimesToAvoidOverlap();
                         if (o1 < o2)
                             return -1;
                         if (o2 < o1)
                             return 1;
                     }
-                    Double v1 = value(e1), v2 = value(e2);
-                    return v1.equals(v2) ? e1.compareTo(iCurrentAssignment, e2) : v2.compareTo(v1); 
+                    int cmp = Double.compare(w2.getWeight(), w1.getWeight());
+                    return cmp == 0 ? e1.compareTo(iCurrentAssignment, e2) : cmp;
                 }
-                
             });
+            for (int i = 0; i < weighted.size(); i++)
+                values.set(i, weighted.get(i).getEnrollment());
             return values;
         }
+        
+        /**
+         * An enrollment together with its overlap with the times to avoid and its weight, both computed at most once
+         * when the values of a course request are being sorted
+         */
+        protected class WeightedEnrollment {
+            private Enrollment iEnrollment;
+            private double iOverlap = -1.0;
+            private Double iWeight = null;
+            
+            WeightedEnrollment(Enrollment enrollment) {
+                iEnrollment = enrollment;
+            }
+            
+            /** Enrollment */
+            public Enrollment getEnrollment() { return iEnrollment; }
+            
+            /** Overlap of the enrollment with the times to avoid */
+            public double getTimesToAvoidOverlap() {
+                if (iOverlap < 0.0) {
+                    double overlap = 0.0;
+                    for (Section s : iEnrollment.getSections()) {
+                        if (s.getTime() != null)
+                            for (TimeToAvoid avoid : iTimesToAvoid) {
+                                if (avoid.priority() > iEnrollment.getRequest().getPriority())
+                                    overlap += avoid.overlap(s.getTime());
+                            }
+                    }
+                    iOverlap = overlap;
+                }
+                return iOverlap;
+            }
+            
+            /** Weight of the enrollment */
+            public double getWeight() {
+                if (iWeight == null) {
+                    if (iModel.getStudentQuality() != null)
+                        iWeight = iModel.getStudentWeights().getWeight(iCurrentAssignment, iEnrollment, iModel.getStudentQuality().conflicts(iEnrollment));
+                    else
+                        iWeight = iModel.getStudentWeights().getWeight(iCurrentAssignment, iEnrollment,
+                                (iModel.getDistanceConflict() == null ? null : iModel.getDistanceConflict().conflicts(iEnrollment)),
+                                (iModel.getTimeOverlaps() == null ? null : iModel.getTimeOverlaps().conflicts(iEnrollment)));
+                }
+                return iWeight;
+            }
+        }
 
         /** branch &amp; bound search 
          * @param idx index of request
@@ -968,7 +1202,8 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
             info.put("Timing of " + getClass().getSimpleName(), sDF.format(((double)iTotalTime) / iNbrIterations) + " ms/it (" +
                     iNbrIterations + " iterations, " +
                     (iNbrNoSolution == 0 ? "" : sDF.format(100.0 * iNbrNoSolution / iNbrIterations) + "% no solution, ") +
-                    sDF.format(100.0 * iNbrTimeoutReached / iNbrIterations) + "% time limit of " + sDF.format(iTimeout / 1000.0) + " seconds reached)"); 
+                    sDF.format(100.0 * iNbrTimeoutReached / iNbrIterations) + "% time limit of " + sDF.format(iTimeout / 1000.0) + " seconds reached" +
+                    (iNrThreads > 1 ? ", " + iNrThreads + " threads, " + sDF.format(100.0 * iNbrRejected / iNbrIterations) + "% rejected" : "") + ")"); 
     }
 
     @Override
@@ -55,6 +55,10 @@ public class Config extends AbstractClassWithContext<Request, Enrollment, Config
     private Long iInstrMethodId;
     private String iInstrMethodName;
     private String iInstrMethodReference;
+    private volatile List<Section[]> iSectionCombinations = null;
+    private static final List<Section[]> sTooManyCombinations = new ArrayList<Section[]>(0);
+    /** Maximal number of section combinations of a configuration that are kept in {@link Config#getSectionCombinations()} */
+    public static int sMaxSectionCombinations = 10000;
 
     /**
      * Constructor
@@ -232,6 +236,53 @@ public class Config extends AbstractClassWithContext<Request, Enrollment, Config
         return iTotalUnreservedSpace;
     }
     private Double iTotalUnreservedSpace = null;
+    
+    /**
+     * All combinations of sections of this configuration, one section of each subpart (in the order of
+     * {@link Config#getSubparts()}), that a student can take regardless of any restrictions, reservations, or availability:
+     * cancelled sections are skipped, parent-child relations are respected and the sections of a combination do not overlap
+     * in time. The combinations are listed in the same order in which they are enumerated by the course request and they
+     * are computed only once, shared by all the course requests of the configuration.
+     * @return section combinations, null if there are more than {@link Config#sMaxSectionCombinations} of them
+     */
+    public List<Section[]> getSectionCombinations() {
+        List<Section[]> combinations = iSectionCombinations;
+        if (combinations == null) {
+            combinations = new ArrayList<Section[]>();
+            if (!computeSectionCombinations(combinations, new Section[getSubparts().size()], new HashSet<Section>(), 0))
+                combinations = sTooManyCombinations;
+            iSectionCombinations = combinations;
+        }
+        return (combinations == sTooManyCombinations ? null : combinations);
+    }
+    
+    private boolean computeSectionCombinations(List<Section[]> combinations, Section[] combination, HashSet<Section> sections, int idx) {
+        if (idx == combination.length) {
+            if (combinations.size() >= sMaxSectionCombinations) return false;
+            combinations.add(combination.clone());
+            return true;
+        }
+        for (Section section: getSubparts().get(idx).getSections()) {
+            if (section.isCancelled()) continue;
+            if (section.getParent() != null && !sections.contains(section.getParent())) continue;
+            if (section.isOverlapping(sections)) continue;
+            combination[idx] = section;
+            sections.add(section);
+            boolean ok = computeSectionCombinations(combinations, combination, sections, idx + 1);
+            sections.remove(section);
+            if (!ok) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Clear section combinations, called when a section or a subpart of this configuration is changed (e.g., a section is added,
+     * cancelled, or its time is changed)
+     */
+    public void clearSectionCombinations() {
+        iSectionCombinations = null;
+    }
+    
     private double getTotalUnreservedSpaceNoCache() {
         // configuration is unlimited -> there is unreserved space unless there is an unlimited reservation too 
         // (in which case there is no unreserved space)
@@ -2,6 +2,7 @@ package org.cpsolver.studentsct.model;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -59,6 +60,8 @@ public class CourseRequest extends Request {
     private Long iTimeStamp = null;
     private Double iCachedMinPenalty = null, iCachedMaxPenalty = null;
     public static boolean sSameTimePrecise = false;
+    /** Use the section combinations shared by all course requests of a configuration (see {@link Config#getSectionCombinations()}) when possible */
+    public static boolean sShareSectionCombinations = true;
     private Set<RequestGroup> iRequestGroups = new HashSet<RequestGroup>();
     private Enrollment iFixed = null;
 
@@ -241,6 +244,7 @@ public class CourseRequest extends Request {
         int idx = 0;
         for (Course course : iCourses) {
             for (Config config : course.getOffering().getConfigs()) {
+                if (getMaxDomainSize() <= 0 && computeEnrollmentsFromCombinations(assignment, ret, idx, course, config, false, false)) continue;
                 computeEnrollments(assignment, ret, idx, 0, course, config, new HashSet<Section>(), 0, false, false,
                         false, false, getMaxDomainSize() <= 0 ? -1 : ret.size() + getMaxDomainSize(), false);
             }
@@ -565,6 +569,66 @@ public class CourseRequest extends Request {
         }
     }
 
+    /**
+     * Computation of enrollments of the given course and configuration using the section combinations
+     * that are shared by all the course requests of the configuration ({@link Config#getSectionCombinations()}).
+     * The combinations are only filtered by the restrictions of this request and the availability of the sections,
+     * giving the same enrollments in the same order as the recursive computation. This is only possible when the
+     * offering has no reservations.
+     * 
+     * @param enrollments list of enrollments to be returned
+     * @param priority zero for the course, one for the first alternative, two for the second alternative
+     * @param course selected course
+     * @param config selected configuration
+     * @param availableOnly only use available sections
+     * @param checkParent check course dependency with other assigned courses
+     * @return false if the shared section combinations cannot be used
+     */
+    private boolean computeEnrollmentsFromCombinations(Assignment<Request, Enrollment> assignment, Collection<Enrollment> enrollments, int priority, Course course, Config config,
+            boolean availableOnly, boolean checkParent) {
+        if (!sShareSectionCombinations || config.getOffering().hasReservations()) return false;
+        List<Section[]> combinations = config.getSectionCombinations();
+        if (combinations == null) return false;
+        if (checkParent && course.hasParent()) {
+            Course parent = course.getParent();
+            for (Request r: getStudent().getRequests()) {
+                if (r.hasCourse(parent)) {
+                    Enrollment e = assignment.getValue(r);
+                    if (e == null || !parent.equals(e.getCourse())) return true;
+                }
+            }
+        }
+        if (isNotAllowed(course, config)) return true;
+        if (availableOnly && config.getLimit() >= 0 && ConfigLimit.getEnrollmentWeight(assignment, config, this) > config.getLimit())
+            return true;
+        if (availableOnly && course.getLimit() >= 0 && CourseLimit.getEnrollmentWeight(assignment, course, this) > course.getLimit())
+            return true;
+        Enrollment initial = (getInitialAssignment() != null && getModel() != null && ((StudentSectioningModel)getModel()).getKeepInitialAssignments() ? getInitialAssignment() : null);
+        Set<Section> notAllowed = null;
+        for (Subpart subpart: config.getSubparts()) {
+            for (Section section: subpart.getSections()) {
+                if (!isRequired(section) ||
+                    (initial != null && !initial.getAssignments().contains(section)) ||
+                    isNotAllowed(course, section) ||
+                    !getStudent().isAvailable(section) ||
+                    (availableOnly && section.getLimit() >= 0 && SectionLimit.getEnrollmentWeight(assignment, section, this) > section.getLimit()) ||
+                    (!getStudent().isAllowDisabled() && !section.isEnabled(getStudent()))) {
+                    if (notAllowed == null) notAllowed = new HashSet<Section>();
+                    notAllowed.add(section);
+                }
+            }
+        }
+        combinations: for (Section[] combination: combinations) {
+            if (notAllowed != null)
+                for (Section section: combination)
+                    if (notAllowed.contains(section)) continue combinations;
+            Enrollment e = new Enrollment(this, priority, course, config, new HashSet<SctAssignment>(Arrays.asList(combination)), null);
+            if (!isNotAllowed(e))
+                enrollments.add(e);
+        }
+        return true;
+    }
+
     /** Return all enrollments that are available 
      * @param assignment current assignment
      * @return all available enrollments
@@ -590,6 +654,7 @@ public class CourseRequest extends Request {
         int idx = 0;
         for (Course course : iCourses) {
             for (Config config : course.getOffering().getConfigs()) {
+                if (getMaxDomainSize() <= 0 && computeEnrollmentsFromCombinations(assignment, ret, idx, course, config, true, checkParent)) continue;
                 computeEnrollments(assignment, ret, idx, 0, course, config, new HashSet<Section>(), 0, true, false, false, false,
                         getMaxDomainSize() <= 0 ? -1 : ret.size() + getMaxDomainSize(), checkParent);
             }
@@ -56,6 +56,7 @@ public class Enrollment extends Value<Request, Enrollment> {
     private Reservation iReservation = null;
     private Long iTimeStamp = null;
     private String iApproval = null;
+    private volatile ScheduleMask iScheduleMask = null;
 
     /**
      * Constructor
@@ -221,6 +222,8 @@ public class Enrollment extends Value<Request, Enrollment> {
     public boolean isOverlapping(Enrollment enrl) {
         if (enrl == null || isAllowOverlap() || enrl.isAllowOverlap())
             return false;
+        if (!getScheduleMask().intersects(enrl.getScheduleMask()))
+            return false;
         for (SctAssignment a : getAssignments()) {
             if (a.isOverlapping(enrl.getAssignments()))
                 return true;
@@ -228,6 +231,22 @@ public class Enrollment extends Value<Request, Enrollment> {
         return false;
     }
 
+    /**
+     * Time slots of the week occupied by the sections (or the free time) of this enrollment, see {@link ScheduleMask}
+     * @return empty mask if the enrollment can overlap with other enrollments
+     */
+    public ScheduleMask getScheduleMask() {
+        ScheduleMask mask = iScheduleMask;
+        if (mask == null) {
+            mask = ScheduleMask.EMPTY;
+            if (!isAllowOverlap())
+                for (SctAssignment a : getAssignments())
+                    mask = mask.or(ScheduleMask.of(a));
+            iScheduleMask = mask;
+        }
+        return mask;
+    }
+
     /** Percent of sections that are wait-listed 
      * @return percent of sections that are wait-listed
      **/
@@ -0,0 +1,154 @@
+package org.cpsolver.studentsct.model;
+
+import java.util.Arrays;
+
+import org.cpsolver.coursett.Constants;
+import org.cpsolver.coursett.model.TimeLocation;
+
+/**
+ * Weekly schedule represented by a bit mask of the occupied time slots, one
+ * bit for each time slot of each day of the week ({@link Constants#NR_DAYS} x
+ * {@link Constants#SLOTS_PER_DAY} bits). Two times of the same weeks overlap if
+ * and only if their masks intersect, so a mask is used as a quick filter:
+ * when two masks do not intersect, there is no overlap; otherwise the
+ * overlap is checked exactly (e.g., dates of the two times may be
+ * different, see {@link TimeLocation#shareWeeks(TimeLocation)}).<br>
+ * <br>
+ * Only the words between the first and the last non-empty word are kept.
+ * Masks are immutable.
+ *
+ * @author  Tomas Muller
+ * @version StudentSct 1.3 (Student Sectioning)<br>
+ *          Copyright (C) 2007 - 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class ScheduleMask {
+    /** Empty mask (no time slot is occupied) */
+    public static final ScheduleMask EMPTY = new ScheduleMask(0, new long[0]);
+    private final int iFirst;
+    private final long[] iWords;
+
+    private ScheduleMask(int first, long[] words) {
+        iFirst = first;
+        iWords = words;
+    }
+
+    /**
+     * Mask of the given time
+     * @param time a time location, can be null
+     * @return time slots occupied by the given time on each day of the week
+     */
+    public static ScheduleMask of(TimeLocation time) {
+        if (time == null || time.getDayCode() == 0 || time.getLength() <= 0) return EMPTY;
+        int start = time.getStartSlot();
+        int end = Math.min(Constants.SLOTS_PER_DAY, start + time.getLength());
+        if (start >= end) return EMPTY;
+        int firstDay = -1, lastDay = -1;
+        for (int d = 0; d < Constants.NR_DAYS; d++)
+            if ((time.getDayCode() & Constants.DAY_CODES[d]) != 0) {
+                if (firstDay < 0) firstDay = d;
+                lastDay = d;
+            }
+        if (firstDay < 0) return EMPTY;
+        int first = (firstDay * Constants.SLOTS_PER_DAY + start) >> 6;
+        int last = (lastDay * Constants.SLOTS_PER_DAY + end - 1) >> 6;
+        long[] words = new long[last - first + 1];
+        for (int d = firstDay; d <= lastDay; d++) {
+            if ((time.getDayCode() & Constants.DAY_CODES[d]) == 0) continue;
+            for (int bit = d * Constants.SLOTS_PER_DAY + start; bit < d * Constants.SLOTS_PER_DAY + end; bit++)
+                words[(bit >> 6) - first] |= (1l << (bit & 63));
+        }
+        return new ScheduleMask(first, words);
+    }
+
+    /**
+     * Mask of the given class or free time
+     * @param assignment a class or a free time, can be null
+     * @return empty mask if the assignment has no time or it can overlap with other assignments, mask of its time otherwise
+     */
+    public static ScheduleMask of(SctAssignment assignment) {
+        if (assignment == null || assignment.isAllowOverlap()) return EMPTY;
+        if (assignment instanceof Section) return ((Section)assignment).getScheduleMask();
+        return of(assignment.getTime());
+    }
+
+    /**
+     * True if no time slot is occupied
+     */
+    public boolean isEmpty() {
+        return iWords.length == 0;
+    }
+
+    /**
+     * True if the two masks have a time slot in common
+     * @param mask an other mask
+     * @return true if there is at least one time slot occupied by both masks
+     */
+    public boolean intersects(ScheduleMask mask) {
+        int first = Math.max(iFirst, mask.iFirst);
+        int last = Math.min(iFirst + iWords.length, mask.iFirst + mask.iWords.length);
+        for (int i = first; i < last; i++)
+            if ((iWords[i - iFirst] & mask.iWords[i - mask.iFirst]) != 0) return true;
+        return false;
+    }
+
+    /**
+     * Union of the two masks
+     * @param mask an other mask
+     * @return a mask with the time slots that are occupied by any of the two masks
+     */
+    public ScheduleMask or(ScheduleMask mask) {
+        if (mask.isEmpty()) return this;
+        if (isEmpty()) return mask;
+        int first = Math.min(iFirst, mask.iFirst);
+        int last = Math.max(iFirst + iWords.length, mask.iFirst + mask.iWords.length);
+        long[] words = new long[last - first];
+        for (int i = 0; i < iWords.length; i++)
+            words[iFirst - first + i] = iWords[i];
+        for (int i = 0; i < mask.iWords.length; i++)
+            words[mask.iFirst - first + i] |= mask.iWords[i];
+        return new ScheduleMask(first, words);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || !(o instanceof ScheduleMask)) return false;
+        ScheduleMask m = (ScheduleMask)o;
+        return iFirst == m.iFirst && Arrays.equals(iWords, m.iWords);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * iFirst + Arrays.hashCode(iWords);
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer("[");
+        for (int i = 0; i < iWords.length; i++) {
+            long word = iWords[i];
+            while (word != 0) {
+                int bit = ((iFirst + i) << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (sb.length() > 1) sb.append(",");
+                sb.append(Constants.DAY_NAMES_SHORT[bit / Constants.SLOTS_PER_DAY] + (bit % Constants.SLOTS_PER_DAY));
+            }
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -73,6 +73,7 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
     private double iSpaceHeld = 0.0;
     private String iNote = null;
     private Set<Long> iIgnoreConflictsWith = null;
+    private volatile ScheduleMask iScheduleMask = null;
     private boolean iCancelled = false, iEnabled = true, iOnline = false, iPast = false;
     private List<Unavailability> iUnavailabilities = new ArrayList<Unavailability>();
 
@@ -109,6 +110,7 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
         iPlacement = placement;
         iParent = parent;
         iInstructors = instructors;
+        clearSectionCombinations();
     }
     
     /**
@@ -215,6 +217,21 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
      */
     public void setPlacement(Placement placement) {
         iPlacement = placement;
+        iScheduleMask = null;
+        clearSectionCombinations();
+    }
+    
+    /**
+     * Time slots of the week occupied by this section
+     * @return mask of the section's time (computed only once)
+     */
+    public ScheduleMask getScheduleMask() {
+        ScheduleMask mask = iScheduleMask;
+        if (mask == null) {
+            mask = ScheduleMask.of(getTime());
+            iScheduleMask = mask;
+        }
+        return mask;
     }
 
     /** Time placement of the section. */
@@ -684,6 +701,7 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
     public void addIgnoreConflictWith(long sectionId) {
         if (iIgnoreConflictsWith == null) iIgnoreConflictsWith = new HashSet<Long>();
         iIgnoreConflictsWith.add(sectionId);
+        clearSectionCombinations();
     }
     
     /**
@@ -760,7 +778,15 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
      * Set cancelled flag of the class.
      * @param cancelled true if the class is cancelled
      */
-    public void setCancelled(boolean cancelled) { iCancelled = cancelled; }
+    public void setCancelled(boolean cancelled) { iCancelled = cancelled; clearSectionCombinations(); }
+    
+    /**
+     * Clear section combinations of the configuration (see {@link Config#getSectionCombinations()})
+     */
+    private void clearSectionCombinations() {
+        if (iSubpart != null && iSubpart.getConfig() != null)
+            iSubpart.getConfig().clearSectionCombinations();
+    }
 
     /**
      * Return past flag of the class.
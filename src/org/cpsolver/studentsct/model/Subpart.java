@@ -70,6 +70,7 @@ public class Subpart implements Comparable<Subpart> {
         iConfig = config;
         iParent = parent;
         iConfig.getSubparts().add(this);
+        iConfig.clearSectionCombinations();
     }
 
     /** Subpart id 
@@ -206,6 +207,7 @@ public class Subpart implements Comparable<Subpart> {
      **/
     public void setAllowOverlap(boolean allowOverlap) {
         iAllowOverlap = allowOverlap;
+        iConfig.clearSectionCombinations();
     }
     
     /**
@@ -0,0 +1,394 @@
+package org.cpsolver.studentsct.online;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.Logger;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.Student;
+
+/**
+ * In-process online sectioning engine. Sectioning requests ({@link Task}) of many students are
+ * processed concurrently by a pool of worker threads against a shared model and assignment.
+ * A task computes the schedule of its student (typically on a private copy of the student's courses,
+ * reading the shared model under the read lock of {@link OnlineSectioningEngine#getLock()})
+ * and then it commits the computed enrollments using {@link OnlineSectioningEngine#commit(Student, Collection)}.
+ * The commit is optimistic: under the write lock, the new enrollments are only assigned
+ * when none of them is in a conflict (e.g., a section, configuration, or course is already full because of
+ * a different student that has been committed in the mean time). When the commit fails, the task is
+ * executed again (up to the given number of attempts, with a random back-off after the tenth attempt).
+ * <br><br>
+ * The engine keeps the throughput and the latency (the time from the start of the first attempt of a task
+ * till the task is finished) statistics, see {@link OnlineSectioningEngine#getInfo()}.
+ * <br><br>
+ * Parameters:
+ * <table border='1'><caption>Related Solver Parameters</caption>
+ * <tr>
+ * <th>Parameter</th>
+ * <th>Type</th>
+ * <th>Comment</th>
+ * </tr>
+ * <tr>
+ * <td>OnlineSectioningEngine.Threads</td>
+ * <td>{@link Integer}</td>
+ * <td>Number of worker threads, i.e., the number of students that are sectioned concurrently (defaults to 10).</td>
+ * </tr>
+ * <tr>
+ * <td>OnlineSectioningEngine.MaxAttempts</td>
+ * <td>{@link Integer}</td>
+ * <td>Maximal number of attempts of a task (defaults to 100).</td>
+ * </tr>
+ * </table>
+ *
+ * @author  Tomas Muller
+ * @version StudentSct 1.3 (Student Sectioning)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ *
+ */
+public class OnlineSectioningEngine {
+    private static Logger sLog = org.apache.logging.log4j.LogManager.getLogger(OnlineSectioningEngine.class);
+    private static DecimalFormat sDF = new DecimalFormat("0.00");
+    private OnlineSectioningModel iModel;
+    private Assignment<Request, Enrollment> iAssignment;
+    private ReadWriteLock iLock = new ReentrantReadWriteLock();
+    private int iNrThreads = 10;
+    private int iMaxAttempts = 100;
+    private LinkedBlockingQueue<Task> iQueue = new LinkedBlockingQueue<Task>();
+    private List<Worker> iWorkers = new ArrayList<Worker>();
+    private volatile boolean iFinish = false;
+    private AtomicLong iNrPending = new AtomicLong(0);
+
+    private AtomicLong iNrTasks = new AtomicLong(0);
+    private AtomicLong iNrFailures = new AtomicLong(0);
+    private AtomicLong iNrAttempts = new AtomicLong(0);
+    private AtomicLong iNrCommits = new AtomicLong(0);
+    private AtomicLong iNrRejectedCommits = new AtomicLong(0);
+    private long[] iLatencies = new long[1024];
+    private int iNrLatencies = 0;
+    private long iStartTime = -1, iEndTime = -1;
+
+    /**
+     * Constructor
+     * @param model shared model
+     * @param assignment shared assignment
+     */
+    public OnlineSectioningEngine(OnlineSectioningModel model, Assignment<Request, Enrollment> assignment) {
+        iModel = model;
+        iAssignment = assignment;
+        DataProperties properties = model.getProperties();
+        iNrThreads = Math.max(1, properties.getPropertyInt("OnlineSectioningEngine.Threads", iNrThreads));
+        iMaxAttempts = Math.max(1, properties.getPropertyInt("OnlineSectioningEngine.MaxAttempts", iMaxAttempts));
+    }
+
+    /** Shared model */
+    public OnlineSectioningModel getModel() { return iModel; }
+
+    /** Shared assignment */
+    public Assignment<Request, Enrollment> getAssignment() { return iAssignment; }
+
+    /**
+     * Lock of the shared model and assignment. Use the read lock when reading the shared model (e.g., when
+     * creating a copy of the student's courses), the write lock is used by {@link OnlineSectioningEngine#commit(Student, Collection)}.
+     * @return read-write lock
+     */
+    public ReadWriteLock getLock() { return iLock; }
+
+    /** Number of worker threads */
+    public int getNrThreads() { return iNrThreads; }
+
+    /** Set number of worker threads, must be called before the engine is started */
+    public void setNrThreads(int nrThreads) { iNrThreads = Math.max(1, nrThreads); }
+
+    /** Maximal number of attempts of a task */
+    public int getMaxAttempts() { return iMaxAttempts; }
+
+    /** Set maximal number of attempts of a task */
+    public void setMaxAttempts(int maxAttempts) { iMaxAttempts = Math.max(1, maxAttempts); }
+
+    /**
+     * Start the worker threads
+     */
+    public synchronized void start() {
+        if (!iWorkers.isEmpty()) return;
+        iFinish = false;
+        for (int i = 0; i < iNrThreads; i++) {
+            Worker worker = new Worker(i + 1);
+            worker.start();
+            iWorkers.add(worker);
+        }
+    }
+
+    /**
+     * Submit a task, it will be executed by one of the worker threads
+     * @param task sectioning request of a student
+     */
+    public void submit(Task task) {
+        synchronized (this) {
+            if (iStartTime < 0) iStartTime = System.currentTimeMillis();
+        }
+        iNrPending.incrementAndGet();
+        iQueue.add(task);
+    }
+
+    /**
+     * Number of tasks that have not been finished yet
+     */
+    public long getNrPendingTasks() {
+        return iNrPending.get();
+    }
+
+    /**
+     * Wait for all the submitted tasks to finish, then stop the worker threads
+     */
+    public void finish() {
+        iFinish = true;
+        List<Worker> workers;
+        synchronized (this) {
+            workers = new ArrayList<Worker>(iWorkers);
+            iWorkers.clear();
+        }
+        for (Worker worker: workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {}
+        }
+    }
+
+    /**
+     * Commit the given enrollments of the student into the shared assignment. Under the write lock, the current
+     * enrollments of the student are unassigned and the new ones are assigned, but only when none of them is
+     * in a conflict with an enrollment of an other student. When there is a conflict, the previous enrollments of
+     * the student are restored.
+     * @param student student of the shared model
+     * @param enrollments new enrollments of the student (of the shared model)
+     * @return true if the enrollments have been assigned, false if there was a conflict and the task should be executed again
+     */
+    public boolean commit(Student student, Collection<Enrollment> enrollments) {
+        Lock lock = iLock.writeLock();
+        lock.lock();
+        try {
+            iNrCommits.incrementAndGet();
+            List<Enrollment> previous = new ArrayList<Enrollment>();
+            for (Request r : student.getRequests()) {
+                Enrollment e = iAssignment.getValue(r);
+                if (e != null) {
+                    previous.add(e);
+                    releaseSpace(e);
+                }
+            }
+            for (Enrollment e : previous)
+                iAssignment.unassign(0, e.variable());
+            boolean fail = false;
+            for (Enrollment e : enrollments) {
+                if (iModel.conflictValues(iAssignment, e).isEmpty()) {
+                    iAssignment.assign(0, e);
+                } else {
+                    fail = true;
+                    break;
+                }
+            }
+            if (fail) {
+                iNrRejectedCommits.incrementAndGet();
+                for (Request r : student.getRequests())
+                    if (iAssignment.getValue(r) != null)
+                        iAssignment.unassign(0, r);
+                for (Enrollment e : previous)
+                    iAssignment.assign(0, e);
+                for (Enrollment e : previous)
+                    holdSpace(e);
+            } else {
+                for (Enrollment e : enrollments)
+                    holdSpace(e);
+            }
+            return !fail;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called (under the write lock) for each enrollment of the student before it is unassigned by
+     * {@link OnlineSectioningEngine#commit(Student, Collection)}, e.g., to update the space held or expected in its sections
+     * @param enrollment an enrollment that is being released
+     */
+    protected void releaseSpace(Enrollment enrollment) {
+    }
+
+    /**
+     * Called (under the write lock) for each enrollment of the student that remains assigned after
+     * {@link OnlineSectioningEngine#commit(Student, Collection)}
+     * @param enrollment an enrollment that is being held
+     */
+    protected void holdSpace(Enrollment enrollment) {
+    }
+
+    /**
+     * Record a finished task
+     */
+    private void finished(long latency, boolean success) {
+        iNrTasks.incrementAndGet();
+        if (!success) iNrFailures.incrementAndGet();
+        synchronized (this) {
+            if (iNrLatencies == iLatencies.length)
+                iLatencies = Arrays.copyOf(iLatencies, 2 * iLatencies.length);
+            iLatencies[iNrLatencies++] = latency;
+            iEndTime = System.currentTimeMillis();
+        }
+        iNrPending.decrementAndGet();
+    }
+
+    /**
+     * Latency percentile
+     * @param p percentile between 0.0 and 1.0
+     * @return latency of the given percentile of the finished tasks in milliseconds (nearest rank), 0 if there are no finished tasks
+     */
+    public synchronized long getLatency(double p) {
+        if (iNrLatencies == 0) return 0;
+        long[] latencies = Arrays.copyOf(iLatencies, iNrLatencies);
+        Arrays.sort(latencies);
+        return percentile(latencies, p);
+    }
+
+    /**
+     * Throughput
+     * @return number of finished tasks per second, measured from the first submitted task till the last finished one
+     */
+    public synchronized double getThroughput() {
+        if (iStartTime < 0 || iEndTime <= iStartTime) return 0.0;
+        return 1000.0 * iNrTasks.get() / (iEndTime - iStartTime);
+    }
+
+    /**
+     * Engine statistics: number of finished tasks, failures, attempts, rejected commits, throughput, and the latency percentiles
+     * @return statistics, name: value
+     */
+    public Map<String, String> getInfo() {
+        Map<String, String> info = new HashMap<String, String>();
+        long tasks = iNrTasks.get();
+        info.put("Engine threads", String.valueOf(iNrThreads));
+        info.put("Engine tasks", tasks + (iNrFailures.get() == 0 ? "" : " (" + iNrFailures.get() + " failed)"));
+        if (tasks > 0)
+            info.put("Engine attempts", sDF.format(((double)iNrAttempts.get()) / tasks) + " per task (" + iNrRejectedCommits.get() + " of " + iNrCommits.get() + " commits rejected)");
+        info.put("Engine throughput", sDF.format(getThroughput()) + " tasks/s");
+        synchronized (this) {
+            if (iNrLatencies > 0) {
+                long[] latencies = Arrays.copyOf(iLatencies, iNrLatencies);
+                Arrays.sort(latencies);
+                long total = 0;
+                for (long latency: latencies) total += latency;
+                info.put("Engine latency", "p50: " + percentile(latencies, 0.5) + " ms, p95: " + percentile(latencies, 0.95) + " ms, p99: " + percentile(latencies, 0.99) +
+                        " ms, max: " + latencies[latencies.length - 1] + " ms, avg: " + sDF.format(((double)total) / latencies.length) + " ms");
+            }
+        }
+        return info;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int)Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    /**
+     * Sectioning request of a student
+     */
+    public static interface Task {
+        /**
+         * Student that is being sectioned
+         * @return student of the shared model
+         */
+        public Student getStudent();
+
+        /**
+         * Compute the schedule of the student and commit it using {@link OnlineSectioningEngine#commit(Student, Collection)}.
+         * Called by a worker thread, without holding any lock.
+         * @param engine online sectioning engine
+         * @param attempt attempt number (starting with 1)
+         * @return true if done, false if the commit failed and the task is to be executed again
+         */
+        public boolean execute(OnlineSectioningEngine engine, int attempt);
+
+        /**
+         * Called when the maximal number of attempts has been reached
+         * @param engine online sectioning engine
+         */
+        public void failed(OnlineSectioningEngine engine);
+    }
+
+    /**
+     * Worker thread, executing tasks from the queue
+     */
+    protected class Worker extends Thread {
+        protected Worker(int index) {
+            setName("OnlineSectioning-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task = null;
+                try {
+                    task = iQueue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {}
+                if (task == null) {
+                    if (iFinish && iQueue.isEmpty()) return;
+                    continue;
+                }
+                long t0 = System.currentTimeMillis();
+                boolean success = false;
+                try {
+                    for (int attempt = 1; attempt <= iMaxAttempts; attempt++) {
+                        iNrAttempts.incrementAndGet();
+                        if (task.execute(OnlineSectioningEngine.this, attempt)) {
+                            success = true;
+                            break;
+                        }
+                        sLog.debug(attempt + ". attempt failed for " + task.getStudent().getId());
+                        if (attempt >= 10) {
+                            try {
+                                Thread.sleep(ToolBox.random(100 * (attempt + 1)));
+                            } catch (InterruptedException e) {}
+                        }
+                    }
+                    if (!success)
+                        task.failed(OnlineSectioningEngine.this);
+                } catch (Exception e) {
+                    sLog.error("Failed to section " + task.getStudent().getId() + ": " + e.getMessage(), e);
+                } finally {
+                    finished(System.currentTimeMillis() - t0, success);
+                }
+            }
+        }
+    }
+}
@@ -13,9 +13,9 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.logging.log4j.Logger;
 import org.cpsolver.ifs.assignment.Assignment;
@@ -62,7 +62,7 @@ import org.cpsolver.studentsct.reservation.Reservation;
 /**
  * An online student sectioning test. It loads the given problem (passed as the only argument) with no assignments. It sections all
  * students in the given order (given by -Dsort parameter, values shuffle, choice, reverse). Multiple threads can be used to section
- * students in parallel (given by -DnrConcurrent parameter). If parameter -Dsuggestions is set to true, the test also asks for suggestions
+ * students in parallel (given by -DnrConcurrent parameter, see {@link OnlineSectioningEngine}). If parameter -Dsuggestions is set to true, the test also asks for suggestions
  * for each of the assigned class, preferring mid-day times. Over-expected criterion can be defined by the -Doverexp parameter (see the
  * examples bellow). Multi-criteria selection can be enabled by -DStudentWeights.MultiCriteria=true and equal weighting can be set by
  * -DStudentWeights.PriorityWeighting=equal).
@@ -113,6 +113,7 @@ public class Test {
     private OnlineSectioningModel iModel;
     private Assignment<Request, Enrollment> iAssignment;
     private boolean iSuggestions = false;
+    private OnlineSectioningEngine iEngine;
 
     private Map<String, Counter> iCounters = new HashMap<String, Counter>();
 
@@ -129,6 +130,18 @@ public class Test {
         iModel.getStudentQuality().setAssignmentContextReference(iModel.createReference(iModel.getStudentQuality()));
         iModel.setStudentWeights(new StudentSchedulingAssistantWeights(iModel.getProperties()));
         iAssignment = new DefaultSingleAssignment<Request, Enrollment>();
+        iEngine = new OnlineSectioningEngine(iModel, iAssignment) {
+            @Override
+            protected void releaseSpace(Enrollment enrollment) {
+                updateSpace(getAssignment(), enrollment, true);
+            }
+            @Override
+            protected void holdSpace(Enrollment enrollment) {
+                updateSpace(getAssignment(), enrollment, false);
+            }
+        };
+        if (System.getProperty("nrConcurrent") != null)
+            iEngine.setNrThreads(Integer.parseInt(System.getProperty("nrConcurrent")));
         iSuggestions = "true".equals(System.getProperty("suggestions", iSuggestions ? "true" : "false"));
 
         String overexp = System.getProperty("overexp");
@@ -154,13 +167,18 @@ public class Test {
                 + (config.getPropertyBoolean("StudentWeights.PriorityWeighting", true) ? "priority" : "equal")
                 + " weighting model" + " with over-expected " + iModel.getOverExpectedCriterion()
                 + (iSuggestions ? ", suggestions" : "") + ", " + System.getProperty("sort", "shuffle") + " order"
-                + " and " + config.getPropertyInt("Neighbour.BranchAndBoundTimeout", 1000) + " ms time limit.");
+                + " and " + config.getPropertyInt("Neighbour.BranchAndBoundTimeout", 1000) + " ms time limit"
+                + " (" + iEngine.getNrThreads() + " concurrent requests).");
     }
 
     public OnlineSectioningModel model() {
         return iModel;
     }
 
+    public OnlineSectioningEngine engine() {
+        return iEngine;
+    }
+
     public Assignment<Request, Enrollment> assignment() {
         return iAssignment;
     }
@@ -422,7 +440,9 @@ public class Test {
         Hashtable<CourseRequest, Set<Section>> preferredSectionsForCourse = new Hashtable<CourseRequest, Set<Section>>();
         Map<Long, Section> classTable = new HashMap<Long, Section>();
 
-        synchronized (iModel) {
+        Lock lock = iEngine.getLock().readLock();
+        lock.lock();
+        try {
             for (Request request : original.getRequests()) {
                 Request clonnedRequest = addRequest(student, original, request, classTable, model);
                 Enrollment enrollment = assignment().getValue(request);
@@ -433,6 +453,8 @@ public class Test {
                     preferredSectionsForCourse.put((CourseRequest) clonnedRequest, sections);
                 }
             }
+        } finally {
+            lock.unlock();
         }
 
         model.addStudent(student);
@@ -603,42 +625,8 @@ public class Test {
                     }
                 }
             }
-            synchronized (iModel) {
-                for (Request r : original.getRequests()) {
-                    Enrollment e = assignment().getValue(r);
-                    r.setInitialAssignment(e);
-                    if (e != null)
-                        updateSpace(assignment(), e, true);
-                }
-                for (Request r : original.getRequests())
-                    if (assignment().getValue(r) != null)
-                        assignment().unassign(0, r);
-                boolean fail = false;
-                for (Enrollment enrl : enrollments) {
-                    if (iModel.conflictValues(assignment(), enrl).isEmpty()) {
-                        assignment().assign(0, enrl);
-                    } else {
-                        fail = true;
-                        break;
-                    }
-                }
-                if (fail) {
-                    for (Request r : original.getRequests())
-                        if (assignment().getValue(r) != null)
-                            assignment().unassign(0, r);
-                    for (Request r : original.getRequests())
-                        if (r.getInitialAssignment() != null)
-                            assignment().assign(0, r.getInitialAssignment());
-                    for (Request r : original.getRequests())
-                        if (assignment().getValue(r) != null)
-                            updateSpace(assignment(), assignment().getValue(r), false);
-                } else {
-                    for (Enrollment enrl : enrollments)
-                        updateSpace(assignment(), enrl, false);
-                }
-                if (fail)
-                    return false;
-            }
+            if (!iEngine.commit(original, enrollments))
+                return false;
             neighbour.assign(newAssignment, 0);
             int a = 0, u = 0, np = 0, zp = 0, pp = 0, cp = 0;
             double over = 0;
@@ -755,33 +743,49 @@ public class Test {
             Collections.sort(students, ord);
         }
 
-        Iterator<Student> iterator = students.iterator();
-        int nrThreads = Integer.parseInt(System.getProperty("nrConcurrent", "10"));
-        List<Executor> executors = new ArrayList<Executor>();
-        for (int i = 0; i < nrThreads; i++) {
-            Executor executor = new Executor(iterator);
-            executor.start();
-            executors.add(executor);
+        long t0 = System.currentTimeMillis();
+        for (final Student student: students) {
+            iEngine.submit(new OnlineSectioningEngine.Task() {
+                @Override
+                public Student getStudent() {
+                    return student;
+                }
+
+                @Override
+                public boolean execute(OnlineSectioningEngine engine, int attempt) {
+                    if (section(student)) return true;
+                    sLog.warn(attempt + ". attempt failed for " + student.getId());
+                    inc("[F] Failed attempt", attempt);
+                    return false;
+                }
+
+                @Override
+                public void failed(OnlineSectioningEngine engine) {
+                    inc("[F] Failed enrollment (all " + engine.getMaxAttempts() + " attempts)");
+                }
+            });
         }
+        iEngine.start();
 
-        long t0 = System.currentTimeMillis();
-        while (iterator.hasNext()) {
+        long lastProgress = t0;
+        while (iEngine.getNrPendingTasks() > 0) {
             try {
-                Thread.sleep(60000);
+                Thread.sleep(1000);
             } catch (InterruptedException e) {
             }
             long time = System.currentTimeMillis() - t0;
-            synchronized (iModel) {
-                sLog.info("Progress [" + (time / 60000) + "m]: " + ToolBox.dict2string(model().getExtendedInfo(assignment()), 2));
-            }
-        }
-
-        for (Executor executor : executors) {
-            try {
-                executor.join();
-            } catch (InterruptedException e) {
+            if (System.currentTimeMillis() - lastProgress >= 60000) {
+                lastProgress = System.currentTimeMillis();
+                Lock lock = iEngine.getLock().readLock();
+                lock.lock();
+                try {
+                    sLog.info("Progress [" + (time / 60000) + "m]: " + ToolBox.dict2string(model().getExtendedInfo(assignment()), 2));
+                } finally {
+                    lock.unlock();
+                }
             }
         }
+        iEngine.finish();
 
         sLog.info("Output: " + ToolBox.dict2string(model().getExtendedInfo(assignment()), 2));
         long time = System.currentTimeMillis() - t0;
@@ -789,41 +793,6 @@ public class Test {
 
     }
 
-    public class Executor extends Thread {
-        private Iterator<Student> iStudents = null;
-
-        public Executor(Iterator<Student> students) {
-            iStudents = students;
-        }
-
-        @Override
-        public void run() {
-            try {
-                for (;;) {
-                    Student student = iStudents.next();
-                    int attempt = 1;
-                    while (!section(student)) {
-                        sLog.warn(attempt + ". attempt failed for " + student.getId());
-                        inc("[F] Failed attempt", attempt);
-                        attempt++;
-                        if (attempt == 101)
-                            break;
-                        if (attempt > 10) {
-                            try {
-                                Thread.sleep(ToolBox.random(100 * attempt));
-                            } catch (InterruptedException e) {
-                            }
-                        }
-                    }
-                    if (attempt > 100)
-                        inc("[F] Failed enrollment (all 100 attempts)");
-                }
-            } catch (NoSuchElementException e) {
-            }
-        }
-
-    }
-
     public class TestModel extends OnlineSectioningModel {
         public TestModel(DataProperties config) {
             super(config);
@@ -838,6 +807,8 @@ public class Test {
                     (model().getProperties().getPropertyBoolean("StudentWeights.MultiCriteria", true) ? "multi-criteria " : "") +
                     (model().getProperties().getPropertyBoolean("StudentWeights.PriorityWeighting", true) ? "priority" : "equal"));
             ret.put("B&B time limit", model().getProperties().getPropertyInt("Neighbour.BranchAndBoundTimeout", 1000) + " ms");
+            if (iEngine != null)
+                ret.putAll(iEngine.getInfo());
             if (iSuggestions) {
                 ret.put("Suggestion time limit", model().getProperties().getPropertyInt("Suggestions.Timeout", 1000) + " ms");
             }
@@ -870,7 +841,7 @@ public class Test {
         PrintWriter pw = new PrintWriter(new FileWriter(file, true));
         if (!ex) {
             pw.println("Input File,Run Time [m],Model,Sort,Over Expected,Not Assigned,Disb. Sections [%],Distance Confs.,Time Confs. [m],"
-                    + "CPU Assignment [ms],Has Suggestions [%],Nbr Suggestions,Acceptance [%],CPU Suggestions [ms]");
+                    + "CPU Assignment [ms],Concurrency,Throughput [1/s],Latency p50 [ms],Latency p95 [ms],Latency p99 [ms],Has Suggestions [%],Nbr Suggestions,Acceptance [%],CPU Suggestions [ms]");
         }
         pw.print(input.getName() + ",");
         pw.print(df.format(get("[T] Run Time [m]").sum()) + ",");
@@ -891,6 +862,11 @@ public class Test {
             pw.print(df.format(5.0 * model().getTimeOverlaps().getTotalNrConflicts(assignment()) / model().getStudents().size()) + ",");
         }
         pw.print(df.format(get("[C] CPU Time").avg()) + ",");
+        pw.print(iEngine.getNrThreads() + ",");
+        pw.print(df.format(iEngine.getThroughput()) + ",");
+        pw.print(iEngine.getLatency(0.5) + ",");
+        pw.print(iEngine.getLatency(0.95) + ",");
+        pw.print(iEngine.getLatency(0.99) + ",");
         if (iSuggestions) {
             pw.print(df.format(get("[S] Probability that a class has suggestions [%]").avg()) + ",");
             pw.print(df.format(get("[S] Avg. # of suggestions").avg()) + ",");